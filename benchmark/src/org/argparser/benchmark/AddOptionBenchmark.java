@@ -0,0 +1,213 @@
+/*
+ * Copyright 2011-2013 by Andreas Draeger and Florian Mittag
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.argparser.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.argparser.ArgHolder;
+import org.argparser.ArgParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link ArgParser#addOption addOption}, i.e., the compilation of
+ * specification strings with ranges, multipliers and help texts, and how much
+ * of it subcommands with lazily created parsers save.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AddOptionBenchmark {
+  
+  /**
+   * 
+   */
+  private ArgHolder<Integer> intHolder;
+  /**
+   * 
+   */
+  private ArgHolder<Double> doubleHolder;
+  /**
+   * 
+   */
+  private ArgHolder<String> stringHolder;
+  /**
+   * 
+   */
+  private double[] doubleArray;
+  /**
+   * The specifications of {@link #mixedOptions()}.
+   */
+  private String[] mixedSpecs = {
+      "-n,--number %d{[1,100],200,(300,400)} #number of items",
+      "-f,--factor %f{(-99,-50],[50,99)} #scaling factor",
+      "-m,--mode %s{fast,safe,debug,profile,trace} #MODE#execution mode",
+      "-p,--position %fX3 #position of the object",
+      "-o=,--output ,-O%s #output file" };
+  /**
+   * 
+   */
+  private Object[] mixedHolders;
+  /**
+   * 
+   */
+  private File snapshot;
+  
+  /**
+   * 
+   * @throws IOException
+   */
+  @Setup
+  public void setUp() throws IOException {
+    intHolder = new ArgHolder<Integer>(Integer.class);
+    doubleHolder = new ArgHolder<Double>(Double.class);
+    stringHolder = new ArgHolder<String>(String.class);
+    doubleArray = new double[3];
+    mixedHolders = new Object[] { intHolder, doubleHolder, stringHolder,
+        doubleArray, stringHolder };
+    snapshot = File.createTempFile("argparser-bench", ".snapshot");
+    snapshot.delete();
+    new ArgParser("bench", false).addOptions(mixedSpecs, mixedHolders,
+      snapshot);
+  }
+  
+  /**
+   * 
+   */
+  @TearDown
+  public void tearDown() {
+    snapshot.delete();
+  }
+  
+  /**
+   * 
+   * @return
+   */
+  @Benchmark
+  public ArgParser plainOption() {
+    ArgParser parser = new ArgParser("bench", false);
+    parser.addOption("-n,--number %d", intHolder);
+    return parser;
+  }
+  
+  /**
+   * 
+   * @return
+   */
+  @Benchmark
+  public ArgParser mixedOptions() {
+    ArgParser parser = new ArgParser("bench", false);
+    parser.addOption("-n,--number %d{[1,100],200,(300,400)} #number of items",
+      intHolder);
+    parser.addOption("-f,--factor %f{(-99,-50],[50,99)} #scaling factor",
+      doubleHolder);
+    parser.addOption(
+      "-m,--mode %s{fast,safe,debug,profile,trace} #MODE#execution mode",
+      stringHolder);
+    parser.addOption("-p,--position %fX3 #position of the object", doubleArray);
+    parser.addOption("-o=,--output ,-O%s #output file", stringHolder);
+    return parser;
+  }
+  
+  /**
+   * Restores the options of {@link #mixedOptions()} from a snapshot.
+   * 
+   * @return
+   */
+  @Benchmark
+  public ArgParser mixedOptionsFromSnapshot() {
+    ArgParser parser = new ArgParser("bench", false);
+    parser.addOptions(mixedSpecs, mixedHolders, snapshot);
+    return parser;
+  }
+  
+  /**
+   * Number of subcommands of {@link #lazySubcommands()} and
+   * {@link #eagerSubcommands()}.
+   */
+  private static final int SUBCOMMANDS = 60;
+  
+  /**
+   * 
+   * @return a parser with the options of {@link #mixedOptions()}
+   */
+  private ArgParser subcommandParser() {
+    ArgParser parser = new ArgParser("bench sub", false);
+    for (int i = 0; i < mixedSpecs.length; i++) {
+      parser.addOption(mixedSpecs[i], mixedHolders[i]);
+    }
+    return parser;
+  }
+  
+  /**
+   * Registers 60 subcommands and dispatches to one of them, whose parser is
+   * the only one created.
+   * 
+   * @return
+   */
+  @Benchmark
+  public String[] lazySubcommands() {
+    ArgParser parser = new ArgParser("bench", false);
+    Supplier<ArgParser> supplier = new Supplier<ArgParser>() {
+      /*
+       * (non-Javadoc)
+       * @see java.util.function.Supplier#get()
+       */
+      @Override
+      public ArgParser get() {
+        return subcommandParser();
+      }
+    };
+    for (int i = 0; i < SUBCOMMANDS; i++) {
+      parser.addSubcommand("command" + i, "", supplier);
+    }
+    return parser.matchAllArgs(new String[] { "command30", "-n", "5" }, 0, 0);
+  }
+  
+  /**
+   * Creating all 60 parsers up front and dispatching by hand, for comparison
+   * with {@link #lazySubcommands()}.
+   * 
+   * @return
+   */
+  @Benchmark
+  public String[] eagerSubcommands() {
+    Map<String, ArgParser> parsers = new HashMap<String, ArgParser>();
+    for (int i = 0; i < SUBCOMMANDS; i++) {
+      parsers.put("command" + i, subcommandParser());
+    }
+    return parsers.get("command30").matchAllArgs(new String[] { "-n", "5" }, 0,
+      0);
+  }
+}
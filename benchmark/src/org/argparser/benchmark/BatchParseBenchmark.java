@@ -0,0 +1,98 @@
+/*
+ * Copyright 2011-2013 by Andreas Draeger and Florian Mittag
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.argparser.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.argparser.CompiledArgParser;
+import org.argparser.ParseResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link CompiledArgParser#parseAll(List)} against matching the same
+ * batch of short argument lists one after the other.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BatchParseBenchmark {
+  
+  /**
+   * Number of argument lists in the batch.
+   */
+  @Param({ "1000", "100000" })
+  public int lists;
+  
+  /**
+   * 
+   */
+  private CompiledArgParser compiled;
+  /**
+   * 
+   */
+  private List<String[]> batch;
+  
+  /**
+   * 
+   */
+  @Setup
+  public void setUp() {
+    compiled = Fixtures.launcherParser(new Fixtures.LauncherHolders(false))
+        .compile();
+    batch = new ArrayList<String[]>(lists);
+    for (int i = 0; i < lists; i++) {
+      batch.add(Fixtures.launcherArgs(1 + (i % 3)));
+    }
+  }
+  
+  /**
+   * 
+   * @return
+   */
+  @Benchmark
+  public ParseResult[] sequential() {
+    ParseResult[] results = new ParseResult[batch.size()];
+    for (int i = 0; i < results.length; i++) {
+      results[i] = compiled.parse(batch.get(i));
+    }
+    return results;
+  }
+  
+  /**
+   * 
+   * @return
+   */
+  @Benchmark
+  public List<ParseResult> parseAll() {
+    return compiled.parseAll(batch);
+  }
+}
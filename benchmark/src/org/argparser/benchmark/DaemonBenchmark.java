@@ -0,0 +1,138 @@
+/*
+ * Copyright 2011-2013 by Andreas Draeger and Florian Mittag
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.argparser.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.argparser.CompiledArgParser;
+import org.argparser.DaemonResponse;
+import org.argparser.ParseResult;
+import org.argparser.ParserDaemon;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures a round trip to a {@link ParserDaemon} running in the same JVM,
+ * i.e., what an invocation through the daemon costs besides starting the
+ * client, against matching the same arguments directly.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DaemonBenchmark {
+  
+  /**
+   * 
+   */
+  private CompiledArgParser compiled;
+  /**
+   * 
+   */
+  private ParserDaemon daemon;
+  /**
+   * 
+   */
+  private Thread thread;
+  /**
+   * 
+   */
+  private Path dir;
+  /**
+   * 
+   */
+  private Path socket;
+  /**
+   * 
+   */
+  private String[] args;
+  
+  /**
+   * 
+   * @throws IOException
+   */
+  @Setup
+  public void setUp() throws IOException {
+    compiled = Fixtures.launcherParser(new Fixtures.LauncherHolders(false))
+        .compile();
+    args = Fixtures.launcherArgs(1);
+    dir = Files.createTempDirectory("argparser-bench");
+    socket = dir.resolve("launcher.sock");
+    daemon = new ParserDaemon(socket);
+    daemon.register("launcher", compiled);
+    daemon.bind();
+    thread = new Thread(new Runnable() {
+      /*
+       * (non-Javadoc)
+       * @see java.lang.Runnable#run()
+       */
+      @Override
+      public void run() {
+        try {
+          daemon.serve();
+        } catch (IOException e) {
+          e.printStackTrace();
+        }
+      }
+    });
+    thread.start();
+  }
+  
+  /**
+   * 
+   * @throws Exception
+   */
+  @TearDown
+  public void tearDown() throws Exception {
+    daemon.close();
+    thread.join();
+    Files.deleteIfExists(dir);
+  }
+  
+  /**
+   * 
+   * @return
+   * @throws IOException
+   */
+  @Benchmark
+  public DaemonResponse roundTrip() throws IOException {
+    return ParserDaemon.send(socket, "launcher", args);
+  }
+  
+  /**
+   * 
+   * @return
+   */
+  @Benchmark
+  public ParseResult inProcess() {
+    return compiled.parse(args);
+  }
+}
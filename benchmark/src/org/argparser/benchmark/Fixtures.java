@@ -0,0 +1,236 @@
+/*
+ * Copyright 2011-2013 by Andreas Draeger and Florian Mittag
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.argparser.benchmark;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Vector;
+
+import org.argparser.ArgHolder;
+import org.argparser.ArgParser;
+import org.argparser.DoubleList;
+import org.argparser.IntArgHolder;
+import org.argparser.StringList;
+import org.argparser.ValueList;
+
+/**
+ * Parsers, argument lists and option files shared by the benchmarks.
+ */
+final class Fixtures {
+  
+  /**
+   * 
+   */
+  private Fixtures() {
+  }
+  
+  /**
+   * Creates a parser with {@code n} integer options named {@code -opt0} to
+   * {@code -opt<n-1>}, each with a range and a help text.
+   * 
+   * @param n
+   * @return
+   */
+  static ArgParser numberedParser(int n) {
+    return numberedParser(n, false);
+  }
+  
+  /**
+   * Creates a parser like {@link #numberedParser(int)}, optionally storing
+   * the values in {@link IntArgHolder}s instead of boxing them.
+   * 
+   * @param n
+   * @param primitive
+   * @return
+   */
+  static ArgParser numberedParser(int n, boolean primitive) {
+    ArgParser parser = new ArgParser("java Benchmark [options]", false);
+    for (int i = 0; i < n; i++) {
+      parser.addOption(String.format(
+        "-opt%d,--option-%d %%d{[0,1000000]} #sets the value of option %d", i,
+        i, i), primitive ? new IntArgHolder()
+          : new ArgHolder<Integer>(Integer.class));
+    }
+    return parser;
+  }
+  
+  /**
+   * Holders of the parser created by {@link Fixtures#launcherParser}. The
+   * repeated options are collected either in vectors or in value lists.
+   */
+  static final class LauncherHolders {
+    ArgHolder<Boolean> verbose = new ArgHolder<Boolean>(Boolean.FALSE);
+    ArgHolder<Integer> threads = new ArgHolder<Integer>(Integer.class);
+    ArgHolder<Long> memory = new ArgHolder<Long>(Long.class);
+    ArgHolder<Double> ratio = new ArgHolder<Double>(Double.class);
+    ArgHolder<String> mode = new ArgHolder<String>(String.class);
+    ArgHolder<String> output = new ArgHolder<String>(String.class);
+    ArgHolder<Character> separator = new ArgHolder<Character>(Character.class);
+    ArgHolder<Boolean> dryRun = new ArgHolder<Boolean>(Boolean.class);
+    double[] origin = new double[3];
+    int[] window = new int[2];
+    Object inputs;
+    Object defines;
+    Object weights;
+    
+    /**
+     * 
+     * @param lists
+     *        whether to use value lists instead of vectors
+     */
+    LauncherHolders(boolean lists) {
+      if (lists) {
+        inputs = new StringList();
+        defines = new StringList();
+        weights = new DoubleList();
+      } else {
+        inputs = new Vector<Object>();
+        defines = new Vector<Object>();
+        weights = new Vector<Object>();
+      }
+    }
+    
+    /**
+     * Empties the repeated options' holders, which would otherwise grow with
+     * every invocation.
+     */
+    void clear() {
+      for (Object holder : new Object[] { inputs, defines, weights }) {
+        if (holder instanceof ValueList) {
+          ((ValueList) holder).clear();
+        } else {
+          ((Vector<?>) holder).clear();
+        }
+      }
+    }
+  }
+  
+  /**
+   * Creates a parser resembling the one of a typical job launcher, using all
+   * kinds of options: flags, ranges, string enumerations, multipliers, one
+   * word options and repeated options.
+   * 
+   * @param h
+   * @return
+   */
+  static ArgParser launcherParser(LauncherHolders h) {
+    ArgParser parser = new ArgParser("java Launcher [options] jobs ...", false);
+    parser.addOption("-v,--verbose %v #print progress information", h.verbose);
+    parser.addOption("-t,--threads %d{[1,512]} #number of worker threads",
+      h.threads);
+    parser.addOption("-Xmx%i #maximal heap size in bytes", h.memory);
+    parser.addOption("--ratio %f{(0,1]} #sampling ratio", h.ratio);
+    parser.addOption("--mode %s{fast,safe,debug,profile} #execution mode",
+      h.mode);
+    parser.addOption("-o,--output %s #output directory", h.output);
+    parser.addOption("--separator %c #field separator", h.separator);
+    parser.addOption("--dry-run %b #only print what would be done", h.dryRun);
+    parser.addOption("--origin %fX3 #origin of the coordinate system",
+      h.origin);
+    parser.addOption("--window %dX2 #first and last index to process",
+      h.window);
+    parser.addOption("-i,--input %s #input shard, may be repeated", h.inputs);
+    parser.addOption("-D%s #defines a property", h.defines);
+    parser.addOption("-w,--weight %f{[0,100]} #weight of an input shard",
+      h.weights);
+    return parser;
+  }
+  
+  /**
+   * Creates an argument list for {@link #launcherParser} with about
+   * {@code 10 * repetitions} arguments.
+   * 
+   * @param repetitions
+   * @return
+   */
+  static String[] launcherArgs(int repetitions) {
+    List<String> args = new ArrayList<String>();
+    args.add("-v");
+    args.add("--threads");
+    args.add("64");
+    args.add("-Xmx0x40000000");
+    args.add("--ratio");
+    args.add("0.25");
+    args.add("--mode");
+    args.add("safe");
+    args.add("-o");
+    args.add("/var/tmp/out");
+    args.add("--separator");
+    args.add("\\t");
+    args.add("--dry-run");
+    args.add("--origin");
+    args.add("1.5");
+    args.add("-2.25");
+    args.add("1e3");
+    args.add("--window");
+    args.add("10");
+    args.add("200");
+    for (int i = 0; i < repetitions; i++) {
+      args.add("-i");
+      args.add("/data/shards/part-" + i + ".avro");
+      args.add("-w");
+      args.add(Double.toString((i % 100) + 0.5));
+      args.add("-Dshard." + i + "=enabled");
+      args.add("--threads");
+      args.add(Integer.toString(1 + (i % 512)));
+      args.add("job-" + i);
+    }
+    return args.toArray(new String[args.size()]);
+  }
+  
+  /**
+   * Writes an option file for {@link #launcherParser} with the given number
+   * of lines, including comments and quoted strings.
+   * 
+   * @param lines
+   * @return
+   * @throws IOException
+   */
+  static File launcherArgFile(int lines) throws IOException {
+    File file = File.createTempFile("argparser-bench", ".args");
+    file.deleteOnExit();
+    Writer out = new FileWriter(file);
+    try {
+      out.write("# generated option file\n");
+      out.write("-v --threads 64 --mode safe\n");
+      for (int i = 0; i < lines; i++) {
+        switch (i % 4) {
+          case 0:
+            out.write("-i /data/shards/part-" + i + ".avro # shard " + i
+                + "\n");
+            break;
+          case 1:
+            out.write("-w " + ((i % 100) + 0.5) + "\n");
+            break;
+          case 2:
+            out.write("-o \"/var/tmp/output " + i + "\"\n");
+            break;
+          default:
+            out.write("-Dshard." + i + "=enabled\n");
+            break;
+        }
+      }
+    } finally {
+      out.close();
+    }
+    return file;
+  }
+}
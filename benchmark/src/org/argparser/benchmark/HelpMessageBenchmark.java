@@ -0,0 +1,114 @@
+/*
+ * Copyright 2011-2013 by Andreas Draeger and Florian Mittag
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.argparser.benchmark;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+import org.argparser.ArgParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the rendering of help messages by
+ * {@link ArgParser#getHelpMessage()}, both for a cached message and for a
+ * message that has to be rendered again after a change of the synopsis, and
+ * the streaming of uncached messages by {@link ArgParser#writeHelp(Appendable)}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HelpMessageBenchmark {
+  
+  /**
+   * Number of registered options.
+   */
+  @Param({ "10", "100", "1000" })
+  public int options;
+  
+  /**
+   * 
+   */
+  private ArgParser parser;
+  
+  /**
+   * Discards everything, so that only the rendering is measured.
+   */
+  private final Writer discard = new Writer() {
+    @Override
+    public void write(char[] cbuf, int off, int len) {
+    }
+    
+    @Override
+    public void flush() {
+    }
+    
+    @Override
+    public void close() {
+    }
+  };
+  
+  /**
+   * 
+   */
+  @Setup
+  public void setUp() {
+    parser = Fixtures.numberedParser(options);
+  }
+  
+  /**
+   * 
+   * @return
+   */
+  @Benchmark
+  public String getHelpMessage() {
+    return parser.getHelpMessage();
+  }
+  
+  /**
+   * 
+   * @return
+   */
+  @Benchmark
+  public String renderHelpMessage() {
+    parser.setSynopsisString("java Benchmark [options]");
+    return parser.getHelpMessage();
+  }
+  
+  /**
+   * 
+   * @throws IOException
+   */
+  @Benchmark
+  public void writeHelp() throws IOException {
+    parser.setSynopsisString("java Benchmark [options]");
+    parser.writeHelp(discard);
+  }
+}
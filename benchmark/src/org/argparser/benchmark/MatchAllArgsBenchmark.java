@@ -0,0 +1,231 @@
+/*
+ * Copyright 2011-2013 by Andreas Draeger and Florian Mittag
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.argparser.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.argparser.ArgParser;
+import org.argparser.ArgTokenizer;
+import org.argparser.CompiledArgParser;
+import org.argparser.ParseResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link ArgParser#matchAllArgs(String[], int, int) matchAllArgs}
+ * and {@link CompiledArgParser#parse(String[])} over a realistic argument
+ * list of a job launcher, as well as
+ * {@link CompiledArgParser#parseLazily(String[])} followed by reading a single
+ * value, {@link ArgParser#matchAllArgs(byte[], int[], int)} over the UTF-8
+ * encoded list, and {@link ArgParser#matchAllArgs(ArgTokenizer, int)} over
+ * the list joined into a single line.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MatchAllArgsBenchmark {
+  
+  /**
+   * 
+   */
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+  
+  /**
+   * Number of repeated blocks of arguments, about ten arguments each.
+   */
+  @Param({ "1", "100", "10000" })
+  public int repetitions;
+  
+  /**
+   * 
+   */
+  private Fixtures.LauncherHolders holders;
+  /**
+   * 
+   */
+  private Fixtures.LauncherHolders listHolders;
+  /**
+   * 
+   */
+  private ArgParser parser;
+  /**
+   * 
+   */
+  private ArgParser listParser;
+  /**
+   * 
+   */
+  private CompiledArgParser compiled;
+  /**
+   * 
+   */
+  private String[] args;
+  /**
+   * The UTF-8 encoded arguments.
+   */
+  private byte[] data;
+  /**
+   * 
+   */
+  private int[] offsets;
+  /**
+   * The arguments separated by spaces.
+   */
+  private String line;
+  /**
+   * 
+   */
+  private ArgTokenizer tokenizer;
+  
+  /**
+   * 
+   */
+  @Setup
+  public void setUp() {
+    holders = new Fixtures.LauncherHolders(false);
+    parser = Fixtures.launcherParser(holders);
+    compiled = parser.compile();
+    listHolders = new Fixtures.LauncherHolders(true);
+    listParser = Fixtures.launcherParser(listHolders);
+    args = Fixtures.launcherArgs(repetitions);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    offsets = new int[args.length + 1];
+    for (int i = 0; i < args.length; i++) {
+      byte[] bytes = args[i].getBytes(UTF8);
+      out.write(bytes, 0, bytes.length);
+      offsets[i + 1] = out.size();
+    }
+    data = out.toByteArray();
+    StringBuilder sb = new StringBuilder();
+    for (String arg : args) {
+      sb.append(arg).append(' ');
+    }
+    line = sb.toString();
+    tokenizer = new ArgTokenizer(true);
+  }
+  
+  /**
+   * 
+   * @return
+   */
+  @Benchmark
+  public String[] matchAllArgs() {
+    holders.clear();
+    return parser.matchAllArgs(args, 0, 0);
+  }
+  
+  /**
+   * Repeated options collected in value lists instead of vectors.
+   * 
+   * @return
+   */
+  @Benchmark
+  public String[] matchAllArgsLists() {
+    listHolders.clear();
+    return listParser.matchAllArgs(args, 0, 0);
+  }
+  
+  /**
+   * 
+   * @return
+   */
+  @Benchmark
+  public String[] matchAllBytes() {
+    holders.clear();
+    return parser.matchAllArgs(data, offsets, 0);
+  }
+  
+  /**
+   * Decoding the UTF-8 encoded list into strings first, for comparison with
+   * {@link #matchAllBytes()}.
+   * 
+   * @return
+   */
+  @Benchmark
+  public String[] matchAllDecodedBytes() {
+    holders.clear();
+    String[] decoded = new String[offsets.length - 1];
+    for (int i = 0; i < decoded.length; i++) {
+      decoded[i] = new String(data, offsets[i], offsets[i + 1] - offsets[i],
+        UTF8);
+    }
+    return parser.matchAllArgs(decoded, 0, 0);
+  }
+  
+  /**
+   * 
+   * @return
+   * @throws IOException
+   */
+  @Benchmark
+  public String[] matchAllTokens() throws IOException {
+    holders.clear();
+    tokenizer.tokenize(line);
+    return parser.matchAllArgs(tokenizer, 0);
+  }
+  
+  /**
+   * Splitting the line into strings first, for comparison with
+   * {@link #matchAllTokens()}.
+   * 
+   * @return
+   * @throws IOException
+   */
+  @Benchmark
+  public String[] matchAllSplitLine() throws IOException {
+    holders.clear();
+    List<String> list = new ArrayList<String>();
+    ArgParser.stringToArgs(list, line, true);
+    return parser.matchAllArgs(list.toArray(new String[list.size()]), 0, 0);
+  }
+  
+  /**
+   * 
+   * @return
+   */
+  @Benchmark
+  public ParseResult compiledParse() {
+    return compiled.parse(args);
+  }
+  
+  /**
+   * Only the number of threads is read, all other values stay unconverted.
+   * 
+   * @return
+   */
+  @Benchmark
+  public Object compiledParseLazily() {
+    return compiled.parseLazily(args).getValue("--threads");
+  }
+}
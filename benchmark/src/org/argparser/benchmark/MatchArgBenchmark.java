@@ -0,0 +1,162 @@
+/*
+ * Copyright 2011-2013 by Andreas Draeger and Florian Mittag
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.argparser.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.argparser.ArgParseException;
+import org.argparser.ArgParser;
+import org.argparser.ParseMetrics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link ArgParser#matchArg matchArg} for a single token, depending
+ * on the number of registered options. The matched option is the last one
+ * registered, which is the worst case for a linear scan. The value is stored
+ * either boxed in an {@link org.argparser.ArgHolder} or in an
+ * {@link org.argparser.IntArgHolder}, and optionally counted by a
+ * {@link ParseMetrics}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MatchArgBenchmark {
+  
+  /**
+   * Number of registered options.
+   */
+  @Param({ "10", "100", "1000" })
+  public int options;
+  
+  /**
+   * 
+   */
+  private ArgParser parser;
+  /**
+   * 
+   */
+  private ArgParser primitiveParser;
+  /**
+   * 
+   */
+  private ArgParser observedParser;
+  /**
+   * 
+   */
+  private String[] matching;
+  /**
+   * 
+   */
+  private String[] unmatched;
+  /**
+   * 
+   */
+  private String[] malformed;
+  /**
+   * 
+   */
+  private String misspelled;
+  
+  /**
+   * 
+   */
+  @Setup
+  public void setUp() {
+    parser = Fixtures.numberedParser(options);
+    primitiveParser = Fixtures.numberedParser(options, true);
+    observedParser = Fixtures.numberedParser(options);
+    observedParser.setParseListener(new ParseMetrics());
+    matching = new String[] { "--option-" + (options - 1), "4711" };
+    unmatched = new String[] { "--no-such-option" };
+    malformed = new String[] { "--option-" + (options - 1), "47x11" };
+    misspelled = "--optoin-" + (options - 1);
+    parser.getSuggestions(misspelled);
+  }
+  
+  /**
+   * 
+   * @return
+   * @throws ArgParseException
+   */
+  @Benchmark
+  public int matchingOption() throws ArgParseException {
+    return parser.matchArg(matching, 0);
+  }
+  
+  /**
+   * 
+   * @return
+   * @throws ArgParseException
+   */
+  @Benchmark
+  public int matchingPrimitiveOption() throws ArgParseException {
+    return primitiveParser.matchArg(matching, 0);
+  }
+  
+  /**
+   * 
+   * @return
+   * @throws ArgParseException
+   */
+  @Benchmark
+  public int matchingObservedOption() throws ArgParseException {
+    return observedParser.matchArg(matching, 0);
+  }
+  
+  /**
+   * 
+   * @return
+   * @throws ArgParseException
+   */
+  @Benchmark
+  public int unmatchedArgument() throws ArgParseException {
+    return parser.matchArg(unmatched, 0);
+  }
+  
+  /**
+   * An erroneous value, which is reported through the error message.
+   * 
+   * @return
+   */
+  @Benchmark
+  public String[] malformedValue() {
+    return parser.matchAllArgs(malformed, 0, 0);
+  }
+  
+  /**
+   * Suggestions for a misspelled option, with the BK-tree already built.
+   * 
+   * @return
+   */
+  @Benchmark
+  public String[] suggestions() {
+    return parser.getSuggestions(misspelled);
+  }
+}
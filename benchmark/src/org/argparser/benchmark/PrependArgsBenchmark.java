@@ -0,0 +1,145 @@
+/*
+ * Copyright 2011-2013 by Andreas Draeger and Florian Mittag
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.argparser.benchmark;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.argparser.ArgFileReader;
+import org.argparser.ArgParser;
+import org.argparser.MappedArgFile;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures reading arguments from option files with
+ * {@link ArgParser#prependArgs(File, String[]) prependArgs}, and matching them
+ * after reading them line by line, directly from an {@link ArgFileReader}, or
+ * from a {@link MappedArgFile}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PrependArgsBenchmark {
+  
+  /**
+   * Number of lines in the option file.
+   */
+  @Param({ "1000", "100000" })
+  public int lines;
+  
+  /**
+   * 
+   */
+  private File file;
+  /**
+   * 
+   */
+  private String[] args;
+  /**
+   * 
+   */
+  private Fixtures.LauncherHolders holders;
+  /**
+   * 
+   */
+  private ArgParser parser;
+  
+  /**
+   * 
+   * @throws IOException
+   */
+  @Setup
+  public void setUp() throws IOException {
+    file = Fixtures.launcherArgFile(lines);
+    args = new String[] { "-v", "job-1" };
+    holders = new Fixtures.LauncherHolders(false);
+    parser = Fixtures.launcherParser(holders);
+  }
+  
+  /**
+   * 
+   */
+  @TearDown
+  public void tearDown() {
+    file.delete();
+  }
+  
+  /**
+   * 
+   * @return
+   * @throws IOException
+   */
+  @Benchmark
+  public String[] prependArgs() throws IOException {
+    return ArgParser.prependArgs(file, args);
+  }
+  
+  /**
+   * 
+   * @return
+   * @throws IOException
+   */
+  @Benchmark
+  public String[] matchStreamed() throws IOException {
+    holders.clear();
+    ArgFileReader reader = new ArgFileReader(file);
+    try {
+      return parser.matchAllArgs(reader, 0);
+    } finally {
+      reader.close();
+    }
+  }
+  
+  /**
+   * 
+   * @return
+   * @throws IOException
+   */
+  @Benchmark
+  public String[] matchLineByLine() throws IOException {
+    holders.clear();
+    return parser.matchAllArgs(ArgParser.prependArgs(new FileReader(file),
+      null), 0, 0);
+  }
+  
+  /**
+   * 
+   * @return
+   * @throws IOException
+   */
+  @Benchmark
+  public String[] matchMapped() throws IOException {
+    holders.clear();
+    return parser.matchAllArgs(new MappedArgFile(file), 0);
+  }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2011-2013 by Andreas Draeger and Florian Mittag
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.argparser.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.argparser.ArgHolder;
+import org.argparser.ArgParseException;
+import org.argparser.ArgParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the range check of options whose range is a set of single values,
+ * depending on the number of values. The matched value is the last one of the
+ * range specification.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RangeCheckBenchmark {
+  
+  /**
+   * Number of values in the ranges.
+   */
+  @Param({ "4", "32", "256" })
+  public int values;
+  
+  /**
+   * 
+   */
+  private ArgParser parser;
+  /**
+   * 
+   */
+  private String[] mode;
+  /**
+   * 
+   */
+  private String[] level;
+  /**
+   * 
+   */
+  private String[] separator;
+  
+  /**
+   * 
+   */
+  @Setup
+  public void setUp() {
+    StringBuilder modes = new StringBuilder();
+    StringBuilder levels = new StringBuilder();
+    for (int i = 0; i < values; i++) {
+      modes.append(i == 0 ? "" : ",").append("mode-").append(i);
+      levels.append(i == 0 ? "" : ",").append((long) i * i);
+    }
+    parser = new ArgParser("java Benchmark [options]", false);
+    parser.addOption("--mode %s{" + modes + "}", new ArgHolder<String>(
+      String.class));
+    parser.addOption("--level %d{" + levels + "}", new ArgHolder<Long>(
+      Long.class));
+    parser.addOption("--separator %c{',',';',':','\\t',[a,z]}",
+      new ArgHolder<Character>(Character.class));
+    mode = new String[] { "--mode", "mode-" + (values - 1) };
+    level = new String[] { "--level",
+        Long.toString((long) (values - 1) * (values - 1)) };
+    separator = new String[] { "--separator", "\\t" };
+  }
+  
+  /**
+   * 
+   * @return
+   * @throws ArgParseException
+   */
+  @Benchmark
+  public int stringSet() throws ArgParseException {
+    return parser.matchArg(mode, 0);
+  }
+  
+  /**
+   * 
+   * @return
+   * @throws ArgParseException
+   */
+  @Benchmark
+  public int integerSet() throws ArgParseException {
+    return parser.matchArg(level, 0);
+  }
+  
+  /**
+   * 
+   * @return
+   * @throws ArgParseException
+   */
+  @Benchmark
+  public int characterSet() throws ArgParseException {
+    return parser.matchArg(separator, 0);
+  }
+}
@@ -0,0 +1,355 @@
+/*
+ * Copyright 2011-2013 by Andreas Draeger and Florian Mittag
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.argparser;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.List;
+
+/**
+ * Reads arguments from an option file one token at a time. The file is
+ * decoded through a fixed-size {@link ByteBuffer} and {@link CharBuffer}, so
+ * that the memory needed does not depend on the size of the file but only on
+ * the length of the longest token.
+ * 
+ * <p>
+ * The syntax is the same as for {@link ArgParser#prependArgs(File, String[])
+ * prependArgs}: arguments are delimited by either whitespace or double quotes
+ * {@code "}, quoted strings may contain escape sequences, and the character
+ * {@code #} causes input to the end of the current line to be ignored.
+ * 
+ * <pre>
+ * ArgFileReader reader = new ArgFileReader(new File(&quot;shards.args&quot;));
+ * try {
+ *   String[] unmatched = parser.matchAllArgs(reader, 0);
+ *   ...
+ * } finally {
+ *   reader.close();
+ * }
+ * </pre>
+ * 
+ * @see ArgParser#readArgs(File)
+ * @see ArgParser#matchAllArgs(ArgFileReader, int)
+ */
+public class ArgFileReader implements Closeable {
+  
+  /**
+   * Size of the byte and character buffers.
+   */
+  private static final int BUFFER_SIZE = 8192;
+  
+  /**
+   * 
+   */
+  private final ReadableByteChannel channel;
+  /**
+   * 
+   */
+  private final CharsetDecoder decoder;
+  /**
+   * 
+   */
+  private final ByteBuffer bytes;
+  /**
+   * 
+   */
+  private final CharBuffer chars;
+  /**
+   * Collects the characters of the current token; reused for all tokens.
+   */
+  private final StringBuilder token = new StringBuilder();
+  /**
+   * 
+   */
+  private boolean endOfInput = false;
+  /**
+   * A character that has been read ahead, or -1.
+   */
+  private int pushback = -1;
+  /**
+   * Number of the current line, starting at 1.
+   */
+  private int lineNumber = 1;
+  
+  /**
+   * Opens an option file, decoding it with the platform's default charset
+   * like a {@link java.io.FileReader}.
+   * 
+   * @param file
+   * @throws IOException
+   *         if the file cannot be opened
+   */
+  public ArgFileReader(File file) throws IOException {
+    this(new FileInputStream(file).getChannel(), Charset.defaultCharset());
+  }
+  
+  /**
+   * Reads arguments from a channel. Malformed input is replaced by the
+   * charset's replacement character.
+   * 
+   * @param channel
+   *        the channel, which is closed by {@link #close()}
+   * @param charset
+   *        the encoding of the channel's content
+   */
+  public ArgFileReader(ReadableByteChannel channel, Charset charset) {
+    this.channel = channel;
+    this.decoder = charset.newDecoder().onMalformedInput(
+      CodingErrorAction.REPLACE).onUnmappableCharacter(
+      CodingErrorAction.REPLACE);
+    this.bytes = ByteBuffer.allocate(BUFFER_SIZE);
+    this.chars = CharBuffer.allocate(BUFFER_SIZE);
+    this.chars.flip();
+  }
+  
+  /**
+   * 
+   * @return the number of the line at which reading currently takes place,
+   *         starting at 1.
+   */
+  public int getLineNumber() {
+    return lineNumber;
+  }
+  
+  /**
+   * Decodes the next chunk of input into {@link #chars}.
+   * 
+   * @return {@code false} if the end of the input has been reached.
+   * @throws IOException
+   */
+  private boolean fill() throws IOException {
+    chars.clear();
+    while (chars.position() == 0) {
+      if (endOfInput) {
+        decoder.flush(chars);
+        break;
+      }
+      if (channel.read(bytes) == -1) {
+        endOfInput = true;
+      }
+      bytes.flip();
+      CoderResult cr = decoder.decode(bytes, chars, endOfInput);
+      if (cr.isError()) {
+        cr.throwException();
+      }
+      bytes.compact();
+    }
+    chars.flip();
+    return chars.hasRemaining();
+  }
+  
+  /**
+   * 
+   * @return the next character, or -1 at the end of the input.
+   * @throws IOException
+   */
+  private int read() throws IOException {
+    if (pushback != -1) {
+      int c = pushback;
+      pushback = -1;
+      return c;
+    }
+    if (!chars.hasRemaining() && !fill()) { return -1; }
+    return chars.get();
+  }
+  
+  /**
+   * 
+   * @param c
+   */
+  private void unread(int c) {
+    pushback = c;
+  }
+  
+  /**
+   * 
+   * @param c
+   * @return
+   */
+  private static boolean isLineEnd(int c) {
+    return c == '\n' || c == '\r';
+  }
+  
+  /**
+   * Consumes a line terminator ({@code \n}, {@code \r} or {@code \r\n}), the
+   * first character of which has already been read.
+   * 
+   * @param c
+   * @throws IOException
+   */
+  private void endLine(int c) throws IOException {
+    if (c == '\r') {
+      int next = read();
+      if (next != '\n' && next != -1) {
+        unread(next);
+      }
+    }
+    lineNumber++;
+  }
+  
+  /**
+   * 
+   * @return
+   */
+  private IOException malformed() {
+    return new IOException("malformed string, line " + lineNumber);
+  }
+  
+  /**
+   * Returns the next argument.
+   * 
+   * @return the argument, or {@code null} at the end of the input
+   * @throws IOException
+   *         if an error occurred while reading, or if a quoted string is
+   *         malformed
+   */
+  public String next() throws IOException {
+    int c;
+    while ((c = read()) != -1) {
+      if (c == '#') {
+        while ((c = read()) != -1 && !isLineEnd(c)) {
+          // skip comment
+        }
+        if (c == -1) { return null; }
+      }
+      if (isLineEnd(c)) {
+        endLine(c);
+      } else if (!Character.isWhitespace((char) c)) {
+        token.setLength(0);
+        if (c == '"') {
+          scanQuoted();
+        } else {
+          token.append((char) c);
+          scanUnquoted();
+        }
+        return token.toString();
+      }
+    }
+    return null;
+  }
+  
+  /**
+   * Reads the remainder of a token that ends with whitespace, a comment or the
+   * end of the input.
+   * 
+   * @throws IOException
+   */
+  private void scanUnquoted() throws IOException {
+    int c;
+    while ((c = read()) != -1) {
+      if (c == '#' || Character.isWhitespace((char) c)) {
+        unread(c);
+        break;
+      }
+      token.append((char) c);
+    }
+  }
+  
+  /**
+   * Reads the remainder of a quoted string, following the rules of
+   * {@link StringScanner#scanQuotedString()}. Since comments end the line, a
+   * quoted string cannot contain {@code #}.
+   * 
+   * @throws IOException
+   */
+  private void scanQuoted() throws IOException {
+    int c;
+    while ((c = read()) != '"') {
+      if (c == -1 || c == '#' || isLineEnd(c)) { throw malformed(); }
+      if (c == '\\') {
+        c = scanEscape();
+      }
+      token.append((char) c);
+    }
+  }
+  
+  /**
+   * Reads an escape sequence following a backslash, as in
+   * {@link StringScanner#scanUnquotedChar()}.
+   * 
+   * @return the escaped character
+   * @throws IOException
+   */
+  private int scanEscape() throws IOException {
+    int c = read();
+    switch (c) {
+      case '"':
+      case '\'':
+      case '\\':
+        return c;
+      case 'n':
+        return '\n';
+      case 't':
+        return '\t';
+      case 'b':
+        return '\b';
+      case 'r':
+        return '\r';
+      case 'f':
+        return '\f';
+      default:
+        if ('0' <= c && c < '8') {
+          int v = c - '0';
+          for (int j = 0; j < 2; j++) {
+            c = read();
+            if ('0' <= c && c < '8' && (v * 8 + (c - '0')) <= 255) {
+              v = v * 8 + (c - '0');
+            } else {
+              if (c != -1) {
+                unread(c);
+              }
+              break;
+            }
+          }
+          return v;
+        }
+        throw malformed();
+    }
+  }
+  
+  /**
+   * Appends all remaining arguments to a list.
+   * 
+   * @param list
+   * @throws IOException
+   */
+  public void readAll(List<String> list) throws IOException {
+    String arg;
+    while ((arg = next()) != null) {
+      list.add(arg);
+    }
+  }
+  
+  /*
+   * (non-Javadoc)
+   * 
+   * @see java.io.Closeable#close()
+   */
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+}
@@ -169,7 +169,7 @@ public class ArgHolder<V> implements Cloneable, Serializable {
   @Override
   public boolean equals(Object o) {
     if (o == this) { return true; }
-    if (o.getClass().equals(ArgHolder.class)) {
+    if (o.getClass().equals(getClass())) {
       ArgHolder<?> v = (ArgHolder<?>) o;
       boolean equal = getType().equals(v.getType());
       equal &= v.isSetValue() == isSetValue();
@@ -212,7 +212,7 @@ public class ArgHolder<V> implements Cloneable, Serializable {
    * @return the {@link #value} if it is set, the default otherwise
    */
   public V getFinalValue() {
-    if (isSetValue()) { return value; }
+    if (isSetValue()) { return getValue(); }
     return defaultValue;
   }
   
@@ -224,7 +224,7 @@ public class ArgHolder<V> implements Cloneable, Serializable {
   @Override
   public int hashCode() {
     int hash = super.hashCode() + 7;
-    hash += clazz.hashCode() + (isSetValue() ? value.hashCode() : 0);
+    hash += clazz.hashCode() + (isSetValue() ? getValue().hashCode() : 0);
     hash += (defaultValue != null ? defaultValue.hashCode() : 0);
     return hash;
   }
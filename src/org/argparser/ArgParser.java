@@ -17,16 +17,26 @@
  */
 package org.argparser;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
 import java.io.LineNumberReader;
 import java.io.PrintStream;
 import java.io.Reader;
+import java.io.Writer;
 import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Properties;
 import java.util.StringTokenizer;
 import java.util.Vector;
+import java.util.function.Supplier;
 
 /**
  * ArgParser is used to parse the command line arguments for a java
@@ -261,6 +271,30 @@ import java.util.Vector;
  * initialized to {@code 1.2}, {@code 1000}, and {@code -78}, and store them in
  * {@code vec}.
  * 
+ * <p>
+ * Options that are repeated very often are better served by one of the
+ * {@link ValueList} holders {@link IntList}, {@link LongList},
+ * {@link DoubleList} or {@link StringList}, which store the values of all
+ * invocations in a single array without creating a holder for each of them:
+ * 
+ * <pre>
+ * DoubleList list = new DoubleList();
+ * 
+ * parser.addOption(&quot;-foo %f&quot;, list);
+ * parser.matchAllArgs(args);
+ * </pre>
+ * 
+ * leaves {@code list.size() == 3} and {@code list.get(2) == -78} for the
+ * argument list above. For options with a multiplier, the width of the list
+ * must equal the multiplier.
+ * 
+ * <p>
+ * Similarly, single values can be stored without boxing them by one of the
+ * {@link PrimitiveArgHolder} subclasses {@link IntArgHolder},
+ * {@link LongArgHolder}, {@link FloatArgHolder}, {@link DoubleArgHolder},
+ * {@link BooleanArgHolder} and {@link CharArgHolder}, whose values are read
+ * with {@code getAsInt()}, {@code getAsLong()}, and so on.
+ * 
  * <h3><a name="helpInfo">Generating help information</a></h3>
  * 
  * ArgParser automatically generates help information for the options, and this
@@ -385,6 +419,57 @@ import java.util.Vector;
  * </pre>
  * 
  * This makes it easy to generate simple configuration files for an application.
+ * 
+ * <h3><a name="fallbacks">Environment Variables and System Properties</a></h3>
+ * 
+ * An option may name an environment variable and a system property from which
+ * its value is taken if it does not appear among the arguments. They are
+ * declared by sections {@code #env=NAME} and {@code #prop=name} at the end of
+ * the specification string, after the help text:
+ * 
+ * <pre>
+ * parser.addOption (&quot;-t,--threads %d{[1,512]} #number of threads&quot;
+ *    + &quot;#env=APP_THREADS#prop=app.threads&quot;, threads);
+ * </pre>
+ * 
+ * At the end of each of the {@code matchAllArgs} methods, the options with such
+ * fallbacks whose result holder has not been set (see
+ * {@link ArgHolder#isSetValue()}) are set from the system property or, if it is
+ * not defined, from the environment variable. The values are converted and
+ * checked against the option's range just like arguments, and an erroneous
+ * value is reported like an erroneous argument. Fallbacks require a result
+ * holder derived from {@link ArgHolder} and are not supported for options with
+ * multipliers or for the conversion codes {@code %v} and {@code %h}.
+ * 
+ * <h3><a name="subcommands">Subcommands</a></h3>
+ * 
+ * Tools like {@code tool build ...} and {@code tool deploy ...} register each
+ * subcommand with {@link #addSubcommand addSubcommand}, together with a
+ * {@link Supplier} of the parser for its own options. The supplier is only
+ * invoked if the subcommand is selected, so the parsers of the other
+ * subcommands are never built:
+ * 
+ * <pre>
+ *    parser.addSubcommand (&quot;build&quot;, &quot;compiles the sources&quot;,
+ *       new Supplier&lt;ArgParser&gt;() {
+ *          public ArgParser get() {
+ *             return createBuildParser();
+ *          }
+ *       });
+ *    ...
+ *    String[] unmatched = parser.matchAllArgs (args, 0, 0);
+ *    if (&quot;build&quot;.equals (parser.getSelectedSubcommand())) {
+ *       ...
+ *    }
+ * </pre>
+ * 
+ * {@link #matchAllArgs(String[],int,int) matchAllArgs} matches the options of
+ * the parent parser until the first argument that is not one of its options.
+ * If that argument names a subcommand, the remaining arguments are matched by
+ * the subcommand's parser. The other {@code matchAllArgs} methods, which read
+ * their arguments through a window, do not select subcommands, and neither
+ * does a {@link CompiledArgParser}; they, and {@link #compile()}, throw an
+ * {@link IllegalStateException} if a parser has any.
  */
 public class ArgParser {
   
@@ -413,6 +498,10 @@ public class ArgParser {
 	 * 
 	 */
   private PrintStream printStream = System.out;
+  /**
+   * Notified about every matched argument, if not {@code null}.
+   */
+  private ParseListener parseListener = null;
   /**
 	 * 
 	 */
@@ -429,6 +518,49 @@ public class ArgParser {
 	 * 
 	 */
   private String unmatchedArg = null;
+  /**
+   * Lookup structure for the names in {@link #matchList}. It is built lazily
+   * by {@link #getOptionIndex()} and discarded whenever the match list changes.
+   */
+  private OptionIndex optionIndex = null;
+  /**
+   * Subcommands by name, in the order in which they have been added, or
+   * {@code null} if there are none.
+   */
+  private Map<String, Subcommand> subcommands = null;
+  /**
+   * The subcommand selected by the last call of
+   * {@link #matchAllArgs(String[], int, int)}, if any.
+   */
+  private Subcommand selectedSubcommand = null;
+  /**
+   * The records in {@link #matchList} that declare an environment variable or
+   * a system property, so that resolving them does not scan the whole match
+   * list.
+   */
+  private final List<Record> fallbackRecords = new ArrayList<Record>();
+  /**
+   * Receives the errors of {@link #matchArg(CharSequence[], int, MatchError)}.
+   */
+  private final MatchError matchError = new MatchError();
+  /**
+   * The help message rendered by the last call of {@link #getHelpMessage()},
+   * or {@code null} if the options or the synopsis have changed since. It is
+   * only valid for the formatting settings it was rendered with.
+   */
+  private String helpMessage = null;
+  /**
+   * The value of {@link #consoleColumns} for {@link #helpMessage}.
+   */
+  private int helpMessageColumns;
+  /**
+   * The value of {@link #helpIndent} for {@link #helpMessage}.
+   */
+  private int helpMessageIndent;
+  /**
+   * The value of {@link #helpOptionsEnabled} for {@link #helpMessage}.
+   */
+  private boolean helpMessageEnabled;
   
   /**
    * 
@@ -938,6 +1070,13 @@ public class ArgParser {
       return convertCode;
     }
     
+    /**
+     * @return the rangeDesc
+     */
+    public String getRangeDesc() {
+      return rangeDesc;
+    }
+    
     /**
 	    * 
 	    */
@@ -950,6 +1089,26 @@ public class ArgParser {
 	    * 
 	    */
     private RangeAtom rangeTail = null;
+    /**
+     * The compiled range, built when it is first needed.
+     */
+    private RangeIndex rangeIndex = null;
+    /**
+     * The values offered by {@link ArgParser#complete(String[], int)}, built
+     * when they are first needed.
+     */
+    private String[] valueChoices = null;
+    /**
+     * The environment variable that supplies the value if the option does not
+     * appear among the arguments, or {@code null}.
+     */
+    private String envName = null;
+    /**
+     * The system property that supplies the value if the option does not
+     * appear among the arguments, or {@code null}; it takes precedence over
+     * {@link #envName}.
+     */
+    private String propName = null;
     /**
 	    * 
 	    */
@@ -1004,6 +1163,50 @@ public class ArgParser {
         rangeTail.next = ra;
       }
       rangeTail = ra;
+      rangeIndex = null;
+      valueChoices = null;
+    }
+    
+    /**
+     * 
+     * @return the compiled range of this record, which must have at least one
+     *         range atom.
+     */
+    RangeIndex getRangeIndex() {
+      RangeIndex index = rangeIndex;
+      if (index == null) {
+        rangeIndex = index = new RangeIndex(rangeList, type);
+      }
+      return index;
+    }
+    
+    /**
+     * 
+     * @return the values that may be completed, in ascending order: the single
+     *         strings of the range of a string option, the accepted values of
+     *         a {@code %b} option, and none for all other options.
+     */
+    String[] getValueChoices() {
+      String[] choices = valueChoices;
+      if (choices == null) {
+        List<String> list = new ArrayList<String>();
+        if (type == STRING) {
+          for (RangeAtom ra = rangeList; ra != null; ra = ra.next) {
+            if ((ra.high == null) && !list.contains(ra.low.sval)) {
+              list.add(ra.low.sval);
+            }
+          }
+        } else if (convertCode == 'b') {
+          for (boolean b : new boolean[] { false, true }) {
+            if (withinRange(b)) {
+              list.add(String.valueOf(b));
+            }
+          }
+        }
+        Collections.sort(list);
+        valueChoices = choices = list.toArray(new String[list.size()]);
+      }
+      return choices;
     }
     
     /**
@@ -1013,10 +1216,7 @@ public class ArgParser {
      */
     public boolean withinRange(double d) {
       if (rangeList == null) { return true; }
-      for (RangeAtom ra = rangeList; ra != null; ra = ra.next) {
-        if (ra.match(d)) { return true; }
-      }
-      return false;
+      return getRangeIndex().contains(d);
     }
     
     /**
@@ -1026,10 +1226,7 @@ public class ArgParser {
      */
     public boolean withinRange(long l) {
       if (rangeList == null) { return true; }
-      for (RangeAtom ra = rangeList; ra != null; ra = ra.next) {
-        if (ra.match(l)) { return true; }
-      }
-      return false;
+      return getRangeIndex().contains(l);
     }
     
     /**
@@ -1039,10 +1236,7 @@ public class ArgParser {
      */
     public boolean withinRange(String s) {
       if (rangeList == null) { return true; }
-      for (RangeAtom ra = rangeList; ra != null; ra = ra.next) {
-        if (ra.match(s)) { return true; }
-      }
-      return false;
+      return getRangeIndex().contains(s);
     }
     
     /**
@@ -1052,10 +1246,7 @@ public class ArgParser {
      */
     public boolean withinRange(boolean b) {
       if (rangeList == null) { return true; }
-      for (RangeAtom ra = rangeList; ra != null; ra = ra.next) {
-        if (ra.match(b)) { return true; }
-      }
-      return false;
+      return getRangeIndex().contains(b);
     }
     
     /**
@@ -1063,33 +1254,7 @@ public class ArgParser {
      * @return
      */
     public String valTypeName() {
-      switch (convertCode) {
-        case 'i': {
-          return ("integer");
-        }
-        case 'o': {
-          return ("octal integer");
-        }
-        case 'd': {
-          return ("decimal integer");
-        }
-        case 'x': {
-          return ("hex integer");
-        }
-        case 'c': {
-          return ("char");
-        }
-        case 'b': {
-          return ("boolean");
-        }
-        case 'f': {
-          return ("float");
-        }
-        case 's': {
-          return ("string");
-        }
-      }
-      return ("unknown");
+      return ArgParser.valTypeName(convertCode);
     }
     
     /**
@@ -1100,59 +1265,147 @@ public class ArgParser {
      * @param resultIdx
      * @throws ArgParseException
      */
-    @SuppressWarnings("unchecked")
     public void scanValue(Object result, String name, String s, int resultIdx)
       throws ArgParseException {
+      scanValue(result, name, s, 0, s.length(), resultIdx);
+    }
+    
+    /**
+     * 
+     * @param result
+     * @param name
+     * @param s
+     * @param resultIdx
+     * @throws ArgParseException
+     */
+    void scanValue(Object result, String name, CharSequence s, int resultIdx)
+      throws ArgParseException {
+      scanValue(result, name, s, 0, s.length(), resultIdx);
+    }
+    
+    /**
+     * 
+     * @param result
+     * @param name
+     * @param s
+     * @param start
+     * @param end
+     * @param resultIdx
+     * @throws ArgParseException
+     * @see #scanValue(Object, CharSequence, int, int, int)
+     */
+    void scanValue(Object result, String name, CharSequence s, int start,
+      int end, int resultIdx) throws ArgParseException {
+      int status = scanValue(result, s, start, end, resultIdx);
+      if (status != MatchError.OK) {
+        MatchError err = new MatchError();
+        err.set(this, name, status, s.subSequence(start, end).toString());
+        throw err.toException();
+      }
+    }
+    
+    /**
+     * Scans the value contained in the region {@code start} to {@code end}
+     * of {@code s} and stores it in {@code result}. Plain numbers are scanned
+     * in place by {@link NumberScanner}, so that storing them into a primitive
+     * array allocates nothing; all other values go through a
+     * {@link StringScanner}. Errors are reported by the returned status
+     * instead of an exception.
+     * 
+     * @param result
+     * @param s
+     * @param start
+     * @param end
+     * @param resultIdx
+     * @return {@link MatchError#OK}, {@link MatchError#CONTIGUOUS},
+     *         {@link MatchError#MALFORMED} or {@link MatchError#RANGE}
+     */
+    @SuppressWarnings("unchecked")
+    int scanValue(Object result, CharSequence s, int start, int end,
+      int resultIdx) {
       double dval = 0;
       String sval = null;
       long lval = 0;
       boolean bval = false;
+      boolean scanned = false;
       
-      if (s.length() == 0) { throw new ArgParseException(name,
-        "requires a contiguous value"); }
-      StringScanner scanner = new StringScanner(s);
-      try {
-        switch (convertCode) {
-          case 'i': {
-            lval = scanner.scanInt();
-            break;
-          }
-          case 'o': {
-            lval = scanner.scanInt(8, false);
-            break;
-          }
-          case 'd': {
-            lval = scanner.scanInt(10, false);
-            break;
-          }
-          case 'x': {
-            lval = scanner.scanInt(16, false);
-            break;
+      if (start == end) { return MatchError.CONTIGUOUS; }
+      switch (convertCode) {
+        case 'i': {
+          if (scanned = NumberScanner.isPlainInteger(s, start, end)) {
+            lval = NumberScanner.parsePlainInteger(s, start, end);
           }
-          case 'c': {
-            lval = scanner.scanChar();
-            break;
+          break;
+        }
+        case 'o': {
+          if (scanned = NumberScanner.isPlainInt(s, start, end, 8)) {
+            lval = NumberScanner.parsePlainInt(s, start, end, 8);
           }
-          case 'b': {
-            bval = scanner.scanBoolean();
-            break;
+          break;
+        }
+        case 'd': {
+          if (scanned = NumberScanner.isPlainInt(s, start, end, 10)) {
+            lval = NumberScanner.parsePlainInt(s, start, end, 10);
           }
-          case 'f': {
-            dval = scanner.scanDouble();
-            break;
+          break;
+        }
+        case 'x': {
+          if (scanned = NumberScanner.isPlainInt(s, start, end, 16)) {
+            lval = NumberScanner.parsePlainInt(s, start, end, 16);
           }
-          case 's': {
-            sval = scanner.getString();
-            break;
+          break;
+        }
+        case 'f': {
+          dval = NumberScanner.parsePlainDouble(s, start, end);
+          scanned = !Double.isNaN(dval);
+          break;
+        }
+        case 's': {
+          sval = s.subSequence(start, end).toString();
+          scanned = true;
+          break;
+        }
+      }
+      if (!scanned) {
+        String str = s.subSequence(start, end).toString();
+        StringScanner scanner = new StringScanner(str);
+        try {
+          switch (convertCode) {
+            case 'i': {
+              lval = scanner.scanInt();
+              break;
+            }
+            case 'o': {
+              lval = scanner.scanInt(8, false);
+              break;
+            }
+            case 'd': {
+              lval = scanner.scanInt(10, false);
+              break;
+            }
+            case 'x': {
+              lval = scanner.scanInt(16, false);
+              break;
+            }
+            case 'c': {
+              lval = scanner.scanChar();
+              break;
+            }
+            case 'b': {
+              bval = scanner.scanBoolean();
+              break;
+            }
+            case 'f': {
+              dval = scanner.scanDouble();
+              break;
+            }
           }
+        } catch (StringScanException e) {
+          return MatchError.MALFORMED;
         }
-      } catch (StringScanException e) {
-        throw new ArgParseException(name, "malformed " + valTypeName() + " '"
-            + s + "'");
+        scanner.skipWhiteSpace();
+        if (!scanner.atEnd()) { return MatchError.MALFORMED; }
       }
-      scanner.skipWhiteSpace();
-      if (!scanner.atEnd()) { throw new ArgParseException(name, "malformed "
-          + valTypeName() + " '" + s + "'"); }
       boolean outOfRange = false;
       switch (type) {
         case CHAR:
@@ -1175,11 +1428,27 @@ public class ArgParser {
           break;
         }
       }
-      if (outOfRange) { //String errmsg = "value " + s + " not in range ";
-        throw new ArgParseException(name, "value '" + s + "' not in range "
-            + rangeDesc);
-      }
-      if (result.getClass().isArray()) {
+      if (outOfRange) { return MatchError.RANGE; }
+      if (result instanceof ValueList) {
+        switch (type) {
+          case INT: {
+            ((IntList) result).put(resultIdx, (int) lval);
+            break;
+          }
+          case LONG: {
+            ((LongList) result).put(resultIdx, lval);
+            break;
+          }
+          case DOUBLE: {
+            ((DoubleList) result).put(resultIdx, dval);
+            break;
+          }
+          case STRING: {
+            ((StringList) result).put(resultIdx, sval);
+            break;
+          }
+        }
+      } else if (result.getClass().isArray()) {
         switch (type) {
           case BOOLEAN: {
             ((boolean[]) result)[resultIdx] = bval;
@@ -1213,28 +1482,53 @@ public class ArgParser {
       } else {
         switch (type) {
           case BOOLEAN: {
-            ((ArgHolder<Boolean>) result).setValue(Boolean.valueOf(bval));
+            if (result instanceof BooleanArgHolder) {
+              ((BooleanArgHolder) result).set(bval);
+            } else {
+              ((ArgHolder<Boolean>) result).setValue(Boolean.valueOf(bval));
+            }
             break;
           }
           case CHAR: {
-            ((ArgHolder<Character>) result).setValue(Character
-                .valueOf((char) lval));
+            if (result instanceof CharArgHolder) {
+              ((CharArgHolder) result).set((char) lval);
+            } else {
+              ((ArgHolder<Character>) result).setValue(Character
+                  .valueOf((char) lval));
+            }
             break;
           }
           case INT: {
-            ((ArgHolder<Integer>) result).setValue(Integer.valueOf((int) lval));
+            if (result instanceof IntArgHolder) {
+              ((IntArgHolder) result).set((int) lval);
+            } else {
+              ((ArgHolder<Integer>) result).setValue(Integer
+                  .valueOf((int) lval));
+            }
             break;
           }
           case LONG: {
-            ((ArgHolder<Long>) result).setValue(lval);
+            if (result instanceof LongArgHolder) {
+              ((LongArgHolder) result).set(lval);
+            } else {
+              ((ArgHolder<Long>) result).setValue(lval);
+            }
             break;
           }
           case FLOAT: {
-            ((ArgHolder<Float>) result).setValue(Float.valueOf((float) dval));
+            if (result instanceof FloatArgHolder) {
+              ((FloatArgHolder) result).set((float) dval);
+            } else {
+              ((ArgHolder<Float>) result).setValue(Float.valueOf((float) dval));
+            }
             break;
           }
           case DOUBLE: {
-            ((ArgHolder<Double>) result).setValue(Double.valueOf(dval));
+            if (result instanceof DoubleArgHolder) {
+              ((DoubleArgHolder) result).set(dval);
+            } else {
+              ((ArgHolder<Double>) result).setValue(Double.valueOf(dval));
+            }
             break;
           }
           case STRING: {
@@ -1243,34 +1537,196 @@ public class ArgParser {
           }
         }
       }
+      return MatchError.OK;
     }
     
     /**
+     * Whether every occurrence of this option is stored separately (i.e., the
+     * result holder is a {@link Vector} or a {@link ValueList}) rather than
+     * overwriting the previous value.
+     * 
      * @return
      */
-    public boolean isVisible() {
-      return isVisible;
+    boolean storesAllOccurrences() {
+      return (resHolder instanceof Vector<?>)
+          || (resHolder instanceof ValueList);
     }
     
     /**
+     * Creates a new result holder suitable for storing one set of values of
+     * this record.
      * 
-     * @param visible
      * @return
      */
-    public void setVisible(boolean visible) {
-      isVisible = visible;
+    Object createResultHolder() {
+      if (numValues == 1) {
+        switch (type) {
+          case INT: {
+            return new ArgHolder<Integer>(Integer.class);
+          }
+          case LONG: {
+            return new ArgHolder<Long>(Long.class);
+          }
+          case CHAR: {
+            return new ArgHolder<Character>(Character.class);
+          }
+          case BOOLEAN: {
+            return new ArgHolder<Boolean>(Boolean.class);
+          }
+          case FLOAT: {
+            return new ArgHolder<Float>(Float.class);
+          }
+          case DOUBLE: {
+            return new ArgHolder<Double>(Double.class);
+          }
+          case STRING: {
+            return new ArgHolder<String>(String.class);
+          }
+        }
+      } else {
+        switch (type) {
+          case INT: {
+            return new int[numValues];
+          }
+          case LONG: {
+            return new long[numValues];
+          }
+          case CHAR: {
+            return new char[numValues];
+          }
+          case BOOLEAN: {
+            return new boolean[numValues];
+          }
+          case FLOAT: {
+            return new float[numValues];
+          }
+          case DOUBLE: {
+            return new double[numValues];
+          }
+          case STRING: {
+            return new String[numValues];
+          }
+        }
+      }
+      return null; // can't happen
     }
-  }
-  
-  /**
-   * 
-   * @return
-   */
-  private String firstHelpOptionName() {
-    if (firstHelpOption != null) {
-      return firstHelpOption.nameList.name;
-    } else {
-      return null;
+    
+    /**
+     * 
+     * @param result
+     * @param resultIdx
+     * @param b
+     */
+    @SuppressWarnings("unchecked")
+    private void setBoolean(Object result, int resultIdx, boolean b) {
+      if (result instanceof boolean[]) {
+        ((boolean[]) result)[resultIdx] = b;
+      } else if (result instanceof BooleanArgHolder) {
+        ((BooleanArgHolder) result).set(b);
+      } else {
+        ((ArgHolder<Boolean>) result).setValue(Boolean.valueOf(b));
+      }
+    }
+    
+    /**
+     * Scans the values of this record, which has been matched by the name
+     * {@code ndesc} at location {@code idx} in the argument list, and stores
+     * them in {@code result}. Help options are not handled here.
+     * 
+     * @param result
+     *        the holder to store the values in
+     * @param ndesc
+     *        the name by which the record was matched
+     * @param args
+     *        argument list
+     * @param idx
+     *        location of the option name in the list
+     * @param err
+     *        receives the description of an error
+     * @return location of the last argument that has been consumed, or -1 if
+     *         an error has been reported to {@code err}
+     */
+    int matchValues(Object result, NameDesc ndesc, CharSequence[] args,
+      int idx, MatchError err) {
+      CharSequence arg = args[idx];
+      int status = MatchError.OK;
+      if (convertCode == 'v') {
+        for (int k = 0; k < numValues; k++) {
+          setBoolean(result, k, vval);
+        }
+      } else if (ndesc.oneWord) {
+        status = scanValue(result, arg, ndesc.name.length(), arg.length(), 0);
+      } else if (convertCode != 'b') {
+        if (idx + numValues >= args.length) {
+          err.set(this, ndesc.name, MatchError.REQUIRES_VALUES, null);
+          return -1;
+        }
+        for (int k = 0; k < numValues && status == MatchError.OK; k++) {
+          arg = args[++idx];
+          status = scanValue(result, arg, 0, arg.length(), k);
+        }
+      } else {
+        // special handling of %b to allow for omitting 'true'
+        if (idx + numValues >= args.length) {
+          // last option followed by nothing, so its 'true'
+          setBoolean(result, 0, true);
+        } else if (numValues > 1) {
+          // more than one value, must be a boolean array, proceed as usual
+          for (int k = 0; k < numValues && status == MatchError.OK; k++) {
+            arg = args[++idx];
+            status = scanValue(result, arg, 0, arg.length(), k);
+          }
+        } else {
+          // only one expected value, try to parse it
+          arg = args[++idx];
+          status = scanValue(result, arg, 0, arg.length(), 0);
+          if (status == MatchError.MALFORMED) {
+            // assume that it was omitted and treat it as 'true'
+            setBoolean(result, 0, true);
+            // and decrement the idx again for correct parsing again
+            idx--;
+            status = MatchError.OK;
+          }
+        }
+      }
+      if (status != MatchError.OK) {
+        CharSequence value = ndesc.oneWord ? arg.subSequence(
+          ndesc.name.length(), arg.length()) : arg;
+        err.set(this, ndesc.name, status, value.toString());
+        return -1;
+      }
+      return idx;
+    }
+    
+    /**
+     * @return
+     */
+    public boolean isVisible() {
+      return isVisible;
+    }
+    
+    /**
+     * 
+     * @param visible
+     * @return
+     */
+    public void setVisible(boolean visible) {
+      if (visible != isVisible) {
+        isVisible = visible;
+        helpMessage = null;
+      }
+    }
+  }
+  
+  /**
+   * 
+   * @return
+   */
+  private String firstHelpOptionName() {
+    if (firstHelpOption != null) {
+      return firstHelpOption.nameList.name;
+    } else {
+      return null;
     }
   }
   
@@ -1337,6 +1793,7 @@ public class ArgParser {
    */
   public void setSynopsisString(String s) {
     synopsisString = s;
+    helpMessage = null;
   }
   
   /**
@@ -1391,6 +1848,28 @@ public class ArgParser {
     printStream = stream;
   }
   
+  /**
+   * Returns the listener that is notified about the matching of arguments.
+   * 
+   * @return the listener, or {@code null} if there is none
+   * @see #setParseListener(ParseListener)
+   */
+  public ParseListener getParseListener() {
+    return parseListener;
+  }
+  
+  /**
+   * Sets a listener that is notified about every argument matched by this
+   * parser, e.g., a {@link ParseMetrics}.
+   * 
+   * @param listener
+   *        the listener, or {@code null} to remove the current one
+   * @see ParseListener
+   */
+  public void setParseListener(ParseListener listener) {
+    parseListener = listener;
+  }
+  
   /**
    * Gets the indentation used by {@link #getHelpMessage getHelpMessage}.
    * 
@@ -1484,6 +1963,7 @@ public class ArgParser {
       } else if (c != '}') { throw new IllegalArgumentException(
         "Range spec: ',' or '}' expected"); }
     }
+    rec.getRangeIndex();
     if (rec.numRangeAtoms() == 1) {
       rec.rangeDesc = s.substring(1, s.length() - 1);
     } else {
@@ -1728,6 +2208,18 @@ public class ArgParser {
    * </tr>
    * </table>
    * 
+   * <p>
+   * Finally, the result holder can be a {@link ValueList} whose width equals
+   * the multiplier: an {@link IntList} or {@link LongList} for {@code %i},
+   * {@code %d}, {@code %x} and {@code %o}, a {@link DoubleList} for {@code %f},
+   * or a {@link StringList} for {@code %s}. The values of every occurrence of
+   * the option are then appended to the list.
+   * 
+   * <p>
+   * Instead of an {@link ArgHolder}, a single value can be stored in the
+   * matching {@link PrimitiveArgHolder}, e.g., an {@link IntArgHolder} for
+   * {@code %d}, which does not box it.
+   * 
    * @param spec
    *        the specification string
    * @param resHolder
@@ -1742,6 +2234,28 @@ public class ArgParser {
    *         type.
    */
   public void addOption(String spec, Object resHolder, boolean visible)
+    throws IllegalArgumentException {
+    ParseEvents.Compile event = ParseEvents.beginCompile();
+    try {
+      parseOption(spec, resHolder, visible);
+    } finally {
+      if (event != null) {
+        event.finish(spec, matchList.size());
+      }
+    }
+  }
+  
+  /**
+   * Parses an option specification and adds the resulting record to the match
+   * list.
+   * 
+   * @param spec
+   * @param resHolder
+   * @param visible
+   * @throws IllegalArgumentException
+   * @see #addOption(String, Object, boolean)
+   */
+  private void parseOption(String spec, Object resHolder, boolean visible)
     throws IllegalArgumentException {
     // null terminated string is easier to parse
     StringScanner scanner = new StringScanner(spec);
@@ -1809,11 +2323,12 @@ public class ArgParser {
         case 'd':
         case 'x': {
           if (((resHolder instanceof ArgHolder<?>) && (((ArgHolder<?>) resHolder)
-              .getType().equals(Long.class))) || (resHolder instanceof long[])) {
+              .getType().equals(Long.class))) || (resHolder instanceof long[])
+              || (resHolder instanceof LongList)) {
             rec.type = Record.LONG;
           } else if (((resHolder instanceof ArgHolder<?>) && (((ArgHolder<?>) resHolder)
               .getType().equals(Integer.class)))
-              || (resHolder instanceof int[])) {
+              || (resHolder instanceof int[]) || (resHolder instanceof IntList)) {
             rec.type = Record.INT;
           } else {
             throw new IllegalArgumentException("Invalid result holder for %"
@@ -1841,7 +2356,8 @@ public class ArgParser {
         case 'f': {
           if (((resHolder instanceof ArgHolder<?>) && ((ArgHolder<?>) resHolder)
               .getType().equals(Double.class))
-              || (resHolder instanceof double[])) {
+              || (resHolder instanceof double[])
+              || (resHolder instanceof DoubleList)) {
             rec.type = Record.DOUBLE;
           } else if (((resHolder instanceof ArgHolder<?>) && ((ArgHolder<?>) resHolder)
               .getType().equals(Float.class)) || (resHolder instanceof float[])) {
@@ -1854,7 +2370,8 @@ public class ArgParser {
         case 's': {
           if (!((resHolder instanceof ArgHolder<?>) && ((ArgHolder<?>) resHolder)
               .getType().equals(String.class))
-              && !(resHolder instanceof String[])) { throw new IllegalArgumentException(
+              && !(resHolder instanceof String[])
+              && !(resHolder instanceof StringList)) { throw new IllegalArgumentException(
             "Invalid result holder for %s"); }
           rec.type = Record.STRING;
           break;
@@ -1926,6 +2443,9 @@ public class ArgParser {
     if (resHolder != null && resHolder.getClass().isArray()) {
       if (Array.getLength(resHolder) < rec.numValues) { throw new IllegalArgumentException(
         "Result holder array must have a length >= " + rec.numValues); }
+    } else if (resHolder instanceof ValueList) {
+      if (((ValueList) resHolder).getWidth() != rec.numValues) { throw new IllegalArgumentException(
+        "Result holder list must have a width of " + rec.numValues); }
     } else {
       if ((rec.numValues > 1) && !(resHolder instanceof Vector<?>)) { throw new IllegalArgumentException(
         "Multiplier requires result holder to be an array of length >= "
@@ -1940,7 +2460,8 @@ public class ArgParser {
     if (!scanner.atEnd()) {
       if (scanner.getc() != '#') { throw new IllegalArgumentException(
         "Illegal character(s), expecting '#'"); }
-      String helpInfo = scanner.substring(scanner.getIndex());
+      String helpInfo = parseFallbacks(rec, scanner.substring(scanner
+          .getIndex()));
       // look for second '#'. If there is one, then info
       // between the first and second '#' is the value descriptor.
       int k = helpInfo.indexOf("#");
@@ -1953,13 +2474,82 @@ public class ArgParser {
     } else {
       rec.helpMsg = "";
     }
-    // add option information to match list
+    appendRecord(rec, visible);
+  }
+  
+  /**
+   * Removes the sections {@code #env=NAME} and {@code #prop=name} from the end
+   * of the help information of a specification and stores the names in the
+   * record.
+   * 
+   * @param rec
+   * @param helpInfo
+   *        everything following the first {@code #}
+   * @return the remaining help information
+   * @throws IllegalArgumentException
+   *         if a fallback is declared twice or is not supported for the record
+   */
+  private static String parseFallbacks(Record rec, String helpInfo)
+    throws IllegalArgumentException {
+    while (true) {
+      int k = helpInfo.lastIndexOf('#');
+      String section = helpInfo.substring(k + 1);
+      int eq = section.indexOf('=');
+      String key = section.substring(0, Math.max(eq, 0));
+      String name = section.substring(eq + 1);
+      boolean isFallback = (key.equals("env") || key.equals("prop"))
+          && isWord(name);
+      if (!isFallback) { return helpInfo; }
+      if ((rec.convertCode == 'v') || (rec.convertCode == 'h')) { throw new IllegalArgumentException(
+        "Fallbacks not supported for %v or %h"); }
+      if (rec.numValues > 1) { throw new IllegalArgumentException(
+        "Fallbacks not supported with multipliers"); }
+      if (!(rec.resHolder instanceof ArgHolder<?>)) { throw new IllegalArgumentException(
+        "Fallbacks require an ArgHolder as result holder"); }
+      if (key.equals("env")) {
+        if (rec.envName != null) { throw new IllegalArgumentException(
+          "Duplicate environment variable"); }
+        rec.envName = name;
+      } else {
+        if (rec.propName != null) { throw new IllegalArgumentException(
+          "Duplicate system property"); }
+        rec.propName = name;
+      }
+      helpInfo = (k < 0) ? "" : helpInfo.substring(0, k);
+    }
+  }
+  
+  /**
+   * 
+   * @param s
+   * @return {@code true} if the string is not empty and contains no white
+   *         space.
+   */
+  private static boolean isWord(String s) {
+    for (int i = 0; i < s.length(); i++) {
+      if (Character.isWhitespace(s.charAt(i))) { return false; }
+    }
+    return s.length() > 0;
+  }
+  
+  /**
+   * Adds option information to the match list.
+   * 
+   * @param rec
+   * @param visible
+   */
+  private void appendRecord(Record rec, boolean visible) {
     if (rec.convertCode == 'h' && firstHelpOption == defaultHelpOption) {
       matchList.remove(defaultHelpOption);
       firstHelpOption = rec;
     }
     rec.setVisible(visible);
     matchList.add(rec);
+    if ((rec.envName != null) || (rec.propName != null)) {
+      fallbackRecords.add(rec);
+    }
+    optionIndex = null;
+    helpMessage = null;
   }
   
   /**
@@ -1976,6 +2566,250 @@ public class ArgParser {
     addOption(spec, resHolder, true);
   }
   
+  /**
+   * Adds several options, like {@link #addOption(String, Object)}, and keeps
+   * the result in a snapshot file, so that later calls with the same
+   * specifications can skip parsing them. This saves most of the start up
+   * time spent on defining the options of short-lived programs.
+   * 
+   * <p>
+   * If the snapshot file exists and was created from the same specifications
+   * and the same kinds of result holders (i.e., the same classes, value types,
+   * array lengths and list widths), the options are restored from it with a
+   * single read, including their compiled ranges and, if the parser's
+   * synopsis, previous options and help layout have not changed either, the
+   * rendered help message. Otherwise, the specifications are parsed as usual
+   * and the snapshot is written anew; failures to write it are ignored.
+   * 
+   * @param specs
+   *        the specification strings
+   * @param resHolders
+   *        the result holders of the options, in the same order
+   * @param snapshot
+   *        the snapshot file, which is created if necessary
+   * @return {@code true} if the options have been restored from the snapshot
+   * @throws IllegalArgumentException
+   *         if the number of specifications and result holders differ, or if
+   *         there is an error in one of the specifications or result holders
+   * @see #addOption(String, Object, boolean)
+   */
+  public boolean addOptions(String[] specs, Object[] resHolders, File snapshot)
+    throws IllegalArgumentException {
+    if (specs.length != resHolders.length) { throw new IllegalArgumentException(
+      "Number of specifications and result holders differ"); }
+    long hash = ParserSnapshot.hash(specs, resHolders);
+    long layoutKey = helpLayoutKey();
+    ByteBuffer in = ParserSnapshot.read(snapshot);
+    if ((in != null) && restoreOptions(in, hash, layoutKey, resHolders)) {
+      return true;
+    }
+    for (int i = 0; i < specs.length; i++) {
+      addOption(specs[i], resHolders[i]);
+    }
+    try {
+      saveOptions(snapshot, matchList.size() - specs.length, hash, layoutKey);
+    } catch (IOException e) {
+      // the snapshot is only a cache, the options have been added anyway
+    }
+    return false;
+  }
+  
+  /**
+   * 
+   * @return a hash of everything besides the options added by
+   *         {@link #addOptions(String[], Object[], File)} that the help message
+   *         depends on and that is not checked by
+   *         {@link #isHelpMessageCached()}.
+   */
+  private long helpLayoutKey() {
+    long h = ParserSnapshot.hash(ParserSnapshot.hash(), synopsisString);
+    for (Record rec : matchList) {
+      for (NameDesc ndesc = rec.nameList; ndesc != null; ndesc = ndesc.next) {
+        h = ParserSnapshot.hash(h, ndesc.name);
+      }
+      h = ParserSnapshot.hash(h, rec.isVisible() ? "+" : "-");
+    }
+    if (subcommands != null) {
+      for (Subcommand sub : subcommands.values()) {
+        h = ParserSnapshot.hash(ParserSnapshot.hash(h, sub.name),
+          sub.description);
+      }
+    }
+    return h;
+  }
+  
+  /**
+   * Writes the records of the match list from {@code first} on to a snapshot
+   * file.
+   * 
+   * @param snapshot
+   * @param first
+   * @param hash
+   * @param layoutKey
+   * @throws IOException
+   * @see ParserSnapshot
+   */
+  private void saveOptions(File snapshot, int first, long hash, long layoutKey)
+    throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeInt(ParserSnapshot.MAGIC);
+    out.writeLong(hash);
+    out.writeLong(layoutKey);
+    out.writeInt(matchList.size() - first);
+    for (int i = first; i < matchList.size(); i++) {
+      Record rec = matchList.get(i);
+      out.writeChar(rec.convertCode);
+      out.writeInt(rec.type);
+      out.writeInt(rec.numValues);
+      out.writeBoolean(rec.vval);
+      out.writeBoolean(rec.isVisible());
+      ParserSnapshot.putString(out, rec.helpMsg);
+      ParserSnapshot.putString(out, rec.valueDesc);
+      ParserSnapshot.putString(out, rec.rangeDesc);
+      ParserSnapshot.putString(out, rec.envName);
+      ParserSnapshot.putString(out, rec.propName);
+      int cnt = 0;
+      for (NameDesc ndesc = rec.nameList; ndesc != null; ndesc = ndesc.next) {
+        cnt++;
+      }
+      out.writeInt(cnt);
+      for (NameDesc ndesc = rec.nameList; ndesc != null; ndesc = ndesc.next) {
+        ParserSnapshot.putString(out, ndesc.name);
+        out.writeBoolean(ndesc.oneWord);
+      }
+      out.writeInt(rec.numRangeAtoms());
+      for (RangeAtom ra = rec.rangeList; ra != null; ra = ra.next) {
+        writeRangePnt(out, ra.low);
+        out.writeBoolean(ra.high != null);
+        if (ra.high != null) {
+          writeRangePnt(out, ra.high);
+        }
+      }
+      if (rec.rangeList != null) {
+        rec.getRangeIndex().write(out);
+      }
+    }
+    String help = getHelpMessage();
+    out.writeInt(helpMessageColumns);
+    out.writeInt(helpMessageIndent);
+    out.writeBoolean(helpMessageEnabled);
+    ParserSnapshot.putString(out, help);
+    out.close();
+    ParserSnapshot.replace(snapshot, bytes.toByteArray());
+  }
+  
+  /**
+   * 
+   * @param out
+   * @param pnt
+   * @throws IOException
+   */
+  private static void writeRangePnt(DataOutputStream out, RangePnt pnt)
+    throws IOException {
+    out.writeDouble(pnt.dval);
+    out.writeLong(pnt.lval);
+    ParserSnapshot.putString(out, pnt.sval);
+    out.writeBoolean(pnt.bval);
+    out.writeBoolean(pnt.closed);
+  }
+  
+  /**
+   * Restores the records written by
+   * {@link #saveOptions(File, int, long, long)}. Nothing is added unless the
+   * whole snapshot could be read.
+   * 
+   * @param in
+   * @param hash
+   * @param layoutKey
+   * @param resHolders
+   * @return {@code false} if the snapshot is stale or corrupted.
+   */
+  private boolean restoreOptions(ByteBuffer in, long hash, long layoutKey,
+    Object[] resHolders) {
+    Record[] recs = new Record[resHolders.length];
+    boolean[] visible = new boolean[recs.length];
+    String help;
+    int columns, indent;
+    boolean enabled, sameLayout;
+    try {
+      if ((in.getInt() != ParserSnapshot.MAGIC) || (in.getLong() != hash)) {
+        return false;
+      }
+      sameLayout = (in.getLong() == layoutKey);
+      if (in.getInt() != recs.length) { return false; }
+      for (int i = 0; i < recs.length; i++) {
+        Record rec = recs[i] = new Record();
+        rec.convertCode = in.getChar();
+        rec.type = in.getInt();
+        rec.numValues = in.getInt();
+        rec.vval = (in.get() != 0);
+        visible[i] = (in.get() != 0);
+        rec.helpMsg = ParserSnapshot.getString(in);
+        rec.valueDesc = ParserSnapshot.getString(in);
+        rec.rangeDesc = ParserSnapshot.getString(in);
+        rec.envName = ParserSnapshot.getString(in);
+        rec.propName = ParserSnapshot.getString(in);
+        NameDesc nameTail = null;
+        for (int cnt = in.getInt(); cnt > 0; cnt--) {
+          NameDesc ndesc = new NameDesc();
+          ndesc.name = ParserSnapshot.getString(in);
+          ndesc.oneWord = (in.get() != 0);
+          if (nameTail == null) {
+            rec.nameList = ndesc;
+          } else {
+            nameTail.next = ndesc;
+          }
+          nameTail = ndesc;
+        }
+        if (nameTail == null) { return false; }
+        for (int cnt = in.getInt(); cnt > 0; cnt--) {
+          RangeAtom ra = new RangeAtom(readRangePnt(in));
+          if (in.get() != 0) {
+            ra.high = readRangePnt(in);
+          }
+          rec.addRangeAtom(ra);
+        }
+        if (rec.rangeList != null) {
+          rec.rangeIndex = RangeIndex.read(in);
+        }
+        rec.resHolder = (rec.convertCode == 'h') ? null : resHolders[i];
+      }
+      columns = in.getInt();
+      indent = in.getInt();
+      enabled = (in.get() != 0);
+      help = ParserSnapshot.getString(in);
+    } catch (RuntimeException e) {
+      // a corrupted snapshot is treated like a stale one
+      return false;
+    }
+    for (int i = 0; i < recs.length; i++) {
+      appendRecord(recs[i], visible[i]);
+    }
+    if (sameLayout && (help != null)) {
+      helpMessage = help;
+      helpMessageColumns = columns;
+      helpMessageIndent = indent;
+      helpMessageEnabled = enabled;
+    }
+    return true;
+  }
+  
+  /**
+   * 
+   * @param in
+   * @return a range point written by
+   *         {@link #writeRangePnt(DataOutputStream, RangePnt)}.
+   */
+  private static RangePnt readRangePnt(ByteBuffer in) {
+    RangePnt pnt = new RangePnt(in.getDouble(), true);
+    pnt.lval = in.getLong();
+    pnt.sval = ParserSnapshot.getString(in);
+    pnt.bval = (in.get() != 0);
+    pnt.closed = (in.get() != 0);
+    return pnt;
+  }
+  
   public void addDelimiter(String text) {
     
     NameDesc ndesc = new NameDesc();
@@ -1987,6 +2821,76 @@ public class ArgParser {
     rec.nameList = ndesc;
     
     matchList.add(rec);
+    optionIndex = null;
+    helpMessage = null;
+  }
+  
+  /**
+   * Adds a subcommand to this parser. The supplier of the subcommand's parser
+   * is invoked at most once, when the subcommand is selected by
+   * {@link #matchAllArgs(String[], int, int) matchAllArgs} or requested by
+   * {@link #getSubcommand(String)}. The help message of this parser lists the
+   * subcommands with their descriptions; the help message of a subcommand is
+   * the one of its parser.
+   * 
+   * <p>
+   * Options of this parser take precedence over subcommands of the same name.
+   * Once a subcommand has been added, the arguments must be matched with
+   * {@link #matchAllArgs(String[], int, int) matchAllArgs(String[], int, int)}
+   * or {@link #matchAllArgs(String[]) matchAllArgs(String[])}.
+   * 
+   * @param name
+   *        the name of the subcommand, as it appears on the command line
+   * @param description
+   *        a short description for the help message, may be empty or
+   *        {@code null}
+   * @param supplier
+   *        creates the parser for the arguments following the subcommand
+   * @throws IllegalArgumentException
+   *         if the name is empty, contains white space or has been added
+   *         before
+   */
+  public void addSubcommand(String name, String description,
+    Supplier<ArgParser> supplier) throws IllegalArgumentException {
+    if (!isWord(name)) { throw new IllegalArgumentException(
+      "Invalid subcommand name '" + name + "'"); }
+    if (subcommands == null) {
+      subcommands = new LinkedHashMap<String, Subcommand>();
+    }
+    if (subcommands.containsKey(name)) { throw new IllegalArgumentException(
+      "Subcommand " + name + " has already been added"); }
+    subcommands.put(name, new Subcommand(name, (description == null) ? ""
+        : description, supplier));
+    helpMessage = null;
+  }
+  
+  /**
+   * Returns the parser of a subcommand, creating it if this has not happened
+   * before. The parsers of the other subcommands are not created.
+   * 
+   * @param name
+   *        the name of the subcommand
+   * @return the subcommand's parser, or {@code null} if there is no
+   *         subcommand of that name
+   * @throws IllegalStateException
+   *         if the supplier of the subcommand returns {@code null}
+   * @see #addSubcommand(String, String, Supplier)
+   */
+  public ArgParser getSubcommand(String name) throws IllegalStateException {
+    Subcommand sub = (subcommands == null) ? null : subcommands.get(name);
+    return (sub == null) ? null : sub.getParser();
+  }
+  
+  /**
+   * Returns the name of the subcommand selected by the last call of
+   * {@link #matchAllArgs(String[], int, int) matchAllArgs}. Its parser, which
+   * holds the values of the subcommand's options, is returned by
+   * {@link #getSubcommand(String)}.
+   * 
+   * @return the name, or {@code null} if no subcommand has been selected
+   */
+  public String getSelectedSubcommand() {
+    return (selectedSubcommand == null) ? null : selectedSubcommand.name;
   }
   
   /**
@@ -1998,34 +2902,36 @@ public class ArgParser {
   }
   
   /**
+   * Returns the lookup structure for the current match list, building it if
+   * the match list has been modified since the last lookup.
    * 
-   * @param arg
-   * @param ndescHolder
    * @return
    */
-  private Record getRecord(String arg, ArgHolder<Object> ndescHolder) {
-    NameDesc ndesc;
-    for (int i = 0; i < matchList.size(); i++) {
-      Record rec = (Record) matchList.get(i);
-      for (ndesc = rec.nameList; ndesc != null; ndesc = ndesc.next) {
-        if (rec.convertCode != 'v' && ndesc.oneWord) {
-          if (arg.startsWith(ndesc.name)) {
-            if (ndescHolder != null) {
-              ndescHolder.setValue(ndesc);
-            }
-            return rec;
-          }
-        } else {
-          if (arg.equals(ndesc.name)) {
-            if (ndescHolder != null) {
-              ndescHolder.setValue(ndesc);
-            }
-            return rec;
-          }
-        }
-      }
+  private OptionIndex getOptionIndex() {
+    if (optionIndex == null) {
+      optionIndex = new OptionIndex(matchList);
     }
-    return null;
+    return optionIndex;
+  }
+  
+  /**
+   * 
+   * @param arg
+   * @return the first registered name matching {@code arg} together with its
+   *         record, or {@code null} if there is no such name.
+   */
+  private OptionIndex.Entry getEntry(CharSequence arg) {
+    return getOptionIndex().lookup(arg);
+  }
+  
+  /**
+   * 
+   * @param arg
+   * @return
+   */
+  private Record getRecord(String arg) {
+    OptionIndex.Entry entry = getEntry(arg);
+    return (entry != null) ? entry.record : null;
   }
   
   /**
@@ -2034,7 +2940,7 @@ public class ArgParser {
    * @return
    */
   protected Object getResultHolder(String arg) {
-    Record rec = getRecord(arg, null);
+    Record rec = getRecord(arg);
     return (rec != null) ? rec.resHolder : null;
   }
   
@@ -2044,9 +2950,8 @@ public class ArgParser {
    * @return
    */
   protected String getOptionName(String arg) {
-    ArgHolder<Object> ndescHolder = new ArgHolder<Object>(Object.class);
-    Record rec = getRecord(arg, ndescHolder);
-    return (rec != null) ? ((NameDesc) ndescHolder.getValue()).name : null;
+    OptionIndex.Entry entry = getEntry(arg);
+    return (entry != null) ? entry.nameDesc.name : null;
   }
   
   /**
@@ -2055,7 +2960,7 @@ public class ArgParser {
    * @return
    */
   protected String getOptionRangeDesc(String arg) {
-    Record rec = getRecord(arg, null);
+    Record rec = getRecord(arg);
     return (rec != null) ? rec.rangeDesc : null;
   }
   
@@ -2065,57 +2970,31 @@ public class ArgParser {
    * @return
    */
   protected String getOptionTypeName(String arg) {
-    Record rec = getRecord(arg, null);
+    Record rec = getRecord(arg);
     return (rec != null) ? rec.valTypeName() : null;
   }
   
   /**
    * 
-   * @param rec
-   * @return
+   * @param list
+   * @param s
+   * @param allowQuotedStrings
+   * @throws StringScanException
+   * @see ArgTokenizer
    */
-  private Object createResultHolder(Record rec) {
-    if (rec.numValues == 1) {
-      switch (rec.type) {
-        case Record.LONG: {
-          return new ArgHolder<Long>(Long.class);
-        }
-        case Record.CHAR: {
-          return new ArgHolder<Character>(Character.class);
-        }
-        case Record.BOOLEAN: {
-          return new ArgHolder<Boolean>(Boolean.class);
-        }
-        case Record.DOUBLE: {
-          return new ArgHolder<Double>(Double.class);
-        }
-        case Record.STRING: {
-          return new ArgHolder<String>(String.class);
-        }
-      }
-    } else {
-      switch (rec.type) {
-        case Record.LONG: {
-          return new long[rec.numValues];
-        }
-        case Record.CHAR: {
-          return new char[rec.numValues];
-        }
-        case Record.BOOLEAN: {
-          return new boolean[rec.numValues];
-        }
-        case Record.DOUBLE: {
-          return new double[rec.numValues];
-        }
-        case Record.STRING: {
-          return new String[rec.numValues];
-        }
-      }
+  public static void stringToArgs(List<String> list, String s,
+    boolean allowQuotedStrings) throws StringScanException {
+    ArgTokenizer tokenizer = new ArgTokenizer(allowQuotedStrings);
+    try {
+      tokenizer.tokenize(s);
+    } finally {
+      tokenizer.addTo(list);
     }
-    return null; // can't happen
   }
   
   /**
+   * Splits a string like {@link #stringToArgs(List, String, boolean)}. Kept
+   * for callers compiled against earlier versions.
    * 
    * @param vec
    * @param s
@@ -2124,16 +3003,7 @@ public class ArgParser {
    */
   public static void stringToArgs(Vector<String> vec, String s,
     boolean allowQuotedStrings) throws StringScanException {
-    StringScanner scanner = new StringScanner(s);
-    scanner.skipWhiteSpace();
-    while (!scanner.atEnd()) {
-      if (allowQuotedStrings) {
-        vec.add(scanner.scanString());
-      } else {
-        vec.add(scanner.scanNonWhiteSpaceString());
-      }
-      scanner.skipWhiteSpace();
-    }
+    stringToArgs((List<String>) vec, s, allowQuotedStrings);
   }
   
   /**
@@ -2156,9 +3026,8 @@ public class ArgParser {
       args = new String[0];
     }
     LineNumberReader lineReader = new LineNumberReader(reader);
-    Vector<String> vec = new Vector<String>(100, 100);
+    List<String> list = new ArrayList<String>();
     String line;
-    int i, k;
     
     while ((line = lineReader.readLine()) != null) {
       int commentIdx = line.indexOf("#");
@@ -2166,25 +3035,30 @@ public class ArgParser {
         line = line.substring(0, commentIdx);
       }
       try {
-        stringToArgs(vec, line, /* allowQuotedStings= */true);
+        stringToArgs(list, line, /* allowQuotedStings= */true);
       } catch (StringScanException e) {
         throw new IOException("malformed string, line "
             + lineReader.getLineNumber());
       }
     }
-    String[] result = new String[vec.size() + args.length];
-    for (i = 0; i < vec.size(); i++) {
-      result[i] = (String) vec.get(i);
-    }
-    for (k = 0; k < args.length; k++) {
-      result[i++] = args[k];
-    }
-    return result;
+    return prependList(list, args);
   }
   
   /**
-   * Reads in a set of strings from a file and prepends them to an argument
-   * list. Strings are delimited by either whitespace or double quotes {@code "}
+   * 
+   * @param list
+   * @param args
+   * @return the elements of {@code list} followed by those of {@code args}.
+   */
+  private static String[] prependList(List<String> list, String[] args) {
+    String[] result = list.toArray(new String[list.size() + args.length]);
+    System.arraycopy(args, 0, result, list.size(), args.length);
+    return result;
+  }
+  
+  /**
+   * Reads in a set of strings from a file and prepends them to an argument
+   * list. Strings are delimited by either whitespace or double quotes {@code "}
    * .
    * The character {@code #} acts as a comment character, causing input to
    * the end of the current line to be ignored.
@@ -2195,6 +3069,7 @@ public class ArgParser {
    *        Initial set of argument values. Can be specified as {@code null}.
    * @throws IOException
    *         if an error occured while reading the file.
+   * @see ArgFileReader
    */
   public static String[] prependArgs(File file, String[] args)
     throws IOException {
@@ -2202,11 +3077,71 @@ public class ArgParser {
       args = new String[0];
     }
     if (!file.canRead()) { return args; }
+    return prependList(readArgs(file), args);
+  }
+  
+  /**
+   * Reads in a set of strings from a file, using the same syntax as
+   * {@link #prependArgs(File, String[]) prependArgs}. The file is read
+   * incrementally by an {@link ArgFileReader}.
+   * 
+   * @param file
+   *        File to be read
+   * @return the strings in the order in which they appear in the file
+   * @throws IOException
+   *         if an error occured while reading the file.
+   */
+  public static List<String> readArgs(File file) throws IOException {
+    ParseEvents.FileLoad event = ParseEvents.beginFileLoad();
+    List<String> list = new ArrayList<String>();
+    ArgFileReader reader = new ArgFileReader(file);
     try {
-      return prependArgs(new FileReader(file), args);
+      reader.readAll(list);
     } catch (IOException e) {
       throw new IOException("File " + file.getName() + ": " + e.getMessage());
+    } finally {
+      reader.close();
+    }
+    if (event != null) {
+      event.finish(file, list.size());
+    }
+    return list;
+  }
+  
+  /**
+   * 
+   * @param convertCode
+   * @return the name of the type of values with the given conversion code, as
+   *         used in help and error messages.
+   */
+  static String valTypeName(char convertCode) {
+    switch (convertCode) {
+      case 'i': {
+        return ("integer");
+      }
+      case 'o': {
+        return ("octal integer");
+      }
+      case 'd': {
+        return ("decimal integer");
+      }
+      case 'x': {
+        return ("hex integer");
+      }
+      case 'c': {
+        return ("char");
+      }
+      case 'b': {
+        return ("boolean");
+      }
+      case 'f': {
+        return ("float");
+      }
+      case 's': {
+        return ("string");
+      }
     }
+    return ("unknown");
   }
   
   /**
@@ -2233,6 +3168,283 @@ public class ArgParser {
     System.exit(1);
   }
   
+  /**
+   * Freezes the options of this parser into a {@link CompiledArgParser}. The
+   * compiled parser does not write into the result holders of this parser, but
+   * returns a fresh {@link ParseResult} from every call, and can be shared by
+   * any number of threads. Options added to this parser afterwards do not
+   * affect the compiled parser.
+   * 
+   * @return an immutable parser for the current options
+   * @throws IllegalStateException
+   *         if subcommands have been added to this parser
+   * @see CompiledArgParser#parse(String[])
+   */
+  public CompiledArgParser compile() throws IllegalStateException {
+    checkNoSubcommands();
+    return new CompiledArgParser(matchList, helpOptionsEnabled,
+      getHelpMessage());
+  }
+  
+  /**
+   * Returns the candidates for completing an argument of a command line, as
+   * needed for shell completion. If the argument is a value of an option
+   * given before it (or the value part of a one word option), the candidates
+   * are the values in the range of a string option that start with it, or
+   * {@code true} and {@code false} for a {@code %b} option. Otherwise, they
+   * are the names of all visible options that start with it. Option names are
+   * looked up in the index of the parser, so that the cost does not depend on
+   * the number of options.
+   * 
+   * @param args
+   *        the arguments of the command line, without the command itself
+   * @param cursorIdx
+   *        location of the argument to be completed; may be
+   *        {@code args.length} to complete a new, empty argument
+   * @return the candidates, values before names
+   * @see #writeCompletionScript(Appendable, String)
+   */
+  public String[] complete(String[] args, int cursorIdx) {
+    String prefix = (cursorIdx < args.length) ? args[cursorIdx] : "";
+    List<String> candidates = new ArrayList<String>();
+    boolean completeNames = true;
+    
+    // find the option whose values precede the cursor, if any
+    for (int i = 0; i < Math.min(cursorIdx, args.length); i++) {
+      OptionIndex.Entry entry = getEntry(args[i]);
+      if ((entry == null) || entry.nameDesc.oneWord
+          || (entry.record.convertCode == 'v')
+          || (entry.record.convertCode == 'h')) {
+        continue;
+      }
+      Record rec = entry.record;
+      if (cursorIdx <= i + rec.numValues) {
+        addValueChoices(rec, "", prefix, candidates);
+        // the value of %b may be omitted
+        completeNames = (rec.convertCode == 'b');
+        break;
+      }
+      // the value of %b is only consumed if it is one of the choices
+      if ((rec.convertCode != 'b') || (rec.numValues > 1)
+          || ((i + 1 < args.length) && (Arrays.binarySearch(
+            rec.getValueChoices(), args[i + 1]) >= 0))) {
+        i += rec.numValues;
+      }
+    }
+    if (completeNames) {
+      OptionIndex.Entry entry = getEntry(prefix);
+      String name = null;
+      if ((entry != null) && entry.nameDesc.oneWord
+          && (entry.record.convertCode != 'v')) {
+        name = entry.nameDesc.name;
+        addValueChoices(entry.record, name, prefix.substring(name.length()),
+          candidates);
+      }
+      List<OptionIndex.Entry> entries = new ArrayList<OptionIndex.Entry>();
+      getOptionIndex().complete(prefix, entries);
+      for (OptionIndex.Entry e : entries) {
+        // a name already completed with values is not offered alone
+        if (isOffered(e.record, helpOptionsEnabled)
+            && !(e.nameDesc.name.equals(name) && !candidates.isEmpty())) {
+          candidates.add(e.nameDesc.name);
+        }
+      }
+    }
+    return candidates.toArray(new String[candidates.size()]);
+  }
+  
+  /**
+   * 
+   * @param rec
+   * @param helpOptionsEnabled
+   * @return {@code true} if the names of the record are offered by
+   *         {@link #complete(String[], int)} and
+   *         {@link #getSuggestions(String)}.
+   */
+  static boolean isOffered(Record rec, boolean helpOptionsEnabled) {
+    return (rec.type != Record.DELIM) && rec.isVisible()
+        && ((rec.convertCode != 'h') || helpOptionsEnabled);
+  }
+  
+  /**
+   * Returns the names of the options that an unrecognized argument may have
+   * been meant to be, for example {@code --threads} for {@code --thread}. The
+   * names differ from the argument by at most two inserted, deleted or
+   * replaced characters, and by fewer than half of the characters of the
+   * argument, so that short arguments like file names do not get arbitrary
+   * suggestions. Hidden options are never suggested.
+   * 
+   * <p>
+   * The names are found in a BK-tree that is built when the first suggestion
+   * is requested, so that a lookup visits only a fraction of the names, even
+   * for parsers with hundreds of options.
+   * 
+   * @param arg
+   *        an argument that did not match any option
+   * @return the names, closest first, or an empty array
+   * @see #matchAllArgs(String[], int, int)
+   */
+  public String[] getSuggestions(String arg) {
+    return suggest(getOptionIndex(), arg, helpOptionsEnabled);
+  }
+  
+  /**
+   * 
+   * @param index
+   * @param arg
+   * @param helpOptionsEnabled
+   * @return
+   * @see #getSuggestions(String)
+   */
+  static String[] suggest(OptionIndex index, String arg,
+    boolean helpOptionsEnabled) {
+    int maxDist = Math.min(2, (arg.length() - 1) / 2);
+    if (maxDist <= 0) { return new String[0]; }
+    List<OptionIndex.Entry> entries = new ArrayList<OptionIndex.Entry>();
+    index.suggest(arg, maxDist, entries);
+    List<String> names = new ArrayList<String>(entries.size());
+    for (OptionIndex.Entry entry : entries) {
+      if (isOffered(entry.record, helpOptionsEnabled)) {
+        names.add(entry.nameDesc.name);
+      }
+    }
+    return names.toArray(new String[names.size()]);
+  }
+  
+  /**
+   * 
+   * @param arg
+   * @return the message for an argument that did not match any option,
+   *         including suggestions, if any.
+   */
+  private String unrecognizedMessage(String arg) {
+    StringBuilder msg = new StringBuilder("Unrecognized argument: ");
+    msg.append(arg);
+    String[] names = getSuggestions(arg);
+    int n = Math.min(names.length, 3);
+    for (int i = 0; i < n; i++) {
+      msg.append((i == 0) ? "\nDid you mean " : ((i < n - 1) ? ", " : " or "));
+      msg.append(names[i]);
+    }
+    return (n > 0) ? msg.append('?').toString() : msg.toString();
+  }
+  
+  /**
+   * Adds the values of a record that start with a prefix to a list of
+   * candidates. The values are found by bisection.
+   * 
+   * @param rec
+   * @param head
+   *        prepended to every value
+   * @param prefix
+   * @param candidates
+   */
+  private static void addValueChoices(Record rec, String head, String prefix,
+    List<String> candidates) {
+    String[] choices = rec.getValueChoices();
+    int i = Arrays.binarySearch(choices, prefix);
+    for (i = (i < 0) ? -i - 1 : i; (i < choices.length)
+        && choices[i].startsWith(prefix); i++) {
+      candidates.add(head.length() == 0 ? choices[i] : head + choices[i]);
+    }
+  }
+  
+  /**
+   * Writes a bash completion script for a command that uses this parser. The
+   * names of the options and the values of their ranges are written into the
+   * script, so that completing them does not start a JVM. The values of
+   * string options without such values are completed as file names; those of
+   * other options are not completed. Names and values that contain white
+   * space or characters that bash would expand are left out.
+   * 
+   * <p>
+   * The script can also be used by zsh after
+   * {@code autoload -U bashcompinit && bashcompinit}.
+   * 
+   * @param out
+   * @param command
+   *        the name of the command as typed on the command line
+   * @throws IOException
+   * @see #complete(String[], int)
+   */
+  public void writeCompletionScript(Appendable out, String command)
+    throws IOException {
+    StringBuilder function = new StringBuilder("_");
+    for (int i = 0; i < command.length(); i++) {
+      char c = command.charAt(i);
+      function.append(Character.isLetterOrDigit(c) && (c < 128) ? c : '_');
+    }
+    function.append("_complete");
+    StringBuilder names = new StringBuilder();
+    
+    out.append("# bash completion for ").append(command);
+    out.append(", generated by ArgParser\n");
+    out.append(function).append("() {\n");
+    out.append("  local cur=\"${COMP_WORDS[COMP_CWORD]}\"");
+    out.append(" prev=\"${COMP_WORDS[COMP_CWORD-1]}\"\n");
+    out.append("  case \"$prev\" in\n");
+    for (Record rec : matchList) {
+      if (!isOffered(rec, helpOptionsEnabled)) {
+        continue;
+      }
+      StringBuilder pattern = new StringBuilder();
+      for (NameDesc ndesc = rec.nameList; ndesc != null; ndesc = ndesc.next) {
+        if (isShellWord(ndesc.name)) {
+          names.append(' ').append(ndesc.name);
+        }
+        if (!ndesc.oneWord) {
+          pattern.append((pattern.length() == 0) ? "    " : "|");
+          pattern.append('\'').append(ndesc.name.replace("'", "'\\''"));
+          pattern.append('\'');
+        }
+      }
+      if ((pattern.length() == 0) || (rec.convertCode == 'v')
+          || (rec.convertCode == 'h') || (rec.convertCode == 'b')) {
+        continue;
+      }
+      out.append(pattern).append(")\n");
+      String[] choices = rec.getValueChoices();
+      if (choices.length > 0) {
+        out.append("      COMPREPLY=( $(compgen -W '");
+        String sep = "";
+        for (String choice : choices) {
+          if (isShellWord(choice)) {
+            out.append(sep).append(choice);
+            sep = " ";
+          }
+        }
+        out.append("' -- \"$cur\") )\n");
+      } else if (rec.type == Record.STRING) {
+        out.append("      COMPREPLY=( $(compgen -f -- \"$cur\") )\n");
+      } else {
+        out.append("      COMPREPLY=()\n");
+      }
+      out.append("      return 0 ;;\n");
+    }
+    out.append("  esac\n");
+    out.append("  COMPREPLY=( $(compgen -W '").append(names.substring(
+      Math.min(1, names.length()))).append("' -- \"$cur\") )\n");
+    out.append("}\n");
+    out.append("complete -F ").append(function).append(' ').append(command);
+    out.append('\n');
+  }
+  
+  /**
+   * 
+   * @param s
+   * @return {@code true} if the string can be put into the word list of
+   *         {@code compgen -W} as it is.
+   */
+  private static boolean isShellWord(String s) {
+    if (s.length() == 0) { return false; }
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      if (!Character.isLetterOrDigit(c)
+          && ("-_.:/=,+@%#^".indexOf(c) == -1)) { return false; }
+    }
+    return true;
+  }
+  
   /**
    * Matches arguments within an argument list.
    * 
@@ -2268,9 +3480,10 @@ public class ArgParser {
    * 
    * <p>
    * In the event of an umatched argument, the method will print a message and
-   * exit if {@link #EXIT_ON_UNMATCHED} is set in {@code errorFlags}. Otherwise,
-   * the unmatched argument will be appended to the returned array of unmatched
-   * values, and the matching will continue at the next location.
+   * exit if {@link #EXIT_ON_UNMATCHED} is set in {@code errorFlags}; the
+   * message names the options returned by {@link #getSuggestions(String)}.
+   * Otherwise, the unmatched argument will be appended to the returned array
+   * of unmatched values, and the matching will continue at the next location.
    * 
    * <p>
    * If help options are enabled and one of the arguments matches a help option,
@@ -2291,24 +3504,121 @@ public class ArgParser {
    * @see ArgParser#getDefaultPrintStream
    */
   public String[] matchAllArgs(String[] args, int idx, int exitFlags) {
-    Vector<String> unmatched = new Vector<String>(10);
+    ParseEvents.Match event = ParseEvents.beginMatch();
+    List<String> unmatched = new ArrayList<String>();
+    boolean failed = false;
+    int numArgs = (args == null) ? 0 : Math.max(args.length - idx, 0);
+    selectedSubcommand = null;
     
     while (args != null && idx < args.length) {
-      try {
-        idx = matchArg(args, idx);
-        if (unmatchedArg != null) {
-          if ((exitFlags & EXIT_ON_UNMATCHED) != 0) {
-            printErrorAndExit("Unrecognized argument: " + unmatchedArg);
-          } else {
-            unmatched.add(unmatchedArg);
-          }
-        }
-      } catch (ArgParseException e) {
-        if ((exitFlags & EXIT_ON_ERROR) != 0) {
-          printErrorAndExit(e.getMessage());
-        }
+      idx = matchArg(args, idx, matchError);
+      if (idx < 0) {
+        exitOnError(exitFlags);
+        failed = true;
         break;
       }
+      if ((subcommands != null) && (unmatchedArg != null)
+          && unmatched.isEmpty()) {
+        selectedSubcommand = subcommands.get(unmatchedArg);
+        if (selectedSubcommand != null) {
+          failed = !matchSubcommand(args, idx, exitFlags, unmatched);
+          break;
+        }
+      }
+      collectUnmatched(unmatched, exitFlags);
+    }
+    return endMatch(event, numArgs, unmatched, failed, exitFlags);
+  }
+  
+  /**
+   * Matches the arguments following the selected subcommand with its parser.
+   * An error of the subcommand's parser becomes the error of this parser.
+   * 
+   * @param args
+   * @param idx
+   *        location of the first argument after the subcommand
+   * @param exitFlags
+   * @param unmatched
+   *        receives the arguments the subcommand's parser did not match
+   * @return {@code false} if the subcommand's parser found an error
+   */
+  private boolean matchSubcommand(String[] args, int idx, int exitFlags,
+    List<String> unmatched) {
+    ArgParser parser = selectedSubcommand.getParser();
+    parser.errMsg = null;
+    String[] rest = parser.matchAllArgs(args, idx, exitFlags);
+    if (rest != null) {
+      unmatched.addAll(Arrays.asList(rest));
+    }
+    errMsg = parser.errMsg;
+    return errMsg == null;
+  }
+  
+  /**
+   * Rejects a call of a {@code matchAllArgs} method that does not select
+   * subcommands.
+   * 
+   * @throws IllegalStateException
+   *         if subcommands have been added to this parser
+   */
+  private void checkNoSubcommands() throws IllegalStateException {
+    if (subcommands != null) { throw new IllegalStateException(
+      "Subcommands are only matched by matchAllArgs(String[], int, int)"); }
+  }
+  
+  /**
+   * Adds the argument that was not matched by the last call of
+   * {@link #matchArg matchArg}, if any, to a list, or exits the program if
+   * {@link #EXIT_ON_UNMATCHED} is set in {@code exitFlags}.
+   * 
+   * @param unmatched
+   * @param exitFlags
+   */
+  private void collectUnmatched(List<String> unmatched, int exitFlags) {
+    if (unmatchedArg != null) {
+      if ((exitFlags & EXIT_ON_UNMATCHED) != 0) {
+        printErrorAndExit(unrecognizedMessage(unmatchedArg));
+      } else {
+        unmatched.add(unmatchedArg);
+      }
+    }
+  }
+  
+  /**
+   * Prints the error message of the last call of {@link #matchArg matchArg}
+   * and exits the program if {@link #EXIT_ON_ERROR} is set in
+   * {@code exitFlags}.
+   * 
+   * @param exitFlags
+   */
+  private void exitOnError(int exitFlags) {
+    if ((exitFlags & EXIT_ON_ERROR) != 0) {
+      printErrorAndExit(errMsg);
+    }
+  }
+  
+  /**
+   * Ends the {@link ParseEvents.Match} event of a call of one of the
+   * {@code matchAllArgs} methods, if any.
+   * 
+   * @param event
+   *        {@code null} if the flight recorder is not initialized
+   * @param numArgs
+   *        number of arguments in the list
+   * @param unmatched
+   * @param failed
+   *        whether an erroneous argument stopped the matching
+   * @return the unmatched arguments, or {@code null} if there were none
+   */
+  private String[] endMatch(ParseEvents.Match event, int numArgs,
+    List<String> unmatched, boolean failed, int exitFlags) {
+    if (!failed && !fallbackRecords.isEmpty()
+        && !resolveFallbacks(System.getenv(), System.getProperties())) {
+      exitOnError(exitFlags);
+      failed = true;
+    }
+    if (event != null) {
+      event.finish(numArgs, unmatched.size(), failed ? errMsg : null);
     }
     if (unmatched.size() == 0) {
       return null;
@@ -2317,6 +3627,331 @@ public class ArgParser {
     }
   }
   
+  /**
+   * Sets the result holders of the options with fallbacks that have not been
+   * set by the arguments from the given system properties or, if a property
+   * is not defined, from the given environment. Each map is consulted once per
+   * option.
+   * 
+   * @param env
+   *        the environment, e.g., {@link System#getenv()}
+   * @param props
+   *        the system properties, e.g., {@link System#getProperties()}
+   * @return {@code false} if a value is erroneous; the error message is set
+   * @see <a href="#fallbacks">Environment Variables and System Properties</a>
+   */
+  boolean resolveFallbacks(Map<String, String> env, Properties props) {
+    for (Record rec : fallbackRecords) {
+      if (((ArgHolder<?>) rec.resHolder).isSetValue()) {
+        continue;
+      }
+      String name = null, value = null;
+      if (rec.propName != null) {
+        value = props.getProperty(rec.propName);
+        name = "-D" + rec.propName;
+      }
+      if ((value == null) && (rec.envName != null)) {
+        value = env.get(rec.envName);
+        name = "$" + rec.envName;
+      }
+      if (value == null) {
+        continue;
+      }
+      try {
+        rec.scanValue(rec.resHolder, name, value, 0);
+      } catch (ArgParseException e) {
+        errMsg = e.getMessage();
+        return false;
+      }
+    }
+    return true;
+  }
+  
+  /**
+   * 
+   * @return the largest number of values of any option.
+   */
+  private int maxNumValues() {
+    int maxValues = 0;
+    for (Record rec : matchList) {
+      maxValues = Math.max(maxValues, rec.numValues);
+    }
+    return maxValues;
+  }
+  
+  /**
+   * Matches the arguments read from an option file and returns those which
+   * were not matched. The arguments are passed to {@link #matchArg matchArg}
+   * as soon as they have been read, through a window that is just large
+   * enough to hold an option together with all its values, so that the file
+   * is never held in memory as a whole. Otherwise, the method behaves like
+   * {@link #matchAllArgs(String[], int, int) matchAllArgs(args, 0, exitFlags)}.
+   * 
+   * @param reader
+   *        source of the arguments
+   * @param exitFlags
+   *        conditions causing the program to exit. Should be an or-ed
+   *        combintion of {@link #EXIT_ON_ERROR} or {@link #EXIT_ON_UNMATCHED}.
+   * @return array of arguments that were not matched, or {@code null} if
+   *         all arguments were successfully matched
+   * @throws IOException
+   *         if an error occured while reading.
+   * @throws IllegalStateException
+   *         if subcommands have been added to this parser
+   * @see ArgFileReader
+   */
+  public String[] matchAllArgs(ArgFileReader reader, int exitFlags)
+    throws IOException, IllegalStateException {
+    checkNoSubcommands();
+    ParseEvents.Match event = ParseEvents.beginMatch();
+    List<String> unmatched = new ArrayList<String>();
+    boolean failed = false;
+    String[] window = new String[maxNumValues() + 1];
+    int count = 0, numArgs = 0;
+    String arg;
+    
+    while (true) {
+      while (count < window.length && (arg = reader.next()) != null) {
+        window[count++] = arg;
+        numArgs++;
+      }
+      if (count == 0) {
+        break;
+      }
+      String[] args = (count == window.length) ? window : Arrays.copyOf(
+        window, count);
+      int consumed = matchArg(args, 0, matchError);
+      if (consumed < 0) {
+        exitOnError(exitFlags);
+        failed = true;
+        break;
+      }
+      collectUnmatched(unmatched, exitFlags);
+      count -= consumed;
+      System.arraycopy(window, consumed, window, 0, count);
+    }
+    return endMatch(event, numArgs, unmatched, failed, exitFlags);
+  }
+  
+  /**
+   * Matches the arguments of a memory-mapped option file and returns those
+   * which were not matched. Option names and numeric values are matched
+   * directly against the mapped bytes where possible, so that strings are only
+   * created for string values and unmatched arguments. Otherwise, the method
+   * behaves like {@link #matchAllArgs(String[], int, int) matchAllArgs(args,
+   * 0, exitFlags)}.
+   * 
+   * @param file
+   *        the mapped option file
+   * @param exitFlags
+   *        conditions causing the program to exit. Should be an or-ed
+   *        combintion of {@link #EXIT_ON_ERROR} or {@link #EXIT_ON_UNMATCHED}.
+   * @return array of arguments that were not matched, or {@code null} if
+   *         all arguments were successfully matched
+   * @throws IllegalStateException
+   *         if subcommands have been added to this parser
+   * @see MappedArgFile
+   */
+  public String[] matchAllArgs(MappedArgFile file, int exitFlags)
+    throws IllegalStateException {
+    checkNoSubcommands();
+    ParseEvents.Match event = ParseEvents.beginMatch();
+    List<String> unmatched = new ArrayList<String>();
+    boolean failed = false;
+    int k = maxNumValues() + 1;
+    MappedArgFile.View[] views = new MappedArgFile.View[k];
+    for (int j = 0; j < k; j++) {
+      views[j] = new MappedArgFile.View();
+    }
+    CharSequence[] window = new CharSequence[k];
+    int idx = 0;
+    
+    while (idx < file.size()) {
+      int count = Math.min(k, file.size() - idx);
+      if (count < window.length) {
+        window = new CharSequence[count];
+      }
+      for (int j = 0; j < count; j++) {
+        window[j] = file.charsAt(idx + j, views[j]);
+      }
+      int consumed = matchArg(window, 0, matchError);
+      if (consumed < 0) {
+        exitOnError(exitFlags);
+        failed = true;
+        break;
+      }
+      collectUnmatched(unmatched, exitFlags);
+      idx += consumed;
+    }
+    return endMatch(event, file.size(), unmatched, failed, exitFlags);
+  }
+  
+  /**
+   * Matches a list of UTF-8 encoded arguments and returns those which were not
+   * matched. Each argument consists of the bytes between the position and the
+   * limit of its buffer; the buffers themselves are not modified. Option names
+   * and numeric values are matched directly against the bytes where possible,
+   * so that strings are only created for string values, unmatched arguments
+   * and arguments that contain non-ASCII characters. Otherwise, the method
+   * behaves like {@link #matchAllArgs(String[], int, int) matchAllArgs(args,
+   * 0, exitFlags)}.
+   * 
+   * @param args
+   *        argument list
+   * @param exitFlags
+   *        conditions causing the program to exit. Should be an or-ed
+   *        combintion of {@link #EXIT_ON_ERROR} or {@link #EXIT_ON_UNMATCHED}.
+   * @return array of arguments that were not matched, or {@code null} if
+   *         all arguments were successfully matched
+   * @throws IllegalStateException
+   *         if subcommands have been added to this parser
+   */
+  public String[] matchAllArgs(ByteBuffer[] args, int exitFlags)
+    throws IllegalStateException {
+    return matchAllArgs(new Utf8Args(args), exitFlags);
+  }
+  
+  /**
+   * Matches a list of UTF-8 encoded arguments that are stored one after the
+   * other in a single array, like
+   * {@link #matchAllArgs(ByteBuffer[], int)}.
+   * 
+   * @param data
+   *        the bytes of all arguments
+   * @param offsets
+   *        argument {@code i} consists of the bytes from {@code offsets[i]}
+   *        up to, but not including, {@code offsets[i + 1]}; there is one
+   *        argument less than offsets.
+   * @param exitFlags
+   *        conditions causing the program to exit. Should be an or-ed
+   *        combintion of {@link #EXIT_ON_ERROR} or {@link #EXIT_ON_UNMATCHED}.
+   * @return array of arguments that were not matched, or {@code null} if
+   *         all arguments were successfully matched
+   * @throws IllegalArgumentException
+   *         if the offsets are decreasing or lie outside of {@code data}
+   * @throws IllegalStateException
+   *         if subcommands have been added to this parser
+   */
+  public String[] matchAllArgs(byte[] data, int[] offsets, int exitFlags)
+    throws IllegalArgumentException, IllegalStateException {
+    return matchAllArgs(new Utf8Args(data, offsets), exitFlags);
+  }
+  
+  /**
+   * Matches the arguments of the line that has last been split by an
+   * {@link ArgTokenizer} and returns those which were not matched. Option
+   * names and numeric values are matched directly against the line, so that
+   * strings are only created for string values, unmatched arguments and
+   * quoted strings with escape sequences. Otherwise, the method behaves like
+   * {@link #matchAllArgs(String[], int, int) matchAllArgs(args, 0,
+   * exitFlags)}.
+   * 
+   * @param tokens
+   *        the split line
+   * @param exitFlags
+   *        conditions causing the program to exit. Should be an or-ed
+   *        combintion of {@link #EXIT_ON_ERROR} or {@link #EXIT_ON_UNMATCHED}.
+   * @return array of arguments that were not matched, or {@code null} if
+   *         all arguments were successfully matched
+   * @throws IllegalStateException
+   *         if subcommands have been added to this parser
+   * @see ArgTokenizer#tokenize(CharSequence)
+   */
+  public String[] matchAllArgs(ArgTokenizer tokens, int exitFlags)
+    throws IllegalStateException {
+    checkNoSubcommands();
+    ParseEvents.Match event = ParseEvents.beginMatch();
+    List<String> unmatched = new ArrayList<String>();
+    boolean failed = false;
+    CharSequence[] window = new CharSequence[maxNumValues() + 1];
+    int idx = 0;
+    
+    while (idx < tokens.size()) {
+      int count = Math.min(window.length, tokens.size() - idx);
+      if (count < window.length) {
+        window = new CharSequence[count];
+      }
+      for (int j = 0; j < count; j++) {
+        window[j] = tokens.charsAt(idx + j);
+      }
+      int consumed = matchArg(window, 0, matchError);
+      if (consumed < 0) {
+        exitOnError(exitFlags);
+        failed = true;
+        break;
+      }
+      collectUnmatched(unmatched, exitFlags);
+      idx += consumed;
+    }
+    return endMatch(event, tokens.size(), unmatched, failed, exitFlags);
+  }
+  
+  /**
+   * 
+   * @param args
+   * @param exitFlags
+   * @return
+   * @see #matchAllArgs(MappedArgFile, int)
+   */
+  private String[] matchAllArgs(Utf8Args args, int exitFlags) {
+    checkNoSubcommands();
+    ParseEvents.Match event = ParseEvents.beginMatch();
+    List<String> unmatched = new ArrayList<String>();
+    boolean failed = false;
+    int k = maxNumValues() + 1;
+    MappedArgFile.View[] views = new MappedArgFile.View[k];
+    for (int j = 0; j < k; j++) {
+      views[j] = new MappedArgFile.View();
+    }
+    CharSequence[] window = new CharSequence[k];
+    int idx = 0;
+    
+    while (idx < args.size()) {
+      int count = Math.min(k, args.size() - idx);
+      if (count < window.length) {
+        window = new CharSequence[count];
+      }
+      for (int j = 0; j < count; j++) {
+        window[j] = args.charsAt(idx + j, views[j]);
+      }
+      int consumed = matchArg(window, 0, matchError);
+      if (consumed < 0) {
+        exitOnError(exitFlags);
+        failed = true;
+        break;
+      }
+      collectUnmatched(unmatched, exitFlags);
+      idx += consumed;
+    }
+    return endMatch(event, args.size(), unmatched, failed, exitFlags);
+  }
+  
+  /**
+   * Calls {@link Record#matchValues} and notifies the
+   * {@link #parseListener} about the outcome.
+   * 
+   * @param rec
+   * @param result
+   * @param ndesc
+   * @param args
+   * @param idx
+   * @param err
+   * @return
+   */
+  private int matchValues(Record rec, Object result, NameDesc ndesc,
+    CharSequence[] args, int idx, MatchError err) {
+    long start = System.nanoTime();
+    idx = rec.matchValues(result, ndesc, args, idx, err);
+    long nanos = System.nanoTime() - start;
+    if (idx < 0) {
+      parseListener.optionFailed(rec.nameList.name,
+        err.getStatus() == MatchError.RANGE, nanos);
+    } else {
+      parseListener.optionMatched(rec.nameList.name, nanos);
+    }
+    return idx;
+  }
+  
   /**
    * Matches one option starting at a specified location in an argument list.
    * The method returns the location in the list where the next match should
@@ -2353,99 +3988,76 @@ public class ArgParser {
    * @see ArgParser#getErrorMessage
    * @see ArgParser#getUnmatchedArgument
    */
-  @SuppressWarnings("unchecked")
   public int matchArg(String[] args, int idx) throws ArgParseException {
+    int next = matchArg(args, idx, matchError);
+    if (next < 0) { throw matchError.toException(); }
+    return next;
+  }
+  
+  /**
+   * Matches one option in a list of arguments that need not be strings.
+   * Errors are reported through {@code err} and the parser's error message
+   * instead of an exception.
+   * 
+   * @param args
+   * @param idx
+   * @param err
+   * @return location in list where next match should start, or -1 in the
+   *         event of an erroneous argument
+   * @see #matchArg(String[], int)
+   */
+  @SuppressWarnings("unchecked")
+  private int matchArg(CharSequence[] args, int idx, MatchError err) {
     unmatchedArg = null;
     setError(null);
-    try {
-      ArgHolder<Object> ndescHolder = new ArgHolder<Object>(Object.class);
-      Record rec = getRecord(args[idx], ndescHolder);
-      if ((rec == null) || ((rec.convertCode == 'h') && !helpOptionsEnabled)) {
-        // didn't match
-        unmatchedArg = new String(args[idx]);
-        return idx + 1;
-      }
-      NameDesc ndesc = (NameDesc) ndescHolder.getValue();
-      Object result;
-      if (rec.resHolder instanceof Vector<?>) {
-        result = createResultHolder(rec);
-      } else {
-        result = rec.resHolder;
+    OptionIndex.Entry entry = getEntry(args[idx]);
+    Record rec = (entry != null) ? entry.record : null;
+    if ((rec == null) || ((rec.convertCode == 'h') && !helpOptionsEnabled)) {
+      // didn't match
+      unmatchedArg = args[idx].toString();
+      if (parseListener != null) {
+        parseListener.argumentUnmatched(unmatchedArg);
       }
-      if (rec.convertCode == 'h') {
-        if (helpOptionsEnabled) {
-          printStream.println(getHelpMessage());
-          System.exit(0);
-        } else {
-          return idx + 1;
-        }
-      } else if (rec.convertCode != 'v') {
-        if (ndesc.oneWord) {
-          rec.scanValue(result, ndesc.name,
-            args[idx].substring(ndesc.name.length()), 0);
-        } else {
-          if (rec.convertCode != 'b') {
-            if (idx + rec.numValues >= args.length) { throw new ArgParseException(
-              ndesc.name, String.format("requires %d value%s", rec.numValues,
-                (rec.numValues > 1 ? "s" : ""))); }
-            for (int k = 0; k < rec.numValues; k++) {
-              rec.scanValue(result, ndesc.name, args[++idx], k);
-            }
-          } else {
-            // special handling of %b to allow for omitting 'true'
-            if (idx + rec.numValues >= args.length) {
-              // last option followed by nothing, so its 'true'
-              ((ArgHolder<Boolean>) result).setValue(true);
-            } else if (rec.numValues > 1) {
-              // more than one value, must be a boolean array, proceed as usual
-              for (int k = 0; k < rec.numValues; k++) {
-                rec.scanValue(result, ndesc.name, args[++idx], k);
-              }
-            } else {
-              // only one expected value
-              try {
-                // try to parse it
-                rec.scanValue(result, ndesc.name, args[++idx], 0);
-              } catch (ArgParseException e) {
-                // if it fails with a "malformed boolean" exception
-                if (e.getMessage().contains("malformed boolean")) {
-                  // assume that it was omitted and treat it as 'true'
-                  ((ArgHolder<Boolean>) result).setValue(true);
-                  // and decrement the idx again for correct parsing again
-                  idx--;
-                } else {
-                  throw e;
-                }
-              }
-            }
-          }
+      return idx + 1;
+    }
+    NameDesc ndesc = entry.nameDesc;
+    if (rec.convertCode == 'h') {
+      if (helpOptionsEnabled) {
+        try {
+          writeHelp(printStream);
+        } catch (IOException exc) {
+          // PrintStream does not throw IOExceptions
         }
+        printStream.println();
+        System.exit(0);
       } else {
-        if (((rec.resHolder instanceof ArgHolder<?>) && ((ArgHolder<?>) rec.resHolder)
-            .getType().equals(Boolean.class))) {
-          ((ArgHolder<Boolean>) result).setValue(Boolean.valueOf(rec.vval));
-        } else {
-          for (int k = 0; k < rec.numValues; k++) {
-            ((boolean[]) result)[k] = rec.vval;
-          }
-        }
+        return idx + 1;
       }
-      if (rec.resHolder instanceof Vector<?>) {
-        ((Vector<Object>) rec.resHolder).add(result);
+    }
+    Object result;
+    if (rec.resHolder instanceof Vector<?>) {
+      result = rec.createResultHolder();
+    } else {
+      result = rec.resHolder;
+      if (result instanceof ValueList) {
+        ((ValueList) result).reserve();
       }
-    } catch (ArgParseException e) {
-      setError(e.getMessage());
-      throw e;
     }
-    return idx + 1;
-  }
-  
-  private String spaceString(int n) {
-    StringBuffer sbuf = new StringBuffer(n);
-    for (int i = 0; i < n; i++) {
-      sbuf.append(' ');
+    if (parseListener == null) {
+      idx = rec.matchValues(result, ndesc, args, idx, err);
+    } else {
+      idx = matchValues(rec, result, ndesc, args, idx, err);
     }
-    return sbuf.toString();
+    if (idx < 0) {
+      setError(err.getMessage());
+      return -1;
+    }
+    if (rec.resHolder instanceof Vector<?>) {
+      ((Vector<Object>) rec.resHolder).add(result);
+    } else if (result instanceof ValueList) {
+      ((ValueList) result).commit();
+    }
+    return idx + 1;
   }
   
   /**
@@ -2488,63 +4100,166 @@ public class ArgParser {
    */
   public static String insertLineBreaks(String message, int lineBreak,
     String lineBreakSymbol, String padString, boolean breakBeforeLineBreak) {
-    
     StringBuilder sb = new StringBuilder();
-    StringTokenizer st = new StringTokenizer(message != null ? message : "",
-      " ");
-    if (st.hasMoreElements()) {
-      sb.append(st.nextElement().toString());
-    }
-    int length = sb.length();
-    int pos;
-    int count = 0;
-    while (st.hasMoreElements()) {
-      String tmp = st.nextElement().toString();
+    appendLineBreaks(sb, message != null ? message : "", lineBreak,
+      lineBreakSymbol, padString, breakBeforeLineBreak);
+    return sb.toString();
+  }
+  
+  /**
+   * Appends {@code message} with linebreaks to {@code sb}, in the same way as
+   * {@link #insertLineBreaks(String, int, String, String, boolean)}, but
+   * without splitting the message into separate strings.
+   * 
+   * @param sb
+   * @param message
+   * @param lineBreak
+   * @param lineBreakSymbol
+   * @param padString
+   * @param breakBeforeLineBreak
+   */
+  private static void appendLineBreaks(StringBuilder sb, String message,
+    int lineBreak, String lineBreakSymbol, String padString,
+    boolean breakBeforeLineBreak) {
+    int n = message.length();
+    int length = 0;
+    boolean first = true;
+    int start = 0;
+    while (true) {
+      // Skip the separating blanks and find the end of the next word
+      while ((start < n) && (message.charAt(start) == ' ')) {
+        start++;
+      }
+      if (start == n) {
+        break;
+      }
+      int end = message.indexOf(' ', start);
+      if (end < 0) {
+        end = n;
+      }
+      int wordLength = end - start;
       
+      if (first) {
+        sb.append(message, start, end);
+        length = wordLength;
+        first = false;
+        start = end;
+        continue;
+      }
       if ((lineBreak < Integer.MAX_VALUE)
-          && ((length >= lineBreak) || (breakBeforeLineBreak && (length + tmp
-              .length()) >= lineBreak))) {
+          && ((length >= lineBreak) || (breakBeforeLineBreak && (length
+              + wordLength) >= lineBreak))) {
         sb.append(lineBreakSymbol);
         if (padString != null) {
           sb.append(padString);
         }
-        count++;
         length = 0;
       } else {
         sb.append(' ');
       }
       
-      // Append current element
-      sb.append(tmp);
+      // Append current word
+      sb.append(message, start, end);
       
       // Change length
-      if ((pos = tmp.indexOf(lineBreakSymbol)) >= 0) {
-        length = tmp.length() - pos - lineBreakSymbol.length();
+      int pos = message.indexOf(lineBreakSymbol, start);
+      if ((pos >= 0) && (pos + lineBreakSymbol.length() <= end)) {
+        length = end - pos - lineBreakSymbol.length();
       } else {
-        length += tmp.length() + 1;
+        length += wordLength + 1;
       }
+      start = end;
     }
-    return sb.toString();
-    
   }
   
   /**
    * Returns a string describing the allowed options in detail.
    * 
+   * <p>
+   * The message is rendered once and then reused until an option or delimiter
+   * is added, the visibility of an option or the synopsis string is changed,
+   * or the message is requested with a different number of console columns,
+   * help indentation or help option setting.
+   * 
    * @return help information string.
    */
   public String getHelpMessage() {
+    if (!isHelpMessageCached()) {
+      helpMessageColumns = getConsoleColumns();
+      helpMessageIndent = helpIndent;
+      helpMessageEnabled = helpOptionsEnabled;
+      StringBuilder sb = new StringBuilder();
+      try {
+        writeHelp(sb, new StringBuilder());
+      } catch (IOException exc) {
+        // cannot happen, StringBuilder does not throw IOExceptions
+        throw new IllegalStateException(exc);
+      }
+      helpMessage = sb.toString();
+    }
+    return helpMessage;
+  }
+  
+  /**
+   * 
+   * @return {@code true} if {@link #helpMessage} is up to date.
+   */
+  private boolean isHelpMessageCached() {
+    return (helpMessage != null)
+        && (helpMessageColumns == getConsoleColumns())
+        && (helpMessageIndent == helpIndent)
+        && (helpMessageEnabled == helpOptionsEnabled);
+  }
+  
+  /**
+   * Writes the message returned by {@link #getHelpMessage()} to {@code out}.
+   * 
+   * <p>
+   * If the help message is currently cached, the cached string is written.
+   * Otherwise, the message is rendered option by option directly into
+   * {@code out}, using a single scratch buffer for the current option, and is
+   * not cached. The memory used is thus independent of the number of options,
+   * which is preferable for parsers with very many options whose help is
+   * printed only once.
+   * 
+   * @param out
+   *        destination of the help message, e.g., a {@link PrintStream}
+   * @throws IOException
+   *         if {@code out} throws one
+   */
+  public void writeHelp(Appendable out) throws IOException {
+    if (isHelpMessageCached()) {
+      out.append(helpMessage);
+    } else {
+      writeHelp(out, new StringBuilder());
+    }
+  }
+  
+  /**
+   * Renders the help message into {@code out}. Each option is first rendered
+   * into {@code scratch} and then written in one piece.
+   * 
+   * @param out
+   * @param scratch
+   *        buffer that is reused for every option
+   * @throws IOException
+   * @see #getHelpMessage()
+   */
+  private void writeHelp(Appendable out, StringBuilder scratch)
+    throws IOException {
     Record rec;
     NameDesc ndesc;
     boolean hasOneWordAlias = false;
-    StringBuilder s = new StringBuilder();
+    int lineBreak = getConsoleColumns() - helpIndent;
+    String padString = null;
+    char[] chars = null;
+    ParseEvents.Help event = ParseEvents.beginHelp();
     
-    s.append(String.format("Usage: %s\n", synopsisString));
-    s.append("Options include:\n\n");
+    out.append("Usage: ").append(String.valueOf(synopsisString)).append('\n');
+    out.append("Options include:\n\n");
     
     // iterate over all options in forms of records
     for (int i = 0; i < matchList.size(); i++) {
-      StringBuilder optionInfo = new StringBuilder();
       rec = matchList.get(i);
       
       // if the record is not visible, skip it
@@ -2558,72 +4273,133 @@ public class ArgParser {
         continue;
       }
       
+      scratch.setLength(0);
       // if the record is a delimiter, print it and continue to the next record
       if (rec.type == Record.DELIM) {
-        s.append('\n');
-        s.append(rec.nameList.name);
-        s.append('\n');
-        continue;
-      }
-      
-      for (ndesc = rec.nameList; ndesc != null; ndesc = ndesc.next) {
-        if (ndesc.oneWord) {
-          hasOneWordAlias = true;
-          break;
-        }
-      }
-      String next = null;
-      for (ndesc = rec.nameList; ndesc != null; ndesc = ndesc.next) {
-        optionInfo.append(ndesc.name);
-        if (hasOneWordAlias && !ndesc.oneWord) {
-          optionInfo.append(' ');
-        }
-        if (ndesc.next != null) {
-          next = ndesc.next.name;
-          String prefix = getLongestCommonPrefix(next, ndesc.name);
-          int lenDiffCurr = Math.abs(ndesc.name.length() - prefix.length());
-          int lenDiffNext = Math.abs(next.length() - prefix.length());
-          if (((lenDiffCurr == 1) || (lenDiffNext == 1))
-              && (prefix.length() > 2)) {
+        scratch.append('\n');
+        scratch.append(rec.nameList.name);
+        scratch.append('\n');
+      } else {
+        for (ndesc = rec.nameList; ndesc != null; ndesc = ndesc.next) {
+          if (ndesc.oneWord) {
+            hasOneWordAlias = true;
             break;
           }
-          optionInfo.append(", ");
         }
-      }
-      if (!hasOneWordAlias) {
-        optionInfo.append(' ');
-      }
-      if (rec.convertCode != 'v' && rec.convertCode != 'h') {
-        if (rec.valueDesc != null) {
-          optionInfo.append(rec.valueDesc);
-        } else {
-          if (rec.rangeDesc != null) {
-            optionInfo.append(String.format("<%s %s>", rec.valTypeName(),
-              rec.rangeDesc));
+        for (ndesc = rec.nameList; ndesc != null; ndesc = ndesc.next) {
+          scratch.append(ndesc.name);
+          if (hasOneWordAlias && !ndesc.oneWord) {
+            scratch.append(' ');
+          }
+          if (ndesc.next != null) {
+            String next = ndesc.next.name;
+            int prefix = commonPrefixLength(next, ndesc.name);
+            int lenDiffCurr = ndesc.name.length() - prefix;
+            int lenDiffNext = next.length() - prefix;
+            if (((lenDiffCurr == 1) || (lenDiffNext == 1)) && (prefix > 2)) {
+              break;
+            }
+            scratch.append(", ");
+          }
+        }
+        if (!hasOneWordAlias) {
+          scratch.append(' ');
+        }
+        if (rec.convertCode != 'v' && rec.convertCode != 'h') {
+          if (rec.valueDesc != null) {
+            scratch.append(rec.valueDesc);
           } else {
-            optionInfo.append(String.format("<%s>", rec.valTypeName()));
+            scratch.append('<').append(rec.valTypeName());
+            if (rec.rangeDesc != null) {
+              scratch.append(' ').append(rec.rangeDesc);
+            }
+            scratch.append('>');
           }
         }
+        if (rec.numValues > 1) {
+          scratch.append('X');
+          scratch.append(rec.numValues);
+        }
+        if (rec.helpMsg.length() > 0) {
+          int pad = helpIndent - scratch.length();
+          if (pad < 2) {
+            scratch.append('\n');
+            pad = helpIndent;
+          }
+          for (int j = 0; j < pad; j++) {
+            scratch.append(' ');
+          }
+          if (padString == null) {
+            padString = String.format("%1$" + helpIndent + "s", "");
+          }
+          appendLineBreaks(scratch, rec.helpMsg, lineBreak, "\n", padString,
+            true);
+        }
+        scratch.append('\n');
       }
-      if (rec.numValues > 1) {
-        optionInfo.append('X');
-        optionInfo.append(rec.numValues);
+      
+      if (out instanceof Writer) {
+        // avoid the copy that Writer.append(CharSequence) would create
+        if ((chars == null) || (chars.length < scratch.length())) {
+          chars = new char[Math.max(scratch.length(), 256)];
+        }
+        scratch.getChars(0, scratch.length(), chars, 0);
+        ((Writer) out).write(chars, 0, scratch.length());
+      } else {
+        out.append(scratch);
       }
-      s.append(optionInfo.toString());
-      if (rec.helpMsg.length() > 0) {
-        int pad = helpIndent - optionInfo.length();
+    }
+    if (subcommands != null) {
+      writeSubcommandsHelp(out, lineBreak);
+    }
+    if (event != null) {
+      event.finish(matchList.size());
+    }
+  }
+  
+  /**
+   * Writes the names and descriptions of the subcommands, formatted like the
+   * options. The parsers of the subcommands are not created.
+   * 
+   * @param out
+   * @param lineBreak
+   *        maximal length of a description line
+   * @throws IOException
+   */
+  private void writeSubcommandsHelp(Appendable out, int lineBreak)
+    throws IOException {
+    StringBuilder sb = new StringBuilder("\nSubcommands:\n\n");
+    String padString = String.format("%1$" + helpIndent + "s", "");
+    for (Subcommand sub : subcommands.values()) {
+      sb.append(sub.name);
+      if (sub.description.length() > 0) {
+        int pad = helpIndent - sub.name.length();
         if (pad < 2) {
-          s.append('\n');
+          sb.append('\n');
           pad = helpIndent;
         }
-        s.append(spaceString(pad));
-        s.append(insertLineBreaks(rec.helpMsg,
-          getConsoleColumns() - helpIndent, "\n",
-          String.format("%1$" + helpIndent + "s", ""), true));
+        sb.append(padString, 0, pad);
+        appendLineBreaks(sb, sub.description, lineBreak, "\n", padString, true);
       }
-      s.append('\n');
+      sb.append('\n');
+    }
+    out.append(sb);
+  }
+  
+  /**
+   * 
+   * @param a
+   * @param b
+   * @return the length of the longest common prefix of both strings
+   * @see #getLongestCommonPrefix(String, String)
+   */
+  private static int commonPrefixLength(String a, String b) {
+    int n = Math.min(a.length(), b.length());
+    int i = 0;
+    while ((i < n) && (a.charAt(i) == b.charAt(i))) {
+      i++;
     }
-    return s.toString();
+    return i;
   }
   
   /**
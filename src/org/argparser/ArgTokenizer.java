@@ -0,0 +1,379 @@
+/*
+ * Copyright 2011-2013 by Andreas Draeger and Florian Mittag
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.argparser;
+
+import java.util.List;
+
+/**
+ * Splits lines into arguments like
+ * {@link ArgParser#stringToArgs(List, String, boolean)}, but without creating
+ * a string for each argument. The start and end of each argument within the
+ * line are written into an {@code int} array that is reused for every line,
+ * and the arguments can be matched directly by
+ * {@link ArgParser#matchAllArgs(ArgTokenizer, int)}, so that strings are only
+ * created for the values of string options and for unmatched arguments.
+ * 
+ * <p>
+ * Arguments are separated by white space. If quoted strings are allowed, an
+ * argument that starts with {@code "} extends to the next unescaped
+ * {@code "}; its span covers the characters between the quotes. If such an
+ * argument contains escape sequences, it is marked as escaped and its span
+ * includes the quotes; it is decoded when its string is requested.
+ * 
+ * <pre>
+ * ArgTokenizer tokens = new ArgTokenizer(true);
+ * while ((line = reader.readLine()) != null) {
+ *   tokens.tokenize(line);
+ *   parser.matchAllArgs(tokens, 0);
+ * }
+ * </pre>
+ * 
+ * An {@code ArgTokenizer} is not thread-safe.
+ */
+public final class ArgTokenizer {
+  
+  /**
+   * A view of an argument, which is reused for every line.
+   */
+  private static final class Span implements CharSequence {
+    /**
+     * 
+     */
+    private CharSequence line;
+    /**
+     * 
+     */
+    private int start;
+    /**
+     * 
+     */
+    private int end;
+    
+    /**
+     * 
+     * @param line
+     * @param start
+     * @param end
+     * @return this span
+     */
+    Span set(CharSequence line, int start, int end) {
+      this.line = line;
+      this.start = start;
+      this.end = end;
+      return this;
+    }
+    
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.lang.CharSequence#length()
+     */
+    @Override
+    public int length() {
+      return end - start;
+    }
+    
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.lang.CharSequence#charAt(int)
+     */
+    @Override
+    public char charAt(int index) {
+      return line.charAt(start + index);
+    }
+    
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.lang.CharSequence#subSequence(int, int)
+     */
+    @Override
+    public CharSequence subSequence(int from, int to) {
+      return line.subSequence(start + from, start + to);
+    }
+    
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+      return line.subSequence(start, end).toString();
+    }
+  }
+  
+  /**
+   * Flag of an argument that is a quoted string with escape sequences.
+   */
+  private static final int ESCAPED = 1;
+  
+  /**
+   * Number of {@code int}s per argument in {@link #spans}: start, end and
+   * flags.
+   */
+  private static final int STRIDE = 3;
+  
+  /**
+   * 
+   */
+  private final boolean allowQuotedStrings;
+  /**
+   * The last line.
+   */
+  private CharSequence line = "";
+  /**
+   * Start, end and flags of each argument of the last line.
+   */
+  private int[] spans = new int[16 * STRIDE];
+  /**
+   * Number of arguments of the last line.
+   */
+  private int count = 0;
+  /**
+   * 
+   */
+  private Span[] views = new Span[0];
+  
+  /**
+   * 
+   * @param allowQuotedStrings
+   *        whether arguments may be quoted strings
+   */
+  public ArgTokenizer(boolean allowQuotedStrings) {
+    this.allowQuotedStrings = allowQuotedStrings;
+  }
+  
+  /**
+   * Splits a line into arguments, replacing those of the previous line. The
+   * line is not copied and must not be modified as long as its arguments are
+   * in use.
+   * 
+   * @param s
+   *        the line
+   * @return the number of arguments
+   * @throws StringScanException
+   *         if a quoted string is not terminated or contains an illegal escape
+   *         sequence; the arguments before it are kept.
+   */
+  public int tokenize(CharSequence s) throws StringScanException {
+    line = s;
+    count = 0;
+    int len = s.length();
+    int i = skipWhiteSpace(s, 0, len);
+    while (i < len) {
+      int start = i, flags = 0;
+      if (allowQuotedStrings && (s.charAt(i) == '"')) {
+        char c = 0;
+        i++;
+        while ((i < len) && ((c = s.charAt(i)) != '"') && (c != '\n')) {
+          if (c == '\\') {
+            i = skipEscape(s, i, len);
+            flags = ESCAPED;
+          } else {
+            i++;
+          }
+        }
+        if (i >= len) {
+          throw new StringScanException(len, "end of input");
+        } else if (c == '\n') {
+          throw new StringScanException(i, "unclosed quoted string");
+        }
+        i++;
+        if (flags == 0) {
+          add(start + 1, i - 1, 0);
+        } else {
+          add(start, i, flags);
+        }
+      } else {
+        while ((i < len) && !Character.isWhitespace(s.charAt(i))) {
+          i++;
+        }
+        add(start, i, 0);
+      }
+      i = skipWhiteSpace(s, i, len);
+    }
+    return count;
+  }
+  
+  /**
+   * 
+   * @param s
+   * @param i
+   * @param len
+   * @return the index of the first character at or after {@code i} that is
+   *         not white space.
+   */
+  private static int skipWhiteSpace(CharSequence s, int i, int len) {
+    while ((i < len) && Character.isWhitespace(s.charAt(i))) {
+      i++;
+    }
+    return i;
+  }
+  
+  /**
+   * Skips an escape sequence as accepted by
+   * {@link StringScanner#scanUnquotedChar()}.
+   * 
+   * @param s
+   * @param i
+   *        location of the backslash
+   * @param len
+   * @return the index after the escape sequence
+   * @throws StringScanException
+   */
+  private static int skipEscape(CharSequence s, int i, int len)
+    throws StringScanException {
+    if (++i == len) { throw new StringScanException(i, "end of input"); }
+    char c = s.charAt(i++);
+    if ('0' <= c && c < '8') {
+      int v = c - '0';
+      for (int j = 0; j < 2 && i < len; j++) {
+        c = s.charAt(i);
+        if ('0' <= c && c < '8' && (v * 8 + (c - '0')) <= 255) {
+          v = v * 8 + (c - '0');
+          i++;
+        } else {
+          break;
+        }
+      }
+    } else if ("\"'\\ntbrf".indexOf(c) == -1) { throw new StringScanException(
+      i - 1, "illegal escape character '" + c + "'"); }
+    return i;
+  }
+  
+  /**
+   * 
+   * @param start
+   * @param end
+   * @param flags
+   */
+  private void add(int start, int end, int flags) {
+    if ((count + 1) * STRIDE > spans.length) {
+      int[] tmp = new int[spans.length * 2];
+      System.arraycopy(spans, 0, tmp, 0, spans.length);
+      spans = tmp;
+    }
+    int k = count++ * STRIDE;
+    spans[k] = start;
+    spans[k + 1] = end;
+    spans[k + 2] = flags;
+  }
+  
+  /**
+   * 
+   * @return the number of arguments of the last line.
+   */
+  public int size() {
+    return count;
+  }
+  
+  /**
+   * 
+   * @param i
+   * @return the index in the line of the first character of argument
+   *         {@code i}.
+   * @throws IndexOutOfBoundsException
+   */
+  public int start(int i) throws IndexOutOfBoundsException {
+    return spans[checkIndex(i) * STRIDE];
+  }
+  
+  /**
+   * 
+   * @param i
+   * @return the index in the line after the last character of argument
+   *         {@code i}.
+   * @throws IndexOutOfBoundsException
+   */
+  public int end(int i) throws IndexOutOfBoundsException {
+    return spans[checkIndex(i) * STRIDE + 1];
+  }
+  
+  /**
+   * 
+   * @param i
+   * @return {@code true} if argument {@code i} is a quoted string with escape
+   *         sequences, whose span includes the quotes.
+   * @throws IndexOutOfBoundsException
+   */
+  public boolean isEscaped(int i) throws IndexOutOfBoundsException {
+    return (spans[checkIndex(i) * STRIDE + 2] & ESCAPED) != 0;
+  }
+  
+  /**
+   * 
+   * @param i
+   * @return {@code i}
+   * @throws IndexOutOfBoundsException
+   */
+  private int checkIndex(int i) throws IndexOutOfBoundsException {
+    if ((i < 0) || (i >= count)) { throw new IndexOutOfBoundsException(
+      "Argument " + i + " of " + count); }
+    return i;
+  }
+  
+  /**
+   * Creates the string of an argument, decoding its escape sequences.
+   * 
+   * @param i
+   * @return
+   * @throws IndexOutOfBoundsException
+   */
+  public String getString(int i) throws IndexOutOfBoundsException {
+    int start = start(i), end = end(i);
+    if (!isEscaped(i)) { return line.subSequence(start, end).toString(); }
+    try {
+      return new StringScanner(line.subSequence(start, end).toString())
+          .scanQuotedString();
+    } catch (StringScanException e) {
+      // has been checked by tokenize
+      throw new IllegalStateException(e);
+    }
+  }
+  
+  /**
+   * Adds the strings of all arguments of the last line to a list.
+   * 
+   * @param list
+   */
+  public void addTo(List<String> list) {
+    for (int i = 0; i < count; i++) {
+      list.add(getString(i));
+    }
+  }
+  
+  /**
+   * 
+   * @param i
+   * @return argument {@code i} as a view on the line, or as a string if it is
+   *         escaped. Views are reused for the next line.
+   */
+  CharSequence charsAt(int i) {
+    if (isEscaped(i)) { return getString(i); }
+    if (i >= views.length) {
+      Span[] tmp = new Span[Math.max(2 * views.length, 16)];
+      System.arraycopy(views, 0, tmp, 0, views.length);
+      for (int j = views.length; j < tmp.length; j++) {
+        tmp[j] = new Span();
+      }
+      views = tmp;
+    }
+    return views[i].set(line, spans[i * STRIDE], spans[i * STRIDE + 1]);
+  }
+}
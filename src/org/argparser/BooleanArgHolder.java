@@ -0,0 +1,124 @@
+/*
+ * Copyright 2011-2013 by Andreas Draeger and Florian Mittag
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.argparser;
+
+/**
+ * Holds the value of an option with the conversion code {@code %b} or
+ * {@code %v} as a {@code boolean}, without boxing it.
+ * 
+ * <pre>
+ * BooleanArgHolder verbose = new BooleanArgHolder(false);
+ * parser.addOption(&quot;-v %v #print progress information&quot;, verbose);
+ * parser.matchAllArgs(args);
+ * if (verbose.getAsBoolean()) {
+ *   ...
+ * }
+ * </pre>
+ * 
+ * @see PrimitiveArgHolder
+ */
+public class BooleanArgHolder extends PrimitiveArgHolder<Boolean> {
+  
+  /**
+   * Generated serial version identifier.
+   */
+  private static final long serialVersionUID = -7632636028961431777L;
+  
+  /**
+   * The value, valid only if it has been set.
+   */
+  private boolean value;
+  /**
+   * 
+   */
+  private final boolean defaultValue;
+  
+  /**
+   * Creates a holder without a default value.
+   */
+  public BooleanArgHolder() {
+    super(Boolean.class);
+    defaultValue = false;
+  }
+  
+  /**
+   * Creates a holder with the given default value.
+   * 
+   * @param defaultValue
+   */
+  public BooleanArgHolder(boolean defaultValue) {
+    super(Boolean.valueOf(defaultValue));
+    this.defaultValue = defaultValue;
+  }
+  
+  /**
+   * 
+   * @return the value if it has been set, the default value otherwise, or
+   *         {@code false} if there is none.
+   */
+  public boolean getAsBoolean() {
+    return isSetValue() ? value : defaultValue;
+  }
+  
+  /**
+   * 
+   * @param value
+   */
+  public void set(boolean value) {
+    this.value = value;
+    markSet();
+  }
+  
+  /*
+   * (non-Javadoc)
+   * 
+   * @see org.argparser.PrimitiveArgHolder#box()
+   */
+  @Override
+  Boolean box() {
+    return Boolean.valueOf(value);
+  }
+  
+  /*
+   * (non-Javadoc)
+   * 
+   * @see org.argparser.PrimitiveArgHolder#unbox(java.lang.Object)
+   */
+  @Override
+  void unbox(Boolean value) {
+    this.value = value.booleanValue();
+  }
+  
+  /*
+   * (non-Javadoc)
+   * 
+   * @see org.argparser.ArgHolder#clone()
+   */
+  @Override
+  public BooleanArgHolder clone() {
+    BooleanArgHolder holder;
+    if (isSetDefaultValue()) {
+      holder = new BooleanArgHolder(defaultValue);
+    } else {
+      holder = new BooleanArgHolder();
+    }
+    if (isSetValue()) {
+      holder.set(value);
+    }
+    return holder;
+  }
+}
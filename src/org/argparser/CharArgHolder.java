@@ -0,0 +1,122 @@
+/*
+ * Copyright 2011-2013 by Andreas Draeger and Florian Mittag
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.argparser;
+
+/**
+ * Holds the value of an option with the conversion code {@code %c} as a
+ * {@code char}, without boxing it.
+ * 
+ * <pre>
+ * CharArgHolder separator = new CharArgHolder(',');
+ * parser.addOption(&quot;--separator %c #field separator&quot;, separator);
+ * parser.matchAllArgs(args);
+ * split(line, separator.getAsChar());
+ * </pre>
+ * 
+ * @see PrimitiveArgHolder
+ */
+public class CharArgHolder extends PrimitiveArgHolder<Character> {
+  
+  /**
+   * Generated serial version identifier.
+   */
+  private static final long serialVersionUID = -8547619013504956440L;
+  
+  /**
+   * The value, valid only if it has been set.
+   */
+  private char value;
+  /**
+   * 
+   */
+  private final char defaultValue;
+  
+  /**
+   * Creates a holder without a default value.
+   */
+  public CharArgHolder() {
+    super(Character.class);
+    defaultValue = '\0';
+  }
+  
+  /**
+   * Creates a holder with the given default value.
+   * 
+   * @param defaultValue
+   */
+  public CharArgHolder(char defaultValue) {
+    super(Character.valueOf(defaultValue));
+    this.defaultValue = defaultValue;
+  }
+  
+  /**
+   * 
+   * @return the value if it has been set, the default value otherwise, or
+   *         {@code '\\0'} if there is none.
+   */
+  public char getAsChar() {
+    return isSetValue() ? value : defaultValue;
+  }
+  
+  /**
+   * 
+   * @param value
+   */
+  public void set(char value) {
+    this.value = value;
+    markSet();
+  }
+  
+  /*
+   * (non-Javadoc)
+   * 
+   * @see org.argparser.PrimitiveArgHolder#box()
+   */
+  @Override
+  Character box() {
+    return Character.valueOf(value);
+  }
+  
+  /*
+   * (non-Javadoc)
+   * 
+   * @see org.argparser.PrimitiveArgHolder#unbox(java.lang.Object)
+   */
+  @Override
+  void unbox(Character value) {
+    this.value = value.charValue();
+  }
+  
+  /*
+   * (non-Javadoc)
+   * 
+   * @see org.argparser.ArgHolder#clone()
+   */
+  @Override
+  public CharArgHolder clone() {
+    CharArgHolder holder;
+    if (isSetDefaultValue()) {
+      holder = new CharArgHolder(defaultValue);
+    } else {
+      holder = new CharArgHolder();
+    }
+    if (isSetValue()) {
+      holder.set(value);
+    }
+    return holder;
+  }
+}
@@ -0,0 +1,466 @@
+/*
+ * Copyright 2011-2013 by Andreas Draeger and Florian Mittag
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.argparser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * An immutable snapshot of the options of an {@link ArgParser}, created by
+ * {@link ArgParser#compile()}. In contrast to {@link ArgParser}, a compiled
+ * parser keeps no state between two calls and never writes into the result
+ * holders that have been passed to {@link ArgParser#addOption addOption}.
+ * Instead, each call of {@link #parse(String[]) parse} returns a new
+ * {@link ParseResult} that contains the values, the unmatched arguments and
+ * the error message of that call. A compiled parser can therefore be shared by
+ * any number of threads without locking.
+ * 
+ * <p>
+ * Help options are not acted upon: if one of them is matched (and help options
+ * are enabled), {@link ParseResult#isHelpRequested()} returns {@code true} and
+ * the application may print {@link #getHelpMessage()} itself.
+ * 
+ * <pre>
+ * CompiledArgParser compiled = parser.compile();
+ * ...
+ * ParseResult result = compiled.parse(args);
+ * if (result.hasError()) {
+ *   ... report result.getErrorMessage() ...
+ * }
+ * long size = result.getValue(&quot;-size&quot;, Long.class);
+ * </pre>
+ * 
+ * <p>
+ * Large numbers of argument lists, e.g., recorded command lines that are
+ * validated against the current options, can be matched in parallel by
+ * {@link #parseAll(List)}.
+ * 
+ * @see ArgParser#compile()
+ * @see ParseResult
+ */
+public class CompiledArgParser {
+  
+  /**
+   * Maximal number of argument lists that {@link #parseAll(List, ForkJoinPool)}
+   * matches in one task without splitting it further.
+   */
+  private static final int BATCH_SIZE = 64;
+  
+  /**
+   * The frozen match list.
+   */
+  private final List<ArgParser.Record> records;
+  /**
+   * 
+   */
+  private final OptionIndex index;
+  /**
+   * 
+   */
+  private final boolean helpOptionsEnabled;
+  /**
+   * 
+   */
+  private final String helpMessage;
+  
+  /**
+   * Creates a snapshot of the given parser.
+   * 
+   * @param records
+   *        the parser's match list, which is copied
+   * @param helpOptionsEnabled
+   * @param helpMessage
+   */
+  CompiledArgParser(List<ArgParser.Record> records, boolean helpOptionsEnabled,
+    String helpMessage) {
+    this.records = Collections.unmodifiableList(new ArrayList<ArgParser.Record>(
+      records));
+    this.index = new OptionIndex(this.records);
+    this.helpOptionsEnabled = helpOptionsEnabled;
+    this.helpMessage = helpMessage;
+  }
+  
+  /**
+   * Returns the help message of the parser at the time it was compiled.
+   * 
+   * @return help information string
+   * @see ArgParser#getHelpMessage()
+   */
+  public String getHelpMessage() {
+    return helpMessage;
+  }
+  
+  /**
+   * Indicates whether or not help options are enabled.
+   * 
+   * @return
+   * @see ArgParser#getHelpOptionsEnabled()
+   */
+  public boolean getHelpOptionsEnabled() {
+    return helpOptionsEnabled;
+  }
+  
+  /**
+   * Returns the names of the options that an unrecognized argument may have
+   * been meant to be.
+   * 
+   * @param arg
+   *        an argument that did not match any option
+   * @return the names, closest first, or an empty array
+   * @see ArgParser#getSuggestions(String)
+   * @see ParseResult#getUnmatchedArguments()
+   */
+  public String[] getSuggestions(String arg) {
+    return ArgParser.suggest(index, arg, helpOptionsEnabled);
+  }
+  
+  /**
+   * 
+   * @return the number of records in the frozen match list.
+   */
+  int getRecordCount() {
+    return records.size();
+  }
+  
+  /**
+   * 
+   * @return the frozen match list.
+   */
+  List<ArgParser.Record> getRecords() {
+    return records;
+  }
+  
+  /**
+   * 
+   * @return
+   */
+  OptionIndex getIndex() {
+    return index;
+  }
+  
+  /**
+   * Matches all arguments of the given list.
+   * 
+   * @param args
+   *        argument list
+   * @return the values, unmatched arguments and error message of this call
+   * @see #parse(String[], int)
+   */
+  public ParseResult parse(String[] args) {
+    return parse(args, 0);
+  }
+  
+  /**
+   * Matches the arguments of a list, starting at location {@code idx}. The
+   * matching behaves like {@link ArgParser#matchAllArgs(String[], int, int)
+   * matchAllArgs(args, idx, 0)}: unmatched arguments are collected, and the
+   * matching stops at the first erroneous argument.
+   * 
+   * @param args
+   *        argument list
+   * @param idx
+   *        starting location in list
+   * @return the values, unmatched arguments and error message of this call
+   */
+  public ParseResult parse(String[] args, int idx) {
+    return parse(args, idx, false);
+  }
+  
+  /**
+   * Matches all arguments of the given list without converting the values.
+   * 
+   * @param args
+   *        argument list
+   * @return the unconverted values, unmatched arguments and error message of
+   *         this call
+   * @see #parseLazily(String[], int)
+   */
+  public ParseResult parseLazily(String[] args) {
+    return parseLazily(args, 0);
+  }
+  
+  /**
+   * Matches the arguments of a list like {@link #parse(String[], int)}, but
+   * only resolves the options and remembers the positions of their values.
+   * Each value is converted and checked against the option's range when it is
+   * read from the returned result for the first time, and the converted value
+   * replaces the position. Values that are never read are never converted,
+   * which saves time if an application only reads some of the options.
+   * 
+   * <p>
+   * As a consequence, the result only reports the errors that can be found
+   * without converting a value, i.e., missing values. A value that is
+   * malformed or out of range makes {@link ParseResult#getValue(String)}
+   * throw an {@link IllegalArgumentException} whose message is the error
+   * message {@link #parse(String[], int)} would have reported. Errors in
+   * values that are replaced by a later occurrence of the same option are not
+   * noticed at all. The values of boolean options ({@code %v} and {@code %b})
+   * are always converted, since whether a {@code %b} option consumes the next
+   * argument depends on its value.
+   * 
+   * <p>
+   * The argument list must not be modified while the result is in use, and
+   * the result must not be shared by threads without synchronization.
+   * 
+   * @param args
+   *        argument list
+   * @param idx
+   *        starting location in list
+   * @return the unconverted values, unmatched arguments and error message of
+   *         this call
+   */
+  public ParseResult parseLazily(String[] args, int idx) {
+    return parse(args, idx, true);
+  }
+  
+  /**
+   * 
+   * @param args
+   * @param idx
+   * @param lazy
+   *        whether to defer the conversion of the values
+   * @return
+   */
+  private ParseResult parse(String[] args, int idx, boolean lazy) {
+    ParseResult result = new ParseResult(this);
+    MatchError err = new MatchError();
+    while (args != null && idx < args.length) {
+      OptionIndex.Entry entry = index.lookup(args[idx]);
+      if ((entry == null)
+          || ((entry.record.getConvertCode() == 'h') && !helpOptionsEnabled)) {
+        result.addUnmatched(args[idx]);
+        idx++;
+      } else if (entry.record.getConvertCode() == 'h') {
+        result.setHelpRequested();
+        idx++;
+      } else {
+        if (lazy) {
+          idx = skipValues(result, entry, args, idx, err);
+        } else {
+          idx = matchValues(result, entry, args, idx, err);
+        }
+        if (idx < 0) {
+          result.setError(err.getMessage());
+          break;
+        }
+        idx++;
+      }
+    }
+    return result;
+  }
+  
+  /**
+   * 
+   * @param result
+   * @param entry
+   * @param args
+   * @param idx
+   * @param err
+   * @return location of the last argument that has been consumed, or -1 if
+   *         an error has been reported to {@code err}
+   */
+  private int matchValues(ParseResult result, OptionIndex.Entry entry,
+    String[] args, int idx, MatchError err) {
+    ArgParser.Record rec = entry.record;
+    Object holder = rec.createResultHolder();
+    idx = rec.matchValues(holder, entry.nameDesc, args, idx, err);
+    if (idx < 0) { return -1; }
+    result.setValue(entry.recordIndex, valueOf(holder),
+      rec.storesAllOccurrences());
+    return idx;
+  }
+  
+  /**
+   * Stores the position of the values of an option in {@code result} instead
+   * of converting them.
+   * 
+   * @param result
+   * @param entry
+   * @param args
+   * @param idx
+   * @param err
+   * @return location of the last argument that belongs to the option, or -1
+   *         if an error has been reported to {@code err}
+   * @see #parseLazily(String[], int)
+   */
+  private int skipValues(ParseResult result, OptionIndex.Entry entry,
+    String[] args, int idx, MatchError err) {
+    ArgParser.Record rec = entry.record;
+    char code = rec.getConvertCode();
+    if ((code == 'v') || (code == 'b')) { return matchValues(result, entry,
+      args, idx, err); }
+    int last = entry.nameDesc.isOneWord() ? idx : idx + rec.getNumValues();
+    if (last >= args.length) {
+      err.set(rec, entry.nameDesc.getName(), MatchError.REQUIRES_VALUES, null);
+      return -1;
+    }
+    result.setValue(entry.recordIndex, new ParseResult.LazyValue(entry, args,
+      idx), rec.storesAllOccurrences());
+    return last;
+  }
+  
+  /**
+   * Converts the values of an option that have been skipped by
+   * {@link #parseLazily(String[], int)}.
+   * 
+   * @param entry
+   *        the entry by which the option has been matched
+   * @param args
+   *        argument list
+   * @param idx
+   *        location of the option name in the list
+   * @return the value
+   * @throws IllegalArgumentException
+   *         if a value is malformed or out of range
+   */
+  static Object convert(OptionIndex.Entry entry, String[] args, int idx)
+    throws IllegalArgumentException {
+    MatchError err = new MatchError();
+    Object holder = entry.record.createResultHolder();
+    idx = entry.record.matchValues(holder, entry.nameDesc, args, idx, err);
+    if (idx < 0) { throw new IllegalArgumentException(err.getMessage()); }
+    return valueOf(holder);
+  }
+  
+  /**
+   * 
+   * @param holder
+   *        a result holder created by
+   *        {@link ArgParser.Record#createResultHolder()}
+   * @return the value of an {@link ArgHolder}, or the holder itself if it
+   *         is an array.
+   */
+  private static Object valueOf(Object holder) {
+    if (holder instanceof ArgHolder<?>) { return ((ArgHolder<?>) holder)
+        .getValue(); }
+    return holder;
+  }
+  
+  /**
+   * Matches each of the given argument lists, in parallel in the common
+   * {@link ForkJoinPool}.
+   * 
+   * @param argLists
+   *        argument lists
+   * @return the results in the order of {@code argLists}
+   * @see #parseAll(List, ForkJoinPool)
+   */
+  public List<ParseResult> parseAll(List<String[]> argLists) {
+    return parseAll(argLists, ForkJoinPool.commonPool());
+  }
+  
+  /**
+   * Matches each of the given argument lists like {@link #parse(String[])}.
+   * The lists are split into batches which are matched in parallel by the
+   * threads of {@code pool}; since a compiled parser is never modified by
+   * matching, all threads share it without any synchronization.
+   * 
+   * @param argLists
+   *        argument lists
+   * @param pool
+   *        the pool that matches the batches
+   * @return the results in the order of {@code argLists}
+   */
+  public List<ParseResult> parseAll(List<String[]> argLists,
+    ForkJoinPool pool) {
+    String[][] lists = argLists.toArray(new String[argLists.size()][]);
+    ParseResult[] results = new ParseResult[lists.length];
+    if ((lists.length <= BATCH_SIZE) || (pool.getParallelism() == 1)) {
+      // nothing to gain from handing the work over to the pool
+      parseRange(lists, results, 0, lists.length);
+    } else {
+      pool.invoke(new BatchTask(lists, results, 0, lists.length));
+    }
+    return Arrays.asList(results);
+  }
+  
+  /**
+   * 
+   * @param lists
+   * @param results
+   * @param from
+   *        first index of the range
+   * @param to
+   *        index after the range
+   */
+  private void parseRange(String[][] lists, ParseResult[] results, int from,
+    int to) {
+    for (int i = from; i < to; i++) {
+      results[i] = parse(lists[i]);
+    }
+  }
+  
+  /**
+   * Matches the argument lists of a range, splitting it in halves as long as
+   * it is larger than {@link CompiledArgParser#BATCH_SIZE}.
+   */
+  private class BatchTask extends RecursiveAction {
+    
+    /**
+     * Generated serial version identifier.
+     */
+    private static final long serialVersionUID = -2409834621117650243L;
+    /**
+     * 
+     */
+    private final String[][] lists;
+    /**
+     * 
+     */
+    private final ParseResult[] results;
+    /**
+     * 
+     */
+    private final int from, to;
+    
+    /**
+     * 
+     * @param lists
+     * @param results
+     * @param from
+     *        first index of the range
+     * @param to
+     *        index after the range
+     */
+    BatchTask(String[][] lists, ParseResult[] results, int from, int to) {
+      this.lists = lists;
+      this.results = results;
+      this.from = from;
+      this.to = to;
+    }
+    
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.util.concurrent.RecursiveAction#compute()
+     */
+    @Override
+    protected void compute() {
+      if (to - from <= BATCH_SIZE) {
+        parseRange(lists, results, from, to);
+      } else {
+        int mid = (from + to) >>> 1;
+        invokeAll(new BatchTask(lists, results, from, mid), new BatchTask(
+          lists, results, mid, to));
+      }
+    }
+  }
+}
@@ -0,0 +1,262 @@
+/*
+ * Copyright 2011-2013 by Andreas Draeger and Florian Mittag
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.argparser;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The answer of a {@link ParserDaemon} to one argument list: the values of the
+ * matched options and the unmatched arguments, or the help message, or an
+ * error message. Values are transferred as strings, in the form in which they
+ * would appear on the command line, so that clients need not know the types of
+ * the options.
+ * 
+ * <p>
+ * On the wire, a response consists of a status byte, followed by
+ * <ul>
+ * <li>for {@link #OK}: the number of unmatched arguments and the arguments,
+ * then the number of matched options and, for each option, its first name,
+ * the number of its values and the values (all values of an option with a
+ * multiplier, and of all occurrences of a repeated option),</li>
+ * <li>for {@link #HELP} and {@link #ERROR}: the help or error message.</li>
+ * </ul>
+ * Numbers are big-endian {@code int}s; strings are stored as their length in
+ * UTF-8 bytes followed by these bytes.
+ * 
+ * @see ParserDaemon#send(java.nio.file.Path, String, String[])
+ */
+public final class DaemonResponse {
+  
+  /**
+   * All arguments have been matched or returned as unmatched.
+   */
+  public static final int OK = 0;
+  /**
+   * A help option has been matched; {@link #getText()} is the help message.
+   */
+  public static final int HELP = 1;
+  /**
+   * An argument was erroneous or the tool is unknown; {@link #getText()} is
+   * the error message.
+   */
+  public static final int ERROR = 2;
+  
+  /**
+   * 
+   */
+  private final int status;
+  /**
+   * 
+   */
+  private final String text;
+  /**
+   * 
+   */
+  private final String[] unmatched;
+  /**
+   * Values by the first name of their option, in the order of the options.
+   */
+  private final Map<String, String[]> values;
+  
+  /**
+   * 
+   * @param status
+   * @param text
+   * @param unmatched
+   * @param values
+   */
+  private DaemonResponse(int status, String text, String[] unmatched,
+    Map<String, String[]> values) {
+    this.status = status;
+    this.text = text;
+    this.unmatched = unmatched;
+    this.values = values;
+  }
+  
+  /**
+   * Encodes the response to a parse result.
+   * 
+   * @param parser
+   *        the parser that created the result
+   * @param result
+   * @return
+   * @throws IOException
+   */
+  static byte[] encode(CompiledArgParser parser, ParseResult result)
+    throws IOException {
+    if (result.hasError()) { return encode(ERROR, result.getErrorMessage()); }
+    if (result.isHelpRequested()) { return encode(HELP,
+      parser.getHelpMessage()); }
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeByte(OK);
+    String[] args = result.getUnmatchedArguments();
+    out.writeInt(args.length);
+    for (String arg : args) {
+      ParserSnapshot.putString(out, arg);
+    }
+    List<ArgParser.Record> records = parser.getRecords();
+    int count = 0;
+    for (int i = 0; i < records.size(); i++) {
+      if (result.getValueAt(i) != null) {
+        count++;
+      }
+    }
+    out.writeInt(count);
+    List<String> strings = new ArrayList<String>();
+    for (int i = 0; i < records.size(); i++) {
+      Object value = result.getValueAt(i);
+      if (value == null) {
+        continue;
+      }
+      strings.clear();
+      addStrings(value, strings);
+      ParserSnapshot.putString(out, records.get(i).firstNameDesc().getName());
+      out.writeInt(strings.size());
+      for (String s : strings) {
+        ParserSnapshot.putString(out, s);
+      }
+    }
+    out.close();
+    return bytes.toByteArray();
+  }
+  
+  /**
+   * Encodes a help or error response.
+   * 
+   * @param status
+   * @param text
+   * @return
+   * @throws IOException
+   */
+  static byte[] encode(int status, String text) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeByte(status);
+    ParserSnapshot.putString(out, text);
+    out.close();
+    return bytes.toByteArray();
+  }
+  
+  /**
+   * 
+   * @param value
+   *        a value as stored in a {@link ParseResult}
+   * @param strings
+   *        receives the value, or its elements, as strings
+   */
+  private static void addStrings(Object value, List<String> strings) {
+    if (value instanceof List<?>) {
+      for (Object element : (List<?>) value) {
+        addStrings(element, strings);
+      }
+    } else if (value.getClass().isArray()) {
+      for (int i = 0; i < Array.getLength(value); i++) {
+        strings.add(String.valueOf(Array.get(value, i)));
+      }
+    } else {
+      strings.add(String.valueOf(value));
+    }
+  }
+  
+  /**
+   * Decodes a response.
+   * 
+   * @param in
+   * @return
+   * @throws IOException
+   *         if the response is malformed
+   */
+  static DaemonResponse decode(ByteBuffer in) throws IOException {
+    try {
+      int status = in.get();
+      if (status != OK) { return new DaemonResponse(status,
+        ParserSnapshot.getString(in), new String[0],
+        new LinkedHashMap<String, String[]>()); }
+      String[] unmatched = new String[ParserSnapshot.getCount(in)];
+      for (int i = 0; i < unmatched.length; i++) {
+        unmatched[i] = ParserSnapshot.getString(in);
+      }
+      Map<String, String[]> values = new LinkedHashMap<String, String[]>();
+      for (int n = ParserSnapshot.getCount(in); n > 0; n--) {
+        String name = ParserSnapshot.getString(in);
+        String[] strings = new String[ParserSnapshot.getCount(in)];
+        for (int i = 0; i < strings.length; i++) {
+          strings[i] = ParserSnapshot.getString(in);
+        }
+        values.put(name, strings);
+      }
+      return new DaemonResponse(status, null, unmatched, values);
+    } catch (RuntimeException e) {
+      throw new IOException("Malformed response", e);
+    }
+  }
+  
+  /**
+   * 
+   * @return {@link #OK}, {@link #HELP} or {@link #ERROR}
+   */
+  public int getStatus() {
+    return status;
+  }
+  
+  /**
+   * 
+   * @return the help or error message, or {@code null} if the status is
+   *         {@link #OK}
+   */
+  public String getText() {
+    return text;
+  }
+  
+  /**
+   * 
+   * @return the unmatched arguments, an empty array if there were none
+   */
+  public String[] getUnmatchedArguments() {
+    return unmatched.clone();
+  }
+  
+  /**
+   * Returns the values of a matched option.
+   * 
+   * @param name
+   *        the first name of the option
+   * @return the values, or {@code null} if the option has not been matched
+   */
+  public String[] getValues(String name) {
+    String[] strings = values.get(name);
+    return (strings == null) ? null : strings.clone();
+  }
+  
+  /**
+   * 
+   * @return the first names of the matched options, in the order in which the
+   *         options have been added to the parser
+   */
+  public String[] getOptionNames() {
+    return values.keySet().toArray(new String[values.size()]);
+  }
+}
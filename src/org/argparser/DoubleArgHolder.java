@@ -0,0 +1,122 @@
+/*
+ * Copyright 2011-2013 by Andreas Draeger and Florian Mittag
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.argparser;
+
+/**
+ * Holds the value of an option with the conversion code {@code %f} as a
+ * {@code double}, without boxing it.
+ * 
+ * <pre>
+ * DoubleArgHolder ratio = new DoubleArgHolder(0.5);
+ * parser.addOption(&quot;--ratio %f{(0,1]} #sampling ratio&quot;, ratio);
+ * parser.matchAllArgs(args);
+ * sample(ratio.getAsDouble());
+ * </pre>
+ * 
+ * @see PrimitiveArgHolder
+ */
+public class DoubleArgHolder extends PrimitiveArgHolder<Double> {
+  
+  /**
+   * Generated serial version identifier.
+   */
+  private static final long serialVersionUID = 4753523670187286968L;
+  
+  /**
+   * The value, valid only if it has been set.
+   */
+  private double value;
+  /**
+   * 
+   */
+  private final double defaultValue;
+  
+  /**
+   * Creates a holder without a default value.
+   */
+  public DoubleArgHolder() {
+    super(Double.class);
+    defaultValue = 0;
+  }
+  
+  /**
+   * Creates a holder with the given default value.
+   * 
+   * @param defaultValue
+   */
+  public DoubleArgHolder(double defaultValue) {
+    super(Double.valueOf(defaultValue));
+    this.defaultValue = defaultValue;
+  }
+  
+  /**
+   * 
+   * @return the value if it has been set, the default value otherwise, or
+   *         {@code 0} if there is none.
+   */
+  public double getAsDouble() {
+    return isSetValue() ? value : defaultValue;
+  }
+  
+  /**
+   * 
+   * @param value
+   */
+  public void set(double value) {
+    this.value = value;
+    markSet();
+  }
+  
+  /*
+   * (non-Javadoc)
+   * 
+   * @see org.argparser.PrimitiveArgHolder#box()
+   */
+  @Override
+  Double box() {
+    return Double.valueOf(value);
+  }
+  
+  /*
+   * (non-Javadoc)
+   * 
+   * @see org.argparser.PrimitiveArgHolder#unbox(java.lang.Object)
+   */
+  @Override
+  void unbox(Double value) {
+    this.value = value.doubleValue();
+  }
+  
+  /*
+   * (non-Javadoc)
+   * 
+   * @see org.argparser.ArgHolder#clone()
+   */
+  @Override
+  public DoubleArgHolder clone() {
+    DoubleArgHolder holder;
+    if (isSetDefaultValue()) {
+      holder = new DoubleArgHolder(defaultValue);
+    } else {
+      holder = new DoubleArgHolder();
+    }
+    if (isSetValue()) {
+      holder.set(value);
+    }
+    return holder;
+  }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2011-2013 by Andreas Draeger and Florian Mittag
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.argparser;
+
+import java.util.Arrays;
+
+/**
+ * Collects the values of all occurrences of an option with the conversion
+ * code {@code %f} as {@code double}s, without boxing them.
+ * 
+ * <pre>
+ * DoubleList weights = new DoubleList();
+ * parser.addOption(&quot;-w,--weight %f #input weight&quot;, weights);
+ * </pre>
+ * 
+ * @see ValueList
+ */
+public class DoubleList extends ValueList {
+  
+  /**
+   * 
+   */
+  private double[] values = new double[0];
+  
+  /**
+   * Creates a list for an option without multiplier.
+   */
+  public DoubleList() {
+    this(1);
+  }
+  
+  /**
+   * Creates a list for an option whose multiplier equals {@code width}.
+   * 
+   * @param width
+   *        number of values per occurrence
+   */
+  public DoubleList(int width) {
+    super(width);
+  }
+  
+  /**
+   * 
+   * @param i
+   * @return the (first) value of occurrence {@code i}.
+   */
+  public double get(int i) {
+    return values[index(i, 0)];
+  }
+  
+  /**
+   * 
+   * @param i
+   * @param k
+   * @return the {@code k}-th value of occurrence {@code i}.
+   */
+  public double get(int i, int k) {
+    return values[index(i, k)];
+  }
+  
+  /**
+   * 
+   * @param i
+   * @return a copy of the values of occurrence {@code i}.
+   */
+  public double[] toArray(int i) {
+    int from = index(i, 0);
+    return Arrays.copyOfRange(values, from, from + getWidth());
+  }
+  
+  /**
+   * 
+   * @return a copy of the values of all occurrences, one after the other.
+   */
+  public double[] toArray() {
+    return Arrays.copyOf(values, size() * getWidth());
+  }
+  
+  /**
+   * 
+   * @param k
+   * @param value
+   */
+  void put(int k, double value) {
+    values[pendingIndex(k)] = value;
+  }
+  
+  /*
+   * (non-Javadoc)
+   * 
+   * @see org.argparser.ValueList#capacity()
+   */
+  @Override
+  int capacity() {
+    return values.length;
+  }
+  
+  /*
+   * (non-Javadoc)
+   * 
+   * @see org.argparser.ValueList#resize(int)
+   */
+  @Override
+  void resize(int length) {
+    values = Arrays.copyOf(values, length);
+  }
+  
+  /*
+   * (non-Javadoc)
+   * 
+   * @see org.argparser.ValueList#appendValue(java.lang.StringBuilder, int)
+   */
+  @Override
+  void appendValue(StringBuilder sb, int index) {
+    sb.append(values[index]);
+  }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2011-2013 by Andreas Draeger and Florian Mittag
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.argparser;
+
+/**
+ * Holds the value of an option with the conversion code {@code %f} as a
+ * {@code float}, without boxing it.
+ * 
+ * <pre>
+ * FloatArgHolder scale = new FloatArgHolder(1f);
+ * parser.addOption(&quot;--scale %f{(0,10]} #scaling factor&quot;, scale);
+ * parser.matchAllArgs(args);
+ * resize(scale.getAsFloat());
+ * </pre>
+ * 
+ * @see PrimitiveArgHolder
+ */
+public class FloatArgHolder extends PrimitiveArgHolder<Float> {
+  
+  /**
+   * Generated serial version identifier.
+   */
+  private static final long serialVersionUID = 6663421478726242674L;
+  
+  /**
+   * The value, valid only if it has been set.
+   */
+  private float value;
+  /**
+   * 
+   */
+  private final float defaultValue;
+  
+  /**
+   * Creates a holder without a default value.
+   */
+  public FloatArgHolder() {
+    super(Float.class);
+    defaultValue = 0;
+  }
+  
+  /**
+   * Creates a holder with the given default value.
+   * 
+   * @param defaultValue
+   */
+  public FloatArgHolder(float defaultValue) {
+    super(Float.valueOf(defaultValue));
+    this.defaultValue = defaultValue;
+  }
+  
+  /**
+   * 
+   * @return the value if it has been set, the default value otherwise, or
+   *         {@code 0} if there is none.
+   */
+  public float getAsFloat() {
+    return isSetValue() ? value : defaultValue;
+  }
+  
+  /**
+   * 
+   * @param value
+   */
+  public void set(float value) {
+    this.value = value;
+    markSet();
+  }
+  
+  /*
+   * (non-Javadoc)
+   * 
+   * @see org.argparser.PrimitiveArgHolder#box()
+   */
+  @Override
+  Float box() {
+    return Float.valueOf(value);
+  }
+  
+  /*
+   * (non-Javadoc)
+   * 
+   * @see org.argparser.PrimitiveArgHolder#unbox(java.lang.Object)
+   */
+  @Override
+  void unbox(Float value) {
+    this.value = value.floatValue();
+  }
+  
+  /*
+   * (non-Javadoc)
+   * 
+   * @see org.argparser.ArgHolder#clone()
+   */
+  @Override
+  public FloatArgHolder clone() {
+    FloatArgHolder holder;
+    if (isSetDefaultValue()) {
+      holder = new FloatArgHolder(defaultValue);
+    } else {
+      holder = new FloatArgHolder();
+    }
+    if (isSetValue()) {
+      holder.set(value);
+    }
+    return holder;
+  }
+}
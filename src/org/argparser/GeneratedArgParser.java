@@ -0,0 +1,486 @@
+/*
+ * Copyright 2011-2013 by Andreas Draeger and Florian Mittag
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.argparser;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Base class of the parsers generated by {@link OptionProcessor} for classes
+ * with {@link Option} fields. A generated parser behaves like an
+ * {@link ArgParser} with the same options: it offers the same methods for
+ * matching arguments, the same treatment of help options and unmatched
+ * arguments, and produces the same help and error messages. Subclasses only
+ * implement {@link #matchOption(String[], int)}, which identifies an option
+ * and stores its values, using the scanning and error reporting methods of
+ * this class.
+ * 
+ * @see Option
+ * @see OptionProcessor
+ */
+public abstract class GeneratedArgParser {
+  
+  /**
+   * Returned by {@link #matchOption(String[], int)} if the argument is not an
+   * option.
+   */
+  protected static final int UNMATCHED = -1;
+  /**
+   * Returned by {@link #matchOption(String[], int)} if the argument is a help
+   * option.
+   */
+  protected static final int HELP = -2;
+  /**
+   * Returned by {@link #matchOption(String[], int)} if the values of the
+   * option are erroneous. The error message has been set by one of the error
+   * reporting methods.
+   */
+  protected static final int ERROR = -3;
+  
+  /**
+   * Status of a successfully scanned value.
+   */
+  protected static final int OK = 0;
+  /**
+   * Status of an empty value.
+   */
+  protected static final int CONTIGUOUS = 1;
+  /**
+   * Status of a value that cannot be scanned.
+   */
+  protected static final int MALFORMED = 2;
+  
+  /**
+   * The last scanned integer or character value.
+   */
+  protected long lval;
+  /**
+   * The last scanned floating point value.
+   */
+  protected double dval;
+  /**
+   * The last scanned boolean value.
+   */
+  protected boolean bval;
+  /**
+   * The last scanned string value.
+   */
+  protected String sval;
+  
+  /**
+   * 
+   */
+  private final String optionsHelp;
+  /**
+   * 
+   */
+  private final String optionsHelpWithoutHelp;
+  /**
+   * 
+   */
+  private final String helpOptionName;
+  /**
+   * 
+   */
+  private String synopsisString;
+  /**
+   * 
+   */
+  private boolean helpOptionsEnabled = true;
+  /**
+   * 
+   */
+  private PrintStream printStream = System.out;
+  /**
+   * 
+   */
+  private String errMsg = null;
+  /**
+   * 
+   */
+  private String unmatchedArg = null;
+  
+  /**
+   * 
+   * @param synopsisString
+   *        string that briefly describes program usage
+   * @param optionsHelp
+   *        the list of options in the help message
+   * @param optionsHelpWithoutHelp
+   *        the list of options in the help message if help options are
+   *        disabled
+   * @param helpOptionName
+   *        the name of the first help option, or {@code null}
+   */
+  protected GeneratedArgParser(String synopsisString, String optionsHelp,
+    String optionsHelpWithoutHelp, String helpOptionName) {
+    this.synopsisString = synopsisString;
+    this.optionsHelp = optionsHelp;
+    this.optionsHelpWithoutHelp = optionsHelpWithoutHelp;
+    this.helpOptionName = helpOptionName;
+  }
+  
+  /**
+   * 
+   * @return synopsis string
+   * @see ArgParser#getSynopsisString()
+   */
+  public String getSynopsisString() {
+    return synopsisString;
+  }
+  
+  /**
+   * 
+   * @param s
+   *        new synopsis string
+   * @see ArgParser#setSynopsisString(String)
+   */
+  public void setSynopsisString(String s) {
+    synopsisString = s;
+  }
+  
+  /**
+   * 
+   * @return
+   * @see ArgParser#getHelpOptionsEnabled()
+   */
+  public boolean getHelpOptionsEnabled() {
+    return helpOptionsEnabled;
+  }
+  
+  /**
+   * 
+   * @param enable
+   * @see ArgParser#setHelpOptionsEnabled(boolean)
+   */
+  public void setHelpOptionsEnabled(boolean enable) {
+    helpOptionsEnabled = enable;
+  }
+  
+  /**
+   * 
+   * @return
+   * @see ArgParser#getDefaultPrintStream()
+   */
+  public PrintStream getDefaultPrintStream() {
+    return printStream;
+  }
+  
+  /**
+   * 
+   * @param stream
+   * @see ArgParser#setDefaultPrintStream(PrintStream)
+   */
+  public void setDefaultPrintStream(PrintStream stream) {
+    printStream = stream;
+  }
+  
+  /**
+   * Returns a string describing the allowed options in detail. The list of
+   * options has been rendered at compile time.
+   * 
+   * @return help information string.
+   * @see ArgParser#getHelpMessage()
+   */
+  public String getHelpMessage() {
+    return String.format("Usage: %s\n", synopsisString) + "Options include:\n\n"
+        + (helpOptionsEnabled ? optionsHelp : optionsHelpWithoutHelp);
+  }
+  
+  /**
+   * 
+   * @return the error message of the last match, or {@code null}
+   * @see ArgParser#getErrorMessage()
+   */
+  public String getErrorMessage() {
+    return errMsg;
+  }
+  
+  /**
+   * 
+   * @return the argument that was not matched by the last call of
+   *         {@link #matchArg(String[], int) matchArg}, or {@code null}
+   * @see ArgParser#getUnmatchedArgument()
+   */
+  public String getUnmatchedArgument() {
+    return unmatchedArg;
+  }
+  
+  /**
+   * Prints an error message, along with a pointer to help options, if
+   * available, and causes the program to exit with code 1.
+   * 
+   * @param msg
+   * @see ArgParser#printErrorAndExit(String)
+   */
+  public void printErrorAndExit(String msg) {
+    if (helpOptionsEnabled && helpOptionName != null) {
+      msg += "\nUse " + helpOptionName + " for help information";
+    }
+    if (printStream != null) {
+      printStream.println(msg);
+    }
+    System.exit(1);
+  }
+  
+  /**
+   * Matches all arguments, exiting the program in the event of an erroneous or
+   * unmatched argument.
+   * 
+   * @param args
+   *        argument list
+   * @see ArgParser#matchAllArgs(String[])
+   */
+  public void matchAllArgs(String[] args) {
+    matchAllArgs(args, 0, ArgParser.EXIT_ON_UNMATCHED
+        | ArgParser.EXIT_ON_ERROR);
+  }
+  
+  /**
+   * Matches arguments within an argument list and returns those which were not
+   * matched.
+   * 
+   * @param args
+   *        argument list
+   * @param idx
+   *        starting location in list
+   * @param exitFlags
+   *        conditions causing the program to exit. Should be an or-ed
+   *        combintion of {@link ArgParser#EXIT_ON_ERROR} or
+   *        {@link ArgParser#EXIT_ON_UNMATCHED}.
+   * @return array of arguments that were not matched, or {@code null} if
+   *         all arguments were successfully matched
+   * @see ArgParser#matchAllArgs(String[], int, int)
+   */
+  public String[] matchAllArgs(String[] args, int idx, int exitFlags) {
+    List<String> unmatched = new ArrayList<String>();
+    
+    while (args != null && idx < args.length) {
+      idx = match(args, idx);
+      if (idx < 0) {
+        if ((exitFlags & ArgParser.EXIT_ON_ERROR) != 0) {
+          printErrorAndExit(errMsg);
+        }
+        break;
+      }
+      if (unmatchedArg != null) {
+        if ((exitFlags & ArgParser.EXIT_ON_UNMATCHED) != 0) {
+          printErrorAndExit("Unrecognized argument: " + unmatchedArg);
+        } else {
+          unmatched.add(unmatchedArg);
+        }
+      }
+    }
+    if (unmatched.size() == 0) {
+      return null;
+    } else {
+      return unmatched.toArray(new String[0]);
+    }
+  }
+  
+  /**
+   * Matches one option starting at a specified location in an argument list.
+   * 
+   * @param args
+   *        argument list
+   * @param idx
+   *        location in list where match should start
+   * @return location in list where next match should start
+   * @throws ArgParseException
+   *         if there was an error performing the match
+   * @see ArgParser#matchArg(String[], int)
+   */
+  public int matchArg(String[] args, int idx) throws ArgParseException {
+    int next = match(args, idx);
+    if (next < 0) { throw new ArgParseException(errMsg); }
+    return next;
+  }
+  
+  /**
+   * 
+   * @param args
+   * @param idx
+   * @return location in list where next match should start, or -1 in the
+   *         event of an erroneous argument
+   */
+  private int match(String[] args, int idx) {
+    unmatchedArg = null;
+    errMsg = null;
+    int next = matchOption(args, idx);
+    if ((next == UNMATCHED) || ((next == HELP) && !helpOptionsEnabled)) {
+      unmatchedArg = args[idx];
+      return idx + 1;
+    }
+    if (next == HELP) {
+      printStream.println(getHelpMessage());
+      System.exit(0);
+    }
+    return (next == ERROR) ? -1 : next;
+  }
+  
+  /**
+   * Identifies the option at location {@code idx} and stores its values.
+   * 
+   * @param args
+   *        argument list
+   * @param idx
+   *        location of the option name in the list
+   * @return location in list where next match should start, or one of
+   *         {@link #UNMATCHED}, {@link #HELP} and {@link #ERROR}
+   */
+  protected abstract int matchOption(String[] args, int idx);
+  
+  /**
+   * Scans the value contained in the region {@code start} to {@code end}
+   * of {@code s} in the same way as {@link ArgParser} does, and stores it in
+   * {@link #lval} (for the integer codes and {@code %c}), {@link #dval},
+   * {@link #bval} or {@link #sval}. No range is checked.
+   * 
+   * @param s
+   * @param start
+   * @param end
+   * @param convertCode
+   * @return {@link #OK}, {@link #CONTIGUOUS} or {@link #MALFORMED}
+   */
+  protected final int scan(CharSequence s, int start, int end,
+    char convertCode) {
+    if (start == end) { return CONTIGUOUS; }
+    boolean scanned = false;
+    switch (convertCode) {
+      case 'i': {
+        if (scanned = NumberScanner.isPlainInteger(s, start, end)) {
+          lval = NumberScanner.parsePlainInteger(s, start, end);
+        }
+        break;
+      }
+      case 'o':
+      case 'd':
+      case 'x': {
+        int radix = (convertCode == 'o') ? 8 : (convertCode == 'd') ? 10 : 16;
+        if (scanned = NumberScanner.isPlainInt(s, start, end, radix)) {
+          lval = NumberScanner.parsePlainInt(s, start, end, radix);
+        }
+        break;
+      }
+      case 'f': {
+        dval = NumberScanner.parsePlainDouble(s, start, end);
+        scanned = !Double.isNaN(dval);
+        break;
+      }
+      case 's': {
+        sval = s.subSequence(start, end).toString();
+        return OK;
+      }
+    }
+    if (scanned) { return OK; }
+    StringScanner scanner = new StringScanner(s.subSequence(start, end)
+        .toString());
+    try {
+      switch (convertCode) {
+        case 'i': {
+          lval = scanner.scanInt();
+          break;
+        }
+        case 'o': {
+          lval = scanner.scanInt(8, false);
+          break;
+        }
+        case 'd': {
+          lval = scanner.scanInt(10, false);
+          break;
+        }
+        case 'x': {
+          lval = scanner.scanInt(16, false);
+          break;
+        }
+        case 'c': {
+          lval = scanner.scanChar();
+          break;
+        }
+        case 'b': {
+          bval = scanner.scanBoolean();
+          break;
+        }
+        case 'f': {
+          dval = scanner.scanDouble();
+          break;
+        }
+      }
+    } catch (StringScanException e) {
+      return MALFORMED;
+    }
+    scanner.skipWhiteSpace();
+    return scanner.atEnd() ? OK : MALFORMED;
+  }
+  
+  /**
+   * Reports a value that could not be scanned.
+   * 
+   * @param name
+   *        the name by which the option was matched
+   * @param status
+   *        {@link #CONTIGUOUS} or {@link #MALFORMED}
+   * @param convertCode
+   * @param s
+   * @param start
+   * @param end
+   * @return {@link #ERROR}
+   */
+  protected final int scanError(String name, int status, char convertCode,
+    CharSequence s, int start, int end) {
+    if (status == CONTIGUOUS) {
+      errMsg = name + ": requires a contiguous value";
+    } else {
+      errMsg = name + ": malformed " + ArgParser.valTypeName(convertCode)
+          + " '" + s.subSequence(start, end) + "'";
+    }
+    return ERROR;
+  }
+  
+  /**
+   * Reports a value that is not within the option's range.
+   * 
+   * @param name
+   *        the name by which the option was matched
+   * @param s
+   * @param start
+   * @param end
+   * @param rangeDesc
+   * @return {@link #ERROR}
+   */
+  protected final int rangeError(String name, CharSequence s, int start,
+    int end, String rangeDesc) {
+    errMsg = name + ": value '" + s.subSequence(start, end)
+        + "' not in range " + rangeDesc;
+    return ERROR;
+  }
+  
+  /**
+   * Reports an option that is not followed by enough values.
+   * 
+   * @param name
+   *        the name by which the option was matched
+   * @param numValues
+   * @return {@link #ERROR}
+   */
+  protected final int requiresValues(String name, int numValues) {
+    errMsg = String.format("%s: requires %d value%s", name, numValues,
+      (numValues > 1 ? "s" : ""));
+    return ERROR;
+  }
+}
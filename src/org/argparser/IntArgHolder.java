@@ -0,0 +1,122 @@
+/*
+ * Copyright 2011-2013 by Andreas Draeger and Florian Mittag
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.argparser;
+
+/**
+ * Holds the value of an option with an integer conversion code ({@code %i},
+ * {@code %d}, {@code %o} or {@code %x}) as an {@code int}, without boxing it.
+ * 
+ * <pre>
+ * IntArgHolder port = new IntArgHolder(8080);
+ * parser.addOption(&quot;-p,--port %d{[1,65535]} #listen port&quot;, port);
+ * parser.matchAllArgs(args);
+ * listen(port.getAsInt());
+ * </pre>
+ * 
+ * @see PrimitiveArgHolder
+ */
+public class IntArgHolder extends PrimitiveArgHolder<Integer> {
+  
+  /**
+   * Generated serial version identifier.
+   */
+  private static final long serialVersionUID = -72160633790383860L;
+  
+  /**
+   * The value, valid only if it has been set.
+   */
+  private int value;
+  /**
+   * 
+   */
+  private final int defaultValue;
+  
+  /**
+   * Creates a holder without a default value.
+   */
+  public IntArgHolder() {
+    super(Integer.class);
+    defaultValue = 0;
+  }
+  
+  /**
+   * Creates a holder with the given default value.
+   * 
+   * @param defaultValue
+   */
+  public IntArgHolder(int defaultValue) {
+    super(Integer.valueOf(defaultValue));
+    this.defaultValue = defaultValue;
+  }
+  
+  /**
+   * 
+   * @return the value if it has been set, the default value otherwise, or
+   *         {@code 0} if there is none.
+   */
+  public int getAsInt() {
+    return isSetValue() ? value : defaultValue;
+  }
+  
+  /**
+   * 
+   * @param value
+   */
+  public void set(int value) {
+    this.value = value;
+    markSet();
+  }
+  
+  /*
+   * (non-Javadoc)
+   * 
+   * @see org.argparser.PrimitiveArgHolder#box()
+   */
+  @Override
+  Integer box() {
+    return Integer.valueOf(value);
+  }
+  
+  /*
+   * (non-Javadoc)
+   * 
+   * @see org.argparser.PrimitiveArgHolder#unbox(java.lang.Object)
+   */
+  @Override
+  void unbox(Integer value) {
+    this.value = value.intValue();
+  }
+  
+  /*
+   * (non-Javadoc)
+   * 
+   * @see org.argparser.ArgHolder#clone()
+   */
+  @Override
+  public IntArgHolder clone() {
+    IntArgHolder holder;
+    if (isSetDefaultValue()) {
+      holder = new IntArgHolder(defaultValue);
+    } else {
+      holder = new IntArgHolder();
+    }
+    if (isSetValue()) {
+      holder.set(value);
+    }
+    return holder;
+  }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2011-2013 by Andreas Draeger and Florian Mittag
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.argparser;
+
+/**
+ * Holds the value of an option with an integer conversion code ({@code %i},
+ * {@code %d}, {@code %o} or {@code %x}) as a {@code long}, without boxing
+ * it.
+ * 
+ * <pre>
+ * LongArgHolder memory = new LongArgHolder();
+ * parser.addOption(&quot;-Xmx%i #maximal heap size in bytes&quot;, memory);
+ * parser.matchAllArgs(args);
+ * reserve(memory.getAsLong());
+ * </pre>
+ * 
+ * @see PrimitiveArgHolder
+ */
+public class LongArgHolder extends PrimitiveArgHolder<Long> {
+  
+  /**
+   * Generated serial version identifier.
+   */
+  private static final long serialVersionUID = -1018191100811728390L;
+  
+  /**
+   * The value, valid only if it has been set.
+   */
+  private long value;
+  /**
+   * 
+   */
+  private final long defaultValue;
+  
+  /**
+   * Creates a holder without a default value.
+   */
+  public LongArgHolder() {
+    super(Long.class);
+    defaultValue = 0;
+  }
+  
+  /**
+   * Creates a holder with the given default value.
+   * 
+   * @param defaultValue
+   */
+  public LongArgHolder(long defaultValue) {
+    super(Long.valueOf(defaultValue));
+    this.defaultValue = defaultValue;
+  }
+  
+  /**
+   * 
+   * @return the value if it has been set, the default value otherwise, or
+   *         {@code 0} if there is none.
+   */
+  public long getAsLong() {
+    return isSetValue() ? value : defaultValue;
+  }
+  
+  /**
+   * 
+   * @param value
+   */
+  public void set(long value) {
+    this.value = value;
+    markSet();
+  }
+  
+  /*
+   * (non-Javadoc)
+   * 
+   * @see org.argparser.PrimitiveArgHolder#box()
+   */
+  @Override
+  Long box() {
+    return Long.valueOf(value);
+  }
+  
+  /*
+   * (non-Javadoc)
+   * 
+   * @see org.argparser.PrimitiveArgHolder#unbox(java.lang.Object)
+   */
+  @Override
+  void unbox(Long value) {
+    this.value = value.longValue();
+  }
+  
+  /*
+   * (non-Javadoc)
+   * 
+   * @see org.argparser.ArgHolder#clone()
+   */
+  @Override
+  public LongArgHolder clone() {
+    LongArgHolder holder;
+    if (isSetDefaultValue()) {
+      holder = new LongArgHolder(defaultValue);
+    } else {
+      holder = new LongArgHolder();
+    }
+    if (isSetValue()) {
+      holder.set(value);
+    }
+    return holder;
+  }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2011-2013 by Andreas Draeger and Florian Mittag
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.argparser;
+
+import java.util.Arrays;
+
+/**
+ * Collects the values of all occurrences of an option with an integer
+ * conversion code ({@code %i}, {@code %d}, {@code %o} or {@code %x}) as
+ * {@code long}s, without boxing them. With a width greater than 1, the list
+ * takes the place of a list of {@code long[]} for an option with multiplier:
+ * 
+ * <pre>
+ * LongList ranges = new LongList(2);
+ * parser.addOption(&quot;-r,--range %iX2 #first and last byte&quot;, ranges);
+ * parser.matchAllArgs(args);
+ * for (int i = 0; i &lt; ranges.size(); i++) {
+ *   copy(ranges.get(i, 0), ranges.get(i, 1));
+ * }
+ * </pre>
+ * 
+ * @see ValueList
+ */
+public class LongList extends ValueList {
+  
+  /**
+   * 
+   */
+  private long[] values = new long[0];
+  
+  /**
+   * Creates a list for an option without multiplier.
+   */
+  public LongList() {
+    this(1);
+  }
+  
+  /**
+   * Creates a list for an option whose multiplier equals {@code width}.
+   * 
+   * @param width
+   *        number of values per occurrence
+   */
+  public LongList(int width) {
+    super(width);
+  }
+  
+  /**
+   * 
+   * @param i
+   * @return the (first) value of occurrence {@code i}.
+   */
+  public long get(int i) {
+    return values[index(i, 0)];
+  }
+  
+  /**
+   * 
+   * @param i
+   * @param k
+   * @return the {@code k}-th value of occurrence {@code i}.
+   */
+  public long get(int i, int k) {
+    return values[index(i, k)];
+  }
+  
+  /**
+   * 
+   * @param i
+   * @return a copy of the values of occurrence {@code i}.
+   */
+  public long[] toArray(int i) {
+    int from = index(i, 0);
+    return Arrays.copyOfRange(values, from, from + getWidth());
+  }
+  
+  /**
+   * 
+   * @return a copy of the values of all occurrences, one after the other.
+   */
+  public long[] toArray() {
+    return Arrays.copyOf(values, size() * getWidth());
+  }
+  
+  /**
+   * 
+   * @param k
+   * @param value
+   */
+  void put(int k, long value) {
+    values[pendingIndex(k)] = value;
+  }
+  
+  /*
+   * (non-Javadoc)
+   * 
+   * @see org.argparser.ValueList#capacity()
+   */
+  @Override
+  int capacity() {
+    return values.length;
+  }
+  
+  /*
+   * (non-Javadoc)
+   * 
+   * @see org.argparser.ValueList#resize(int)
+   */
+  @Override
+  void resize(int length) {
+    values = Arrays.copyOf(values, length);
+  }
+  
+  /*
+   * (non-Javadoc)
+   * 
+   * @see org.argparser.ValueList#appendValue(java.lang.StringBuilder, int)
+   */
+  @Override
+  void appendValue(StringBuilder sb, int index) {
+    sb.append(values[index]);
+  }
+}
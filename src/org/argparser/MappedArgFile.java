@@ -0,0 +1,499 @@
+/*
+ * Copyright 2011-2013 by Andreas Draeger and Florian Mittag
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.argparser;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * An option file that is mapped into memory and split into arguments without
+ * decoding it. Only the boundaries of the arguments are recorded when the file
+ * is opened; strings are created when an argument is actually requested, and
+ * arguments that consist of plain ASCII characters can be handed to the
+ * parser as views on the mapped bytes. In particular,
+ * {@link ArgParser#matchAllArgs(MappedArgFile, int)} looks up option names and
+ * scans numeric values directly from the mapping, so that the only strings
+ * created are string values and unmatched arguments.
+ * 
+ * <p>
+ * The syntax is the same as for {@link ArgParser#prependArgs(File, String[])
+ * prependArgs}. Only charsets in which every character below 128 is encoded as
+ * the corresponding single byte are supported, i.e., UTF-8 and single byte
+ * charsets such as US-ASCII or ISO-8859-1; see {@link #isSupported(Charset)}.
+ * 
+ * @see ArgFileReader
+ */
+public class MappedArgFile {
+  
+  /**
+   * Flag of quoted arguments that contain escape sequences.
+   */
+  private static final byte ESCAPED = 1;
+  /**
+   * Flag of arguments that contain bytes that have to be decoded.
+   */
+  private static final byte DECODE = 2;
+  /**
+   * Charset used to create strings from plain ASCII bytes, which is the
+   * cheapest to decode.
+   */
+  private static final Charset LATIN1 = Charset.forName("ISO-8859-1");
+  
+  /**
+   * A view on the bytes of an argument that consists of plain ASCII
+   * characters only. A view is re-used for several arguments, so it must not
+   * be kept; {@link #toString()} creates a copy.
+   */
+  static final class View implements CharSequence {
+    /**
+     * 
+     */
+    private ByteBuffer buffer;
+    /**
+     * The array of {@link #buffer}, if it is accessible, which is read
+     * directly.
+     */
+    private byte[] array;
+    /**
+     * 
+     */
+    private int start;
+    /**
+     * 
+     */
+    private int length;
+    
+    /**
+     * 
+     * @param buffer
+     * @param start
+     * @param length
+     * @return this view, showing the given region
+     */
+    View set(ByteBuffer buffer, int start, int length) {
+      this.buffer = buffer;
+      this.start = start;
+      this.length = length;
+      if (buffer.hasArray()) {
+        this.array = buffer.array();
+        this.start += buffer.arrayOffset();
+      } else {
+        this.array = null;
+      }
+      return this;
+    }
+    
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.lang.CharSequence#length()
+     */
+    @Override
+    public int length() {
+      return length;
+    }
+    
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.lang.CharSequence#charAt(int)
+     */
+    @Override
+    public char charAt(int index) {
+      if (array != null) { return (char) array[start + index]; }
+      return (char) buffer.get(start + index);
+    }
+    
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.lang.CharSequence#subSequence(int, int)
+     */
+    @Override
+    public CharSequence subSequence(int from, int to) {
+      if (array != null) { return new String(array, start + from, to - from,
+        LATIN1); }
+      byte[] bytes = new byte[to - from];
+      for (int i = 0; i < bytes.length; i++) {
+        bytes[i] = buffer.get(start + from + i);
+      }
+      return new String(bytes, LATIN1);
+    }
+    
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+      return subSequence(0, length).toString();
+    }
+  }
+  
+  /**
+   * 
+   */
+  private final File file;
+  /**
+   * 
+   */
+  private final ByteBuffer buffer;
+  /**
+   * 
+   */
+  private final Charset charset;
+  /**
+   * Whether the file is UTF-8 encoded; otherwise, the charset uses a single
+   * byte per character.
+   */
+  private final boolean utf8;
+  /**
+   * For single byte charsets, whether the bytes from 128 to 255 encode
+   * whitespace characters.
+   */
+  private final boolean[] highWhiteSpace = new boolean[128];
+  /**
+   * 
+   */
+  private int[] starts = new int[64];
+  /**
+   * 
+   */
+  private int[] ends = new int[64];
+  /**
+   * 
+   */
+  private byte[] flags = new byte[64];
+  /**
+   * Number of arguments.
+   */
+  private int size = 0;
+  
+  /**
+   * Maps an option file encoded in the platform's default charset.
+   * 
+   * @param file
+   * @throws IOException
+   *         if the file cannot be read or contains a malformed string
+   * @throws IllegalArgumentException
+   *         if the default charset is not supported
+   */
+  public MappedArgFile(File file) throws IOException {
+    this(file, Charset.defaultCharset());
+  }
+  
+  /**
+   * Maps an option file. The mapping remains valid until this object is
+   * garbage collected.
+   * 
+   * @param file
+   * @param charset
+   *        the encoding of the file
+   * @throws IOException
+   *         if the file cannot be read or contains a malformed string
+   * @throws IllegalArgumentException
+   *         if the charset is not supported
+   */
+  public MappedArgFile(File file, Charset charset) throws IOException {
+    if (!isSupported(charset)) { throw new IllegalArgumentException(
+      "Unsupported charset " + charset.name()); }
+    this.file = file;
+    this.charset = charset;
+    this.utf8 = charset.name().equals("UTF-8");
+    if (!utf8) {
+      for (int i = 0; i < highWhiteSpace.length; i++) {
+        String c = new String(new byte[] { (byte) (128 + i) }, charset);
+        highWhiteSpace[i] = Character.isWhitespace(c.charAt(0));
+      }
+    }
+    RandomAccessFile raf = new RandomAccessFile(file, "r");
+    try {
+      FileChannel channel = raf.getChannel();
+      if (channel.size() > Integer.MAX_VALUE) { throw new IOException("File "
+          + file.getName() + ": too large to be mapped"); }
+      this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+        channel.size());
+    } finally {
+      raf.close();
+    }
+    try {
+      split();
+    } catch (IOException e) {
+      throw new IOException("File " + file.getName() + ": " + e.getMessage());
+    }
+  }
+  
+  /**
+   * Indicates whether or not files in the given charset can be mapped.
+   * 
+   * @param charset
+   * @return {@code true} for UTF-8 and for single byte charsets that agree
+   *         with ASCII.
+   */
+  public static boolean isSupported(Charset charset) {
+    if (charset.name().equals("UTF-8")) { return true; }
+    if (!charset.canEncode()
+        || charset.newEncoder().maxBytesPerChar() != 1f) { return false; }
+    byte[] ascii = new byte[128];
+    for (int i = 0; i < ascii.length; i++) {
+      ascii[i] = (byte) i;
+    }
+    return new String(ascii, charset).equals(new String(ascii,
+      Charset.forName("US-ASCII")));
+  }
+  
+  /**
+   * 
+   * @return
+   */
+  public File getFile() {
+    return file;
+  }
+  
+  /**
+   * 
+   * @return the number of arguments in the file.
+   */
+  public int size() {
+    return size;
+  }
+  
+  /**
+   * 
+   * @param i
+   * @return the argument at position {@code i}.
+   */
+  public String stringAt(int i) {
+    if (i < 0 || i >= size) { throw new IndexOutOfBoundsException(
+      Integer.toString(i)); }
+    byte f = flags[i];
+    String s;
+    if ((f & DECODE) == 0) {
+      s = view(i, new View()).toString();
+    } else {
+      ByteBuffer slice = buffer.duplicate();
+      slice.limit(ends[i]).position(starts[i]);
+      s = charset.decode(slice).toString();
+    }
+    return ((f & ESCAPED) != 0) ? unescape(s) : s;
+  }
+  
+  /**
+   * Returns the argument at position {@code i} without creating a string if
+   * the argument consists of plain ASCII characters.
+   * 
+   * @param i
+   * @param view
+   *        the view to use for a plain argument
+   * @return {@code view}, or a string if the argument is not plain.
+   */
+  CharSequence charsAt(int i, View view) {
+    if ((flags[i] & (ESCAPED | DECODE)) != 0) { return stringAt(i); }
+    return view(i, view);
+  }
+  
+  /**
+   * 
+   * @param i
+   * @param view
+   * @return
+   */
+  private View view(int i, View view) {
+    return view.set(buffer, starts[i], ends[i] - starts[i]);
+  }
+  
+  /**
+   * 
+   * @return all arguments, in the order in which they appear in the file.
+   */
+  public String[] toArray() {
+    String[] args = new String[size];
+    for (int i = 0; i < size; i++) {
+      args[i] = stringAt(i);
+    }
+    return args;
+  }
+  
+  /**
+   * 
+   * @param start
+   * @param end
+   * @param f
+   */
+  private void add(int start, int end, byte f) {
+    if (size == starts.length) {
+      starts = Arrays.copyOf(starts, 2 * size);
+      ends = Arrays.copyOf(ends, 2 * size);
+      flags = Arrays.copyOf(flags, 2 * size);
+    }
+    starts[size] = start;
+    ends[size] = end;
+    flags[size] = f;
+    size++;
+  }
+  
+  /**
+   * 
+   * @param pos
+   * @return the length of the whitespace character at {@code pos}, or 0 if
+   *         there is none.
+   */
+  private int whiteSpaceAt(int pos) {
+    int b = buffer.get(pos) & 0xff;
+    if (b < 0x80) { return Character.isWhitespace((char) b) ? 1 : 0; }
+    if (!utf8) { return highWhiteSpace[b - 128] ? 1 : 0; }
+    // the only non-ASCII whitespace characters lie in the range U+1680 to
+    // U+3000, which is encoded by three bytes starting with 0xE1 to 0xE3
+    if (b < 0xE1 || b > 0xE3 || pos + 2 >= buffer.limit()) { return 0; }
+    int b1 = buffer.get(pos + 1) & 0xff, b2 = buffer.get(pos + 2) & 0xff;
+    if ((b1 & 0xC0) != 0x80 || (b2 & 0xC0) != 0x80) { return 0; }
+    int cp = ((b & 0x0F) << 12) | ((b1 & 0x3F) << 6) | (b2 & 0x3F);
+    return Character.isWhitespace(cp) ? 3 : 0;
+  }
+  
+  /**
+   * Records the boundaries of all arguments.
+   * 
+   * @throws IOException
+   *         if a quoted string is malformed
+   */
+  private void split() throws IOException {
+    int pos = 0, limit = buffer.limit(), line = 1;
+    while (pos < limit) {
+      byte b = buffer.get(pos);
+      int w;
+      if (b == '#') {
+        while (pos < limit && (b = buffer.get(pos)) != '\n' && b != '\r') {
+          pos++;
+        }
+      } else if (b == '\n' || b == '\r') {
+        pos++;
+        if (b == '\r' && pos < limit && buffer.get(pos) == '\n') {
+          pos++;
+        }
+        line++;
+      } else if ((w = whiteSpaceAt(pos)) > 0) {
+        pos += w;
+      } else if (b == '"') {
+        pos = splitQuoted(pos + 1, line);
+      } else {
+        int start = pos;
+        byte f = 0;
+        while (pos < limit && (b = buffer.get(pos)) != '#'
+            && whiteSpaceAt(pos) == 0) {
+          if (b < 0) {
+            f = DECODE;
+          }
+          pos++;
+        }
+        add(start, pos, f);
+      }
+    }
+  }
+  
+  /**
+   * Records the boundaries of a quoted string, following the rules of
+   * {@link StringScanner#scanQuotedString()}.
+   * 
+   * @param pos
+   *        the position after the opening quote
+   * @param line
+   * @return the position after the closing quote
+   * @throws IOException
+   *         if the string is malformed
+   */
+  private int splitQuoted(int pos, int line) throws IOException {
+    int start = pos, limit = buffer.limit();
+    byte f = 0;
+    while (true) {
+      byte b = (pos < limit) ? buffer.get(pos) : (byte) '\n';
+      if (b == '"') {
+        break;
+      } else if (b == '\n' || b == '\r' || b == '#') {
+        throw new IOException("malformed string, line " + line);
+      } else if (b == '\\') {
+        f |= ESCAPED;
+        b = (pos + 1 < limit) ? buffer.get(++pos) : (byte) '\n';
+        if ("\"'\\ntbrf01234567".indexOf(b) == -1) { throw new IOException(
+          "malformed string, line " + line); }
+      } else if (b < 0) {
+        f |= DECODE;
+      }
+      pos++;
+    }
+    add(start, pos, f);
+    return pos + 1;
+  }
+  
+  /**
+   * Replaces the escape sequences of a quoted string, which have already been
+   * checked by {@link #splitQuoted(int, int)}.
+   * 
+   * @param s
+   * @return
+   */
+  private static String unescape(String s) {
+    StringBuilder sb = new StringBuilder(s.length());
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      if (c != '\\') {
+        sb.append(c);
+        continue;
+      }
+      c = s.charAt(++i);
+      switch (c) {
+        case 'n':
+          c = '\n';
+          break;
+        case 't':
+          c = '\t';
+          break;
+        case 'b':
+          c = '\b';
+          break;
+        case 'r':
+          c = '\r';
+          break;
+        case 'f':
+          c = '\f';
+          break;
+        default:
+          if ('0' <= c && c < '8') {
+            int v = c - '0';
+            for (int j = 0; j < 2 && i + 1 < s.length(); j++) {
+              char d = s.charAt(i + 1);
+              if ('0' <= d && d < '8' && (v * 8 + (d - '0')) <= 255) {
+                v = v * 8 + (d - '0');
+                i++;
+              } else {
+                break;
+              }
+            }
+            c = (char) v;
+          }
+      }
+      sb.append(c);
+    }
+    return sb.toString();
+  }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2011-2013 by Andreas Draeger and Florian Mittag
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.argparser;
+
+/**
+ * Describes why the values of an option could not be matched. Errors are
+ * reported through an instance of this class instead of an exception while
+ * matching, so that erroneous arguments cost no more than valid ones; the
+ * message is only assembled when it is requested, and an
+ * {@link ArgParseException} is only created where the public API promises
+ * one.
+ * 
+ * <p>
+ * An instance is overwritten by every error reported to it.
+ * 
+ * @see ArgParser.Record#matchValues(Object, ArgParser.NameDesc,
+ *      CharSequence[], int, MatchError)
+ */
+final class MatchError {
+  
+  /**
+   * Status of a successfully scanned value.
+   */
+  static final int OK = 0;
+  /**
+   * The option requires more values than there are arguments left.
+   */
+  static final int REQUIRES_VALUES = 1;
+  /**
+   * A one word option is not followed by a value.
+   */
+  static final int CONTIGUOUS = 2;
+  /**
+   * The value cannot be scanned.
+   */
+  static final int MALFORMED = 3;
+  /**
+   * The value is not within the option's range.
+   */
+  static final int RANGE = 4;
+  
+  /**
+   * 
+   */
+  private ArgParser.Record record;
+  /**
+   * The name by which the option was matched.
+   */
+  private String name;
+  /**
+   * 
+   */
+  private int status = OK;
+  /**
+   * The offending value, if any.
+   */
+  private String value;
+  
+  /**
+   * 
+   * @param record
+   * @param name
+   * @param status
+   * @param value
+   */
+  void set(ArgParser.Record record, String name, int status, String value) {
+    this.record = record;
+    this.name = name;
+    this.status = status;
+    this.value = value;
+  }
+  
+  /**
+   * 
+   * @return
+   */
+  int getStatus() {
+    return status;
+  }
+  
+  /**
+   * 
+   * @return the error message, in the same form as the message of the
+   *         corresponding {@link ArgParseException}.
+   */
+  String getMessage() {
+    return name + ": " + getReason();
+  }
+  
+  /**
+   * 
+   * @return the error message without the option name.
+   */
+  private String getReason() {
+    switch (status) {
+      case REQUIRES_VALUES: {
+        int n = record.getNumValues();
+        return String.format("requires %d value%s", n, (n > 1 ? "s" : ""));
+      }
+      case CONTIGUOUS: {
+        return "requires a contiguous value";
+      }
+      case MALFORMED: {
+        return "malformed " + record.valTypeName() + " '" + value + "'";
+      }
+      case RANGE: {
+        return "value '" + value + "' not in range " + record.getRangeDesc();
+      }
+      default: {
+        return "no error";
+      }
+    }
+  }
+  
+  /**
+   * 
+   * @return
+   */
+  ArgParseException toException() {
+    return new ArgParseException(name, getReason());
+  }
+}
@@ -0,0 +1,250 @@
+/*
+ * Copyright 2011-2013 by Andreas Draeger and Florian Mittag
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.argparser;
+
+/**
+ * Scans numbers directly from a region of a {@link CharSequence}, without
+ * copying the characters and without allocating any objects.
+ * 
+ * <p>
+ * Only the plain notations that make up nearly all command line values are
+ * handled here: an optional sign followed by ASCII digits (and, for floating
+ * point numbers, a decimal point and an exponent). Everything else, including
+ * surrounding white space, escape sequences and all malformed input, is
+ * rejected, and the caller falls back to {@link StringScanner}, which also
+ * produces the error messages. For every input accepted here, the result is
+ * identical to the one {@link StringScanner} would compute.
+ * 
+ * @see StringScanner
+ */
+final class NumberScanner {
+  
+  /**
+   * Powers of ten that are exactly representable as {@code double}.
+   */
+  private static final double[] POW10 = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6,
+      1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18,
+      1e19, 1e20, 1e21, 1e22 };
+  
+  /**
+   * Maximal number of significant digits for which the mantissa of a decimal
+   * number is exactly representable as {@code double}.
+   */
+  private static final int MAX_MANTISSA_DIGITS = 15;
+  
+  /**
+   * 
+   */
+  private NumberScanner() {
+  }
+  
+  /**
+   * 
+   * @param c
+   * @param radix
+   *        8, 10 or 16
+   * @return the value of the ASCII digit {@code c}, or -1.
+   */
+  static int digit(char c, int radix) {
+    int d;
+    if (c >= '0' && c <= '9') {
+      d = c - '0';
+    } else if (c >= 'a' && c <= 'f') {
+      d = c - 'a' + 10;
+    } else if (c >= 'A' && c <= 'F') {
+      d = c - 'A' + 10;
+    } else {
+      return -1;
+    }
+    return (d < radix) ? d : -1;
+  }
+  
+  /**
+   * 
+   * @param s
+   * @param start
+   * @return the index after an optional sign at {@code start}.
+   */
+  private static int skipSign(CharSequence s, int start) {
+    char c = s.charAt(start);
+    return (c == '-' || c == '+') ? start + 1 : start;
+  }
+  
+  /**
+   * 
+   * @param s
+   * @param start
+   * @param end
+   * @param radix
+   * @return {@code true} if the region consists of an optional sign followed
+   *         by at least one digit of the given radix.
+   */
+  static boolean isPlainInt(CharSequence s, int start, int end, int radix) {
+    if (start >= end) { return false; }
+    int i = skipSign(s, start);
+    if (i == end) { return false; }
+    for (; i < end; i++) {
+      if (digit(s.charAt(i), radix) == -1) { return false; }
+    }
+    return true;
+  }
+  
+  /**
+   * Scans a region that has been accepted by
+   * {@link #isPlainInt(CharSequence, int, int, int)}. Overflow wraps around,
+   * as in {@link StringScanner#scanInt(int, boolean)}.
+   * 
+   * @param s
+   * @param start
+   * @param end
+   * @param radix
+   * @return
+   */
+  static long parsePlainInt(CharSequence s, int start, int end, int radix) {
+    boolean negate = (s.charAt(start) == '-');
+    long val = 0;
+    for (int i = skipSign(s, start); i < end; i++) {
+      val = val * radix + digit(s.charAt(i), radix);
+    }
+    return negate ? -val : val;
+  }
+  
+  /**
+   * 
+   * @param s
+   * @param start
+   * @param end
+   * @return the radix of an integer in the notation of
+   *         {@link StringScanner#scanInt()} (hex if preceeded by {@code 0x},
+   *         octal if preceeded by {@code 0}, decimal otherwise), or -1 if the
+   *         region is not such a plain integer.
+   */
+  private static int radixOfInteger(CharSequence s, int start, int end) {
+    if (start >= end) { return -1; }
+    int i = skipSign(s, start);
+    if (i == end) { return -1; }
+    int radix = 10;
+    if (s.charAt(i) == '0') {
+      char x = (i + 1 < end) ? s.charAt(i + 1) : 0;
+      if (x == 'x' || x == 'X') {
+        radix = 16;
+        i += 2;
+        if (i == end) { return -1; }
+      } else {
+        radix = 8;
+      }
+    }
+    for (; i < end; i++) {
+      if (digit(s.charAt(i), radix) == -1) { return -1; }
+    }
+    return radix;
+  }
+  
+  /**
+   * 
+   * @param s
+   * @param start
+   * @param end
+   * @return {@code true} if the region is a plain integer in the notation of
+   *         {@link StringScanner#scanInt()}.
+   */
+  static boolean isPlainInteger(CharSequence s, int start, int end) {
+    return radixOfInteger(s, start, end) != -1;
+  }
+  
+  /**
+   * Scans a region that has been accepted by
+   * {@link #isPlainInteger(CharSequence, int, int)}.
+   * 
+   * @param s
+   * @param start
+   * @param end
+   * @return
+   */
+  static long parsePlainInteger(CharSequence s, int start, int end) {
+    int radix = radixOfInteger(s, start, end);
+    int i = skipSign(s, start);
+    long val = parsePlainInt(s, (radix == 16) ? i + 2 : i, end, radix);
+    return (s.charAt(start) == '-') ? -val : val;
+  }
+  
+  /**
+   * Scans a plain decimal floating point number of the form
+   * {@code [+-][0-9]*[.][0-9]*[eE[+-][0-9]+]} with at least one digit in
+   * the mantissa. The result is only computed if it can be obtained by a single
+   * correctly rounded multiplication or division, i.e., if the mantissa has at
+   * most 15 significant digits and the decimal exponent lies within +/-22;
+   * in that case it is identical to the result of
+   * {@link Double#parseDouble(String)}.
+   * 
+   * @param s
+   * @param start
+   * @param end
+   * @return the value, or {@code NaN} if the region could not be scanned.
+   */
+  static double parsePlainDouble(CharSequence s, int start, int end) {
+    if (start >= end) { return Double.NaN; }
+    int i = skipSign(s, start);
+    boolean negative = (i > start) && (s.charAt(start) == '-');
+    long mantissa = 0;
+    int numDigits = 0, sigDigits = 0, exponent = 0;
+    char c = 0;
+    boolean point = false;
+    for (; i < end; i++) {
+      c = s.charAt(i);
+      if (c >= '0' && c <= '9') {
+        numDigits++;
+        if (point) {
+          exponent--;
+        }
+        if (sigDigits > 0 || c != '0') {
+          if (++sigDigits > MAX_MANTISSA_DIGITS) { return Double.NaN; }
+          mantissa = mantissa * 10 + (c - '0');
+        }
+      } else if (c == '.' && !point) {
+        point = true;
+      } else {
+        break;
+      }
+    }
+    if (numDigits == 0) { return Double.NaN; }
+    if (i < end) {
+      if ((c != 'e' && c != 'E') || (++i == end)) { return Double.NaN; }
+      boolean negExp = (s.charAt(i) == '-');
+      i = skipSign(s, i);
+      if (i == end) { return Double.NaN; }
+      int exp = 0;
+      for (; i < end; i++) {
+        c = s.charAt(i);
+        if (c < '0' || c > '9' || exp > 1000) { return Double.NaN; }
+        exp = exp * 10 + (c - '0');
+      }
+      exponent += negExp ? -exp : exp;
+    }
+    double value;
+    if (mantissa == 0) {
+      value = 0d;
+    } else if (exponent >= 0 && exponent < POW10.length) {
+      value = mantissa * POW10[exponent];
+    } else if (exponent < 0 && -exponent < POW10.length) {
+      value = mantissa / POW10[-exponent];
+    } else {
+      return Double.NaN;
+    }
+    return negative ? -value : value;
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2011-2013 by Andreas Draeger and Florian Mittag
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.argparser;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declares a field as the result holder of an option. The value is an option
+ * specification in the syntax of {@link ArgParser#addOption addOption}, e.g.
+ * 
+ * <pre>
+ * class Settings {
+ *   &#064;Option(&quot;-n,--num %d {[1,100]} #count&quot;)
+ *   int count = 10;
+ *   &#064;Option(&quot;-v,--verbose %v #print progress information&quot;)
+ *   boolean verbose;
+ *   &#064;Option(&quot;--origin %fX3 #origin of the coordinate system&quot;)
+ *   double[] origin;
+ * }
+ * </pre>
+ * 
+ * <p>
+ * At compile time, {@link OptionProcessor} checks the specifications of all
+ * annotated fields of a class and generates a parser for them, named after the
+ * class with the suffix {@code Parser} ({@code SettingsParser} above). The
+ * generated parser matches the arguments in exactly the same way as an
+ * {@link ArgParser} to which the options have been added in the order of the
+ * fields, but stores the values directly into the fields. It neither parses
+ * option specifications nor uses reflection at run time.
+ * 
+ * <p>
+ * Annotated fields must not be private, static or final, and must be of one of
+ * the types {@code boolean}, {@code char}, {@code int}, {@code long},
+ * {@code float}, {@code double}, their wrapper classes, or {@code String},
+ * or an array of one of these types for options with a multiplier. The types
+ * are matched against the conversion code in the same way as the types of the
+ * result holders of {@link ArgParser#addOption addOption}.
+ * 
+ * @see OptionProcessor
+ * @see GeneratedArgParser
+ */
+@Documented
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.FIELD)
+public @interface Option {
+  
+  /**
+   * 
+   * @return the option specification
+   * @see ArgParser#addOption(String, Object)
+   */
+  String value();
+  
+  /**
+   * 
+   * @return whether the option is listed in the help message
+   * @see ArgParser#addOption(String, Object, boolean)
+   */
+  boolean visible() default true;
+}
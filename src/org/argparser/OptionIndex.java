@@ -0,0 +1,354 @@
+/*
+ * Copyright 2011-2013 by Andreas Draeger and Florian Mittag
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.argparser;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lookup structure that maps command line arguments to the {@link ArgParser}
+ * records they select. Names that have to match an argument exactly are kept
+ * in a hash map, names of one word options (which only need to be a prefix of
+ * the argument) are kept in a character trie. A lookup therefore costs time
+ * proportional to the length of the argument instead of the number of
+ * registered options. The exact names are entered into the trie as well, so
+ * that arguments which are not available as strings can be looked up without
+ * converting them.
+ * 
+ * <p>
+ * Every name is assigned a rank in the order in which it appears in the match
+ * list, so that the index returns exactly the same record as a linear scan
+ * over the match list would: the first registered name that matches wins.
+ * 
+ * <p>
+ * An index is a snapshot of the match list at the time it was built; it is
+ * never modified afterwards.
+ * 
+ * @see ArgParser
+ */
+class OptionIndex {
+  
+  /**
+   * A name together with the record it belongs to.
+   */
+  static final class Entry {
+    /**
+     * 
+     */
+    final ArgParser.Record record;
+    /**
+     * 
+     */
+    final ArgParser.NameDesc nameDesc;
+    /**
+     * Position of the record in the match list.
+     */
+    final int recordIndex;
+    /**
+     * Position of the name in the match list; lower ranks win.
+     */
+    final int rank;
+    
+    /**
+     * 
+     * @param record
+     * @param nameDesc
+     * @param recordIndex
+     * @param rank
+     */
+    Entry(ArgParser.Record record, ArgParser.NameDesc nameDesc,
+      int recordIndex, int rank) {
+      this.record = record;
+      this.nameDesc = nameDesc;
+      this.recordIndex = recordIndex;
+      this.rank = rank;
+    }
+  }
+  
+  /**
+   * A node of the prefix trie. The children are kept in a sorted array, which
+   * is much more compact than a map for the small fan-out of option names.
+   */
+  static final class Node {
+    /**
+     * 
+     */
+    private char[] keys = new char[0];
+    /**
+     * 
+     */
+    private Node[] children = new Node[0];
+    /**
+     * Highest ranking one word name ending at this node, if any.
+     */
+    private Entry prefixEntry;
+    /**
+     * Highest ranking name ending at this node that must match exactly, if
+     * any.
+     */
+    private Entry exactEntry;
+    
+    /**
+     * 
+     * @param c
+     * @return the child for the given character, or {@code null}.
+     */
+    Node child(char c) {
+      int lo = 0, hi = keys.length - 1;
+      while (lo <= hi) {
+        int mid = (lo + hi) >>> 1;
+        char k = keys[mid];
+        if (k < c) {
+          lo = mid + 1;
+        } else if (k > c) {
+          hi = mid - 1;
+        } else {
+          return children[mid];
+        }
+      }
+      return null;
+    }
+    
+    /**
+     * 
+     * @param c
+     * @return the child for the given character, created if necessary.
+     */
+    Node addChild(char c) {
+      int pos = 0;
+      while (pos < keys.length && keys[pos] < c) {
+        pos++;
+      }
+      if (pos < keys.length && keys[pos] == c) { return children[pos]; }
+      char[] newKeys = new char[keys.length + 1];
+      Node[] newChildren = new Node[children.length + 1];
+      System.arraycopy(keys, 0, newKeys, 0, pos);
+      System.arraycopy(children, 0, newChildren, 0, pos);
+      System.arraycopy(keys, pos, newKeys, pos + 1, keys.length - pos);
+      System.arraycopy(children, pos, newChildren, pos + 1, children.length
+          - pos);
+      Node node = new Node();
+      newKeys[pos] = c;
+      newChildren[pos] = node;
+      keys = newKeys;
+      children = newChildren;
+      return node;
+    }
+  }
+  
+  /**
+   * Names that must be equal to the argument.
+   */
+  private final Map<String, Entry> exactNames;
+  /**
+   * Names that must be a prefix of the argument.
+   */
+  private final Node prefixRoot = new Node();
+  /**
+   * Whether the trie contains any name at all; saves the walk otherwise.
+   */
+  private boolean hasPrefixNames = false;
+  /**
+   * Built when the first suggestion is requested; volatile, since compiled
+   * parsers share their index between threads.
+   */
+  private volatile SuggestionTree suggestionTree = null;
+  
+  /**
+   * Builds the index for the given match list.
+   * 
+   * @param matchList
+   */
+  OptionIndex(List<ArgParser.Record> matchList) {
+    exactNames = new HashMap<String, Entry>(matchList.size() * 4);
+    int rank = 0;
+    for (int i = 0; i < matchList.size(); i++) {
+      ArgParser.Record rec = matchList.get(i);
+      for (ArgParser.NameDesc ndesc = rec.firstNameDesc(); ndesc != null; ndesc = ndesc
+          .getNext()) {
+        Entry entry = new Entry(rec, ndesc, i, rank++);
+        if (rec.getConvertCode() != 'v' && ndesc.isOneWord()) {
+          addPrefixName(entry);
+        } else if (!exactNames.containsKey(ndesc.getName())) {
+          exactNames.put(ndesc.getName(), entry);
+          addNode(ndesc.getName()).exactEntry = entry;
+        }
+      }
+    }
+  }
+  
+  /**
+   * 
+   * @param entry
+   */
+  private void addPrefixName(Entry entry) {
+    Node node = addNode(entry.nameDesc.getName());
+    if (node.prefixEntry == null) {
+      node.prefixEntry = entry;
+    }
+    hasPrefixNames = true;
+  }
+  
+  /**
+   * 
+   * @param name
+   * @return the trie node for the given name, created if necessary.
+   */
+  private Node addNode(String name) {
+    Node node = prefixRoot;
+    for (int i = 0; i < name.length(); i++) {
+      node = node.addChild(name.charAt(i));
+    }
+    return node;
+  }
+  
+  /**
+   * Returns the entry for a name that is equal to the given string, no matter
+   * whether the name belongs to a one word option or not.
+   * 
+   * @param name
+   * @return the first registered entry of that name, or {@code null}.
+   */
+  Entry lookupName(String name) {
+    Entry best = exactNames.get(name);
+    Node node = prefixRoot;
+    for (int i = 0; (node != null) && (i < name.length()); i++) {
+      node = node.child(name.charAt(i));
+    }
+    if ((node != null) && (node.prefixEntry != null)
+        && ((best == null) || (node.prefixEntry.rank < best.rank))) {
+      best = node.prefixEntry;
+    }
+    return best;
+  }
+  
+  /**
+   * Returns the highest ranking entry whose name matches the given argument.
+   * 
+   * @param arg
+   * @return the matching entry or {@code null} if no name matches.
+   */
+  Entry lookup(String arg) {
+    Entry best = exactNames.get(arg);
+    if (hasPrefixNames) {
+      Node node = prefixRoot;
+      for (int i = 0; i < arg.length(); i++) {
+        node = node.child(arg.charAt(i));
+        if (node == null) {
+          break;
+        }
+        Entry e = node.prefixEntry;
+        if ((e != null) && ((best == null) || (e.rank < best.rank))) {
+          best = e;
+        }
+      }
+    }
+    return best;
+  }
+  
+  /**
+   * Returns the highest ranking entry whose name matches the given argument,
+   * using only the trie, so that the argument need not be a string.
+   * 
+   * @param arg
+   * @return the matching entry or {@code null} if no name matches.
+   * @see #lookup(String)
+   */
+  Entry lookup(CharSequence arg) {
+    if (arg instanceof String) { return lookup((String) arg); }
+    Entry best = null;
+    Node node = prefixRoot;
+    for (int i = 0; i < arg.length(); i++) {
+      node = node.child(arg.charAt(i));
+      if (node == null) { return best; }
+      Entry e = node.prefixEntry;
+      if ((e != null) && ((best == null) || (e.rank < best.rank))) {
+        best = e;
+      }
+    }
+    Entry e = node.exactEntry;
+    if ((e != null) && ((best == null) || (e.rank < best.rank))) {
+      best = e;
+    }
+    return best;
+  }
+  
+  /**
+   * Collects the entries of all names that start with the given prefix, in
+   * the lexicographic order of their names. Of several names that are equal,
+   * only the highest ranking one is collected. Finding the names costs time
+   * proportional to the length of the prefix; collecting them costs time
+   * proportional to the number of characters that follow it.
+   * 
+   * @param prefix
+   * @param entries
+   *        receives the entries
+   */
+  void complete(String prefix, List<Entry> entries) {
+    Node node = prefixRoot;
+    for (int i = 0; (node != null) && (i < prefix.length()); i++) {
+      node = node.child(prefix.charAt(i));
+    }
+    if (node != null) {
+      collect(node, entries);
+    }
+  }
+  
+  /**
+   * Collects the entries of all names within a given edit distance of an
+   * argument that does not match any name, as suggestions for what might have
+   * been meant. The entries are ordered by their distance, then by rank. The
+   * names are kept in a {@link SuggestionTree} that is built by the first
+   * call, so that parsers which never see a misspelled option do not pay for
+   * it.
+   * 
+   * @param arg
+   * @param maxDist
+   * @param entries
+   *        receives the entries
+   */
+  void suggest(String arg, int maxDist, List<Entry> entries) {
+    SuggestionTree tree = suggestionTree;
+    if (tree == null) {
+      List<Entry> names = new ArrayList<Entry>();
+      collect(prefixRoot, names);
+      suggestionTree = tree = new SuggestionTree(names);
+    }
+    tree.find(arg, maxDist, entries);
+  }
+  
+  /**
+   * 
+   * @param node
+   * @param entries
+   */
+  private static void collect(Node node, List<Entry> entries) {
+    Entry best = node.exactEntry;
+    Entry e = node.prefixEntry;
+    if ((e != null) && ((best == null) || (e.rank < best.rank))) {
+      best = e;
+    }
+    if (best != null) {
+      entries.add(best);
+    }
+    for (Node child : node.children) {
+      collect(child, entries);
+    }
+  }
+}
@@ -0,0 +1,833 @@
+/*
+ * Copyright 2011-2013 by Andreas Draeger and Florian Mittag
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.argparser;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+
+/**
+ * Generates a parser for every class that has fields annotated with
+ * {@link Option}. The options are added to an {@link ArgParser} at compile
+ * time, in the order of the fields, so that every specification is checked
+ * exactly as {@link ArgParser#addOption addOption} would check it at run time;
+ * an invalid specification is reported as a compilation error at its field.
+ * The parsed records are then translated into a subclass of
+ * {@link GeneratedArgParser}:
+ * <ul>
+ * <li>option names are identified by a {@code switch} on the argument,
+ * followed by {@code startsWith} tests for the one word names in the order of
+ * precedence of {@link ArgParser},</li>
+ * <li>ranges are decoded into comparisons with constants, or a {@code switch}
+ * for enumerations of strings,</li>
+ * <li>values are assigned to the annotated fields directly,</li>
+ * <li>the help message is rendered in advance, apart from the synopsis.</li>
+ * </ul>
+ * 
+ * <p>
+ * For a class {@code p.Settings}, the parser is named {@code p.SettingsParser};
+ * for a nested class {@code p.Outer.Inner}, it is named
+ * {@code p.Outer_InnerParser}. Its constructor takes the object whose fields
+ * receive the values and the synopsis string. As with
+ * {@link ArgParser#ArgParser(String)}, the help options {@code --help} and
+ * {@code -?} are present unless one of the fields declares a {@code %h}
+ * option.
+ * 
+ * <p>
+ * The processor is registered in
+ * {@code META-INF/services/javax.annotation.processing.Processor}, so that it
+ * runs whenever the library is on the class path of the compiler.
+ * 
+ * @see Option
+ * @see GeneratedArgParser
+ */
+@SupportedAnnotationTypes("org.argparser.Option")
+public class OptionProcessor extends AbstractProcessor {
+  
+  /**
+   * Length of the arrays that stand in for array fields while the
+   * specifications are checked. Generated parsers allocate arrays of the
+   * required length themselves.
+   */
+  private static final int HOLDER_ARRAY_LENGTH = 1 << 16;
+  
+  /*
+   * (non-Javadoc)
+   * 
+   * @see javax.annotation.processing.AbstractProcessor#getSupportedSourceVersion()
+   */
+  @Override
+  public SourceVersion getSupportedSourceVersion() {
+    return SourceVersion.latestSupported();
+  }
+  
+  /*
+   * (non-Javadoc)
+   * 
+   * @see javax.annotation.processing.AbstractProcessor#process(java.util.Set,
+   * javax.annotation.processing.RoundEnvironment)
+   */
+  @Override
+  public boolean process(Set<? extends TypeElement> annotations,
+    RoundEnvironment roundEnv) {
+    Set<TypeElement> types = new LinkedHashSet<TypeElement>();
+    for (Element field : roundEnv.getElementsAnnotatedWith(Option.class)) {
+      types.add((TypeElement) field.getEnclosingElement());
+    }
+    for (TypeElement type : types) {
+      generate(type);
+    }
+    return true;
+  }
+  
+  /**
+   * 
+   * @param msg
+   * @param element
+   */
+  private void error(String msg, Element element) {
+    processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, msg,
+      element);
+  }
+  
+  /**
+   * Checks the options declared by the fields of {@code type} and writes
+   * its parser.
+   * 
+   * @param type
+   */
+  private void generate(TypeElement type) {
+    boolean valid = true;
+    for (Element e = type; e.getKind() != ElementKind.PACKAGE; e = e
+        .getEnclosingElement()) {
+      if (e.getModifiers().contains(Modifier.PRIVATE)
+          || ((e instanceof TypeElement) && (((TypeElement) e)
+              .getNestingKind() == NestingKind.LOCAL || ((TypeElement) e)
+              .getNestingKind() == NestingKind.ANONYMOUS))) {
+        error("Options cannot be declared by a private, local or "
+            + "anonymous class", type);
+        return;
+      }
+    }
+    
+    ArgParser parser = new ArgParser("", true);
+    List<ArgParser.Record> records = new ArrayList<ArgParser.Record>();
+    List<VariableElement> fields = new ArrayList<VariableElement>();
+    List<Integer> fieldTypes = new ArrayList<Integer>();
+    ArgParser.Record defaultHelp = parser.lastMatchRecord();
+    records.add(defaultHelp);
+    fields.add(null);
+    fieldTypes.add(ArgParser.Record.NOTYPE);
+    
+    for (VariableElement field : ElementFilter.fieldsIn(type
+        .getEnclosedElements())) {
+      Option option = field.getAnnotation(Option.class);
+      if (option == null) {
+        continue;
+      }
+      Set<Modifier> modifiers = field.getModifiers();
+      if (modifiers.contains(Modifier.PRIVATE)
+          || modifiers.contains(Modifier.STATIC)
+          || modifiers.contains(Modifier.FINAL)) {
+        error("Option fields must not be private, static or final", field);
+        valid = false;
+        continue;
+      }
+      TypeMirror fieldType = field.asType();
+      boolean isArray = (fieldType.getKind() == TypeKind.ARRAY);
+      int valueType = valueType(isArray ? ((ArrayType) fieldType)
+          .getComponentType() : fieldType);
+      try {
+        // help options accept fields of any type, as they store nothing
+        parser.addOption(option.value(),
+          (valueType == ArgParser.Record.NOTYPE) ? null : createHolder(
+            valueType, isArray), option.visible());
+      } catch (IllegalArgumentException e) {
+        if (valueType == ArgParser.Record.NOTYPE) {
+          error("Unsupported type of option field: " + fieldType, field);
+        } else {
+          error("Invalid option specification: " + e.getMessage(), field);
+        }
+        valid = false;
+        continue;
+      }
+      ArgParser.Record rec = parser.lastMatchRecord();
+      if ((rec.getConvertCode() == 'h') && records.remove(defaultHelp)) {
+        fields.remove(0);
+        fieldTypes.remove(0);
+      }
+      records.add(rec);
+      fields.add(field);
+      fieldTypes.add(isArray ? -valueType : valueType);
+    }
+    if (!valid) { return; }
+    
+    String optionsHelp = optionsHelp(parser);
+    parser.setHelpOptionsEnabled(false);
+    String optionsHelpWithoutHelp = optionsHelp(parser);
+    String helpOptionName = null;
+    for (ArgParser.Record rec : records) {
+      if (rec.getConvertCode() == 'h') {
+        helpOptionName = rec.firstNameDesc().getName();
+        break;
+      }
+    }
+    
+    String packageName = processingEnv.getElementUtils().getPackageOf(type)
+        .getQualifiedName().toString();
+    String targetName = type.getQualifiedName().toString();
+    String simpleName = packageName.length() == 0 ? targetName : targetName
+        .substring(packageName.length() + 1);
+    String parserName = simpleName.replace('.', '_') + "Parser";
+    try {
+      PrintWriter out = new PrintWriter(processingEnv.getFiler()
+          .createSourceFile(
+            (packageName.length() == 0 ? "" : packageName + ".") + parserName,
+            type).openWriter());
+      try {
+        writeParser(out, packageName, targetName, parserName, records, fields,
+          fieldTypes, optionsHelp, optionsHelpWithoutHelp, helpOptionName);
+      } finally {
+        out.close();
+      }
+    } catch (IOException e) {
+      error("Cannot write " + parserName + ": " + e.getMessage(), type);
+    }
+  }
+  
+  /**
+   * 
+   * @param parser
+   * @return the list of options in the help message of {@code parser}.
+   */
+  private static String optionsHelp(ArgParser parser) {
+    String msg = parser.getHelpMessage();
+    return msg.substring(msg.indexOf("Options include:\n\n")
+        + "Options include:\n\n".length());
+  }
+  
+  /**
+   * 
+   * @param type
+   * @return the type constant of {@link ArgParser.Record} that corresponds to
+   *         a primitive type, its wrapper class or {@code String}, or
+   *         {@link ArgParser.Record#NOTYPE}.
+   */
+  private static int valueType(TypeMirror type) {
+    switch (type.getKind()) {
+      case BOOLEAN: {
+        return ArgParser.Record.BOOLEAN;
+      }
+      case CHAR: {
+        return ArgParser.Record.CHAR;
+      }
+      case INT: {
+        return ArgParser.Record.INT;
+      }
+      case LONG: {
+        return ArgParser.Record.LONG;
+      }
+      case FLOAT: {
+        return ArgParser.Record.FLOAT;
+      }
+      case DOUBLE: {
+        return ArgParser.Record.DOUBLE;
+      }
+      case DECLARED: {
+        String name = type.toString();
+        if (name.equals("java.lang.Boolean")) {
+          return ArgParser.Record.BOOLEAN;
+        } else if (name.equals("java.lang.Character")) {
+          return ArgParser.Record.CHAR;
+        } else if (name.equals("java.lang.Integer")) {
+          return ArgParser.Record.INT;
+        } else if (name.equals("java.lang.Long")) {
+          return ArgParser.Record.LONG;
+        } else if (name.equals("java.lang.Float")) {
+          return ArgParser.Record.FLOAT;
+        } else if (name.equals("java.lang.Double")) {
+          return ArgParser.Record.DOUBLE;
+        } else if (name.equals("java.lang.String")) {
+          return ArgParser.Record.STRING;
+        }
+        return ArgParser.Record.NOTYPE;
+      }
+      default: {
+        return ArgParser.Record.NOTYPE;
+      }
+    }
+  }
+  
+  /**
+   * Boxed variants of the value types are not distinguished from primitive
+   * ones, since both accept the same conversion codes.
+   * 
+   * @param valueType
+   * @return
+   */
+  private static Class<?> valueClass(int valueType) {
+    switch (valueType) {
+      case ArgParser.Record.BOOLEAN: {
+        return Boolean.class;
+      }
+      case ArgParser.Record.CHAR: {
+        return Character.class;
+      }
+      case ArgParser.Record.INT: {
+        return Integer.class;
+      }
+      case ArgParser.Record.LONG: {
+        return Long.class;
+      }
+      case ArgParser.Record.FLOAT: {
+        return Float.class;
+      }
+      case ArgParser.Record.DOUBLE: {
+        return Double.class;
+      }
+      default: {
+        return String.class;
+      }
+    }
+  }
+  
+  /**
+   * Creates a result holder that {@link ArgParser#addOption addOption}
+   * accepts for the same conversion codes as a field of the given type.
+   * 
+   * @param valueType
+   * @param isArray
+   * @return
+   */
+  @SuppressWarnings({ "rawtypes", "unchecked" })
+  private static Object createHolder(int valueType, boolean isArray) {
+    Class<?> c = valueClass(valueType);
+    if (!isArray) { return new ArgHolder(c); }
+    if (c != String.class) {
+      try {
+        c = (Class<?>) c.getField("TYPE").get(null);
+      } catch (Exception e) {
+        throw new IllegalStateException(e);
+      }
+    }
+    return Array.newInstance(c, HOLDER_ARRAY_LENGTH);
+  }
+  
+  /**
+   * 
+   * @param s
+   * @return {@code s} as a Java string literal.
+   */
+  static String literal(String s) {
+    StringBuilder sb = new StringBuilder(s.length() + 2);
+    sb.append('"');
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      switch (c) {
+        case '"': {
+          sb.append("\\\"");
+          break;
+        }
+        case '\\': {
+          sb.append("\\\\");
+          break;
+        }
+        case '\n': {
+          sb.append("\\n");
+          break;
+        }
+        case '\t': {
+          sb.append("\\t");
+          break;
+        }
+        default: {
+          if (c < ' ') {
+            // octal, since unicode escapes of line terminators are not
+            // allowed in string literals
+            sb.append(String.format("\\%03o", (int) c));
+          } else if (c > '~') {
+            sb.append(String.format("\\u%04x", (int) c));
+          } else {
+            sb.append(c);
+          }
+        }
+      }
+    }
+    sb.append('"');
+    return sb.toString();
+  }
+  
+  /**
+   * 
+   * @param d
+   * @return {@code d} as a Java expression.
+   */
+  private static String literal(double d) {
+    if (Double.isNaN(d)) {
+      return "Double.NaN";
+    } else if (Double.isInfinite(d)) {
+      return d > 0 ? "Double.POSITIVE_INFINITY" : "Double.NEGATIVE_INFINITY";
+    }
+    return Double.toString(d);
+  }
+  
+  /**
+   * 
+   * @param out
+   * @param packageName
+   * @param targetName
+   * @param parserName
+   * @param records
+   * @param fields
+   * @param fieldTypes
+   *        value types of the fields, negative for arrays
+   * @param optionsHelp
+   * @param optionsHelpWithoutHelp
+   * @param helpOptionName
+   */
+  private static void writeParser(PrintWriter out, String packageName,
+    String targetName, String parserName, List<ArgParser.Record> records,
+    List<VariableElement> fields, List<Integer> fieldTypes,
+    String optionsHelp, String optionsHelpWithoutHelp, String helpOptionName) {
+    if (packageName.length() > 0) {
+      out.println("package " + packageName + ";");
+      out.println();
+    }
+    out.println("import org.argparser.GeneratedArgParser;");
+    out.println();
+    out.println("/**");
+    out.println(" * Parser for the options declared by {@link " + targetName
+        + "},");
+    out.println(" * generated by {@code org.argparser.OptionProcessor}.");
+    out.println(" */");
+    out.println("public class " + parserName + " extends GeneratedArgParser {");
+    out.println();
+    out.println("  private static final String OPTIONS_HELP = "
+        + literal(optionsHelp) + ";");
+    out.println();
+    out.println("  private static final String OPTIONS_HELP_WITHOUT_HELP = "
+        + literal(optionsHelpWithoutHelp) + ";");
+    out.println();
+    out.println("  private final " + targetName + " target;");
+    out.println();
+    out.println("  public " + parserName + "(" + targetName
+        + " target, String synopsisString) {");
+    out.println("    super(synopsisString, OPTIONS_HELP, "
+        + "OPTIONS_HELP_WITHOUT_HELP, "
+        + (helpOptionName == null ? "null" : literal(helpOptionName)) + ");");
+    out.println("    this.target = target;");
+    out.println("  }");
+    out.println();
+    
+    // identification of the option, with the precedence of OptionIndex
+    out.println("  @Override");
+    out.println("  protected int matchOption(String[] args, int idx) {");
+    out.println("    String arg = args[idx];");
+    out.println("    String name = arg;");
+    out.println("    int option = -1;");
+    out.println("    int rank = Integer.MAX_VALUE;");
+    out.println("    boolean oneWord = false;");
+    out.println("    switch (arg) {");
+    Set<String> exactNames = new HashSet<String>();
+    Set<String> prefixNames = new HashSet<String>();
+    StringBuilder prefixTests = new StringBuilder();
+    int rank = 0;
+    for (int i = 0; i < records.size(); i++) {
+      ArgParser.Record rec = records.get(i);
+      for (ArgParser.NameDesc ndesc = rec.firstNameDesc(); ndesc != null;
+          ndesc = ndesc.getNext(), rank++) {
+        String name = ndesc.getName();
+        if ((rec.getConvertCode() != 'v') && ndesc.isOneWord()) {
+          if (prefixNames.add(name)) {
+            prefixTests.append(String.format("    %sif ((rank > %d) && "
+                + "arg.startsWith(%s)) {\n", (prefixTests.length() > 0
+                ? "} else " : ""), rank, literal(name)));
+            prefixTests.append(String.format(
+              "      option = %d;\n      name = %s;\n      oneWord = true;\n",
+              i, literal(name)));
+          }
+        } else if (exactNames.add(name)) {
+          out.println("      case " + literal(name) + ": {");
+          out.println("        option = " + i + ";");
+          out.println("        rank = " + rank + ";");
+          out.println("        break;");
+          out.println("      }");
+        }
+      }
+    }
+    out.println("    }");
+    if (prefixTests.length() > 0) {
+      out.print(prefixTests);
+      out.println("    }");
+    }
+    out.println("    switch (option) {");
+    for (int i = 0; i < records.size(); i++) {
+      ArgParser.Record rec = records.get(i);
+      out.println("      case " + i + ": {");
+      if (rec.getConvertCode() == 'h') {
+        out.println("        return HELP;");
+      } else {
+        out.println("        return match" + i
+            + "(args, idx, name, oneWord);");
+      }
+      out.println("      }");
+    }
+    out.println("      default: {");
+    out.println("        return UNMATCHED;");
+    out.println("      }");
+    out.println("    }");
+    out.println("  }");
+    
+    for (int i = 0; i < records.size(); i++) {
+      ArgParser.Record rec = records.get(i);
+      if (rec.getConvertCode() != 'h') {
+        String fieldName = fields.get(i).getSimpleName().toString();
+        int type = fieldTypes.get(i);
+        out.println();
+        writeMatchMethod(out, rec, i, fieldName, Math.abs(type), type < 0);
+        if (rec.firstRangeAtom() != null && rec.getConvertCode() != 'v') {
+          out.println();
+          writeRangeMethod(out, rec, i, fieldName, Math.abs(type));
+        }
+      }
+    }
+    out.println("}");
+  }
+  
+  /**
+   * 
+   * @param valueType
+   * @return the field of {@link GeneratedArgParser} that holds scanned values
+   *         of the given type.
+   */
+  private static String scannedValue(int valueType) {
+    switch (valueType) {
+      case ArgParser.Record.BOOLEAN: {
+        return "bval";
+      }
+      case ArgParser.Record.FLOAT:
+      case ArgParser.Record.DOUBLE: {
+        return "dval";
+      }
+      case ArgParser.Record.STRING: {
+        return "sval";
+      }
+      default: {
+        return "lval";
+      }
+    }
+  }
+  
+  /**
+   * 
+   * @param valueType
+   * @param value
+   * @return an expression that converts {@code value} to the field type.
+   */
+  private static String convert(int valueType, String value) {
+    switch (valueType) {
+      case ArgParser.Record.CHAR: {
+        return "(char) " + value;
+      }
+      case ArgParser.Record.INT: {
+        return "(int) " + value;
+      }
+      case ArgParser.Record.FLOAT: {
+        return "(float) " + value;
+      }
+      default: {
+        return value;
+      }
+    }
+  }
+  
+  /**
+   * Writes the method that scans the values of an option and stores them in
+   * its field, following {@code ArgParser.Record.matchValues}.
+   * 
+   * @param out
+   * @param rec
+   * @param index
+   *        of the record, which names the generated methods, since the
+   *        names of two fields may differ only in their case
+   * @param fieldName
+   * @param valueType
+   * @param isArray
+   */
+  private static void writeMatchMethod(PrintWriter out, ArgParser.Record rec,
+    int index, String fieldName, int valueType, boolean isArray) {
+    char code = rec.getConvertCode();
+    int n = rec.getNumValues();
+    String value = convert(valueType, scannedValue(valueType));
+    String field = "target." + fieldName;
+    String primitive = (valueType == ArgParser.Record.STRING) ? "String"
+        : valueClass(valueType).getSimpleName().toLowerCase();
+    if (primitive.equals("character")) {
+      primitive = "char";
+    } else if (primitive.equals("integer")) {
+      primitive = "int";
+    }
+    
+    out.println("  // " + fieldName);
+    out.println("  private int match" + index
+        + "(String[] args, int idx, String name, boolean oneWord) {");
+    if (isArray) {
+      out.println("    " + primitive + "[] values = " + field + ";");
+      out.println("    if ((values == null) || (values.length < " + n
+          + ")) {");
+      out.println("      values = " + field + " = new " + primitive + "[" + n
+          + "];");
+      out.println("    }");
+      field = "values[0]";
+    }
+    if (code == 'v') {
+      boolean vval = (rec.firstRangeAtom() == null)
+          || rec.firstRangeAtom().getLow().bval;
+      if (isArray) {
+        out.println("    for (int k = 0; k < " + n + "; k++) {");
+        out.println("      values[k] = " + vval + ";");
+        out.println("    }");
+      } else {
+        out.println("    " + field + " = " + vval + ";");
+      }
+      out.println("    return idx + 1;");
+      out.println("  }");
+      return;
+    }
+    // like ArgParser, decide by the name that has been matched
+    boolean hasOneWord = false, hasSeparate = false;
+    for (ArgParser.NameDesc ndesc = rec.firstNameDesc(); ndesc != null;
+        ndesc = ndesc.getNext()) {
+      hasOneWord |= ndesc.isOneWord();
+      hasSeparate |= !ndesc.isOneWord();
+    }
+    if (hasOneWord) {
+      String indent = hasSeparate ? "      " : "    ";
+      if (hasSeparate) {
+        out.println("    if (oneWord) {");
+      }
+      out.println(indent + "String value = args[idx];");
+      out.println(indent + "int start = name.length();");
+      writeScan(out, indent, rec, index, valueType, "start");
+      out.println(indent + field + " = " + value + ";");
+      out.println(indent + "return idx + 1;");
+      if (!hasSeparate) {
+        out.println("  }");
+        return;
+      }
+      out.println("    }");
+    }
+    out.println("    if (idx + " + n + " >= args.length) {");
+    if (code == 'b') {
+      out.println("      " + field + " = true;");
+      out.println("      return idx + 1;");
+    } else {
+      out.println("      return requiresValues(name, " + n + ");");
+    }
+    out.println("    }");
+    if (code == 'b' && n == 1) {
+      // a value that is not a boolean is taken as the next argument
+      out.println("    String value = args[++idx];");
+      out.println("    int status = scan(value, 0, value.length(), 'b');");
+      out.println("    if (status == MALFORMED) {");
+      out.println("      " + field + " = true;");
+      out.println("      return idx;");
+      out.println("    }");
+      writeCheck(out, "    ", rec, index, valueType, "0");
+      out.println("    " + field + " = " + value + ";");
+    } else if (n == 1) {
+      out.println("    String value = args[++idx];");
+      writeScan(out, "    ", rec, index, valueType, "0");
+      out.println("    " + field + " = " + value + ";");
+    } else {
+      out.println("    for (int k = 0; k < " + n + "; k++) {");
+      out.println("      String value = args[++idx];");
+      writeScan(out, "      ", rec, index, valueType, "0");
+      out.println("      values[k] = " + value + ";");
+      out.println("    }");
+    }
+    out.println("    return idx + 1;");
+    out.println("  }");
+  }
+  
+  /**
+   * Writes the scanning of {@code value} from {@code start}, followed by
+   * the range check.
+   * 
+   * @param out
+   * @param indent
+   * @param rec
+   * @param index
+   *        of the record
+   * @param valueType
+   * @param start
+   */
+  private static void writeScan(PrintWriter out, String indent,
+    ArgParser.Record rec, int index, int valueType, String start) {
+    out.println(indent + "int status = scan(value, " + start
+        + ", value.length(), '" + rec.getConvertCode() + "');");
+    writeCheck(out, indent, rec, index, valueType, start);
+  }
+  
+  /**
+   * Writes the handling of the scanning status and the range check.
+   * 
+   * @param out
+   * @param indent
+   * @param rec
+   * @param index
+   *        of the record
+   * @param valueType
+   * @param start
+   */
+  private static void writeCheck(PrintWriter out, String indent,
+    ArgParser.Record rec, int index, int valueType, String start) {
+    out.println(indent + "if (status != OK) {");
+    out.println(indent + "  return scanError(name, status, '"
+        + rec.getConvertCode() + "', value, " + start + ", value.length());");
+    out.println(indent + "}");
+    if (rec.firstRangeAtom() != null) {
+      out.println(indent + "if (!inRange" + index + "("
+          + scannedValue(valueType) + ")) {");
+      out.println(indent + "  return rangeError(name, value, " + start
+          + ", value.length(), " + literal(rec.getRangeDesc()) + ");");
+      out.println(indent + "}");
+    }
+  }
+  
+  /**
+   * Writes the range check of an option, with the range atoms decoded into
+   * comparisons with constants. Single strings are looked up by a
+   * {@code switch}.
+   * 
+   * @param out
+   * @param rec
+   * @param index
+   *        of the record
+   * @param fieldName
+   * @param valueType
+   */
+  private static void writeRangeMethod(PrintWriter out, ArgParser.Record rec,
+    int index, String fieldName, int valueType) {
+    String param;
+    switch (valueType) {
+      case ArgParser.Record.BOOLEAN: {
+        param = "boolean";
+        break;
+      }
+      case ArgParser.Record.FLOAT:
+      case ArgParser.Record.DOUBLE: {
+        param = "double";
+        break;
+      }
+      case ArgParser.Record.STRING: {
+        param = "String";
+        break;
+      }
+      default: {
+        param = "long";
+      }
+    }
+    out.println("  // " + fieldName);
+    out.println("  private static boolean inRange" + index + "(" + param
+        + " v) {");
+    List<String> conditions = new ArrayList<String>();
+    Set<String> cases = new LinkedHashSet<String>();
+    for (ArgParser.RangeAtom ra = rec.firstRangeAtom(); ra != null; ra = ra
+        .getNext()) {
+      ArgParser.RangePnt low = ra.getLow();
+      ArgParser.RangePnt high = ra.getHigh();
+      String lo, hi;
+      switch (valueType) {
+        case ArgParser.Record.BOOLEAN: {
+          conditions.add(low.bval ? "v" : "!v");
+          continue;
+        }
+        case ArgParser.Record.STRING: {
+          if (high == null || low.sval.equals(high.sval)) {
+            if (high == null || low.getClosed() || high.getClosed()) {
+              cases.add(low.sval);
+            }
+            continue;
+          }
+          lo = literal(low.sval);
+          hi = literal(high.sval);
+          conditions.add(String.format("(v.compareTo(%s) %s 0 && "
+              + "v.compareTo(%s) %s 0)", lo, low.getClosed() ? ">=" : ">", hi,
+            high.getClosed() ? "<=" : "<"));
+          continue;
+        }
+        case ArgParser.Record.FLOAT:
+        case ArgParser.Record.DOUBLE: {
+          lo = literal(low.dval);
+          hi = (high == null) ? lo : literal(high.dval);
+          break;
+        }
+        default: {
+          lo = low.lval + "L";
+          hi = (high == null) ? lo : high.lval + "L";
+        }
+      }
+      if (high == null || lo.equals(hi)) {
+        if (high == null || low.getClosed() || high.getClosed()) {
+          conditions.add("v == " + lo);
+        }
+      } else {
+        conditions.add(String.format("(v %s %s && v %s %s)",
+          low.getClosed() ? ">=" : ">", lo, high.getClosed() ? "<=" : "<", hi));
+      }
+    }
+    if (!cases.isEmpty()) {
+      out.println("    switch (v) {");
+      for (String s : cases) {
+        out.println("      case " + literal(s) + ":");
+      }
+      out.println("        return true;");
+      out.println("    }");
+    }
+    if (conditions.isEmpty()) {
+      out.println("    return false;");
+    } else {
+      for (int i = 0; i < conditions.size(); i++) {
+        out.println((i == 0 ? "    return " : "        || ")
+            + conditions.get(i) + (i == conditions.size() - 1 ? ";" : ""));
+      }
+    }
+    out.println("  }");
+  }
+}
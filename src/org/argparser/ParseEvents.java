@@ -0,0 +1,283 @@
+/*
+ * Copyright 2011-2013 by Andreas Draeger and Florian Mittag
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.argparser;
+
+import java.io.File;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Java Flight Recorder events emitted by {@link ArgParser}, so that the time
+ * spent on adding options, matching arguments, loading option files and
+ * rendering help messages can be told apart in a recording. All events are
+ * disabled by default and have to be enabled by name, e.g., with
+ * 
+ * <pre>
+ * -XX:StartFlightRecording:settings=default,+ArgParse.Match#enabled=true
+ * </pre>
+ * 
+ * or {@link jdk.jfr.Recording#enable(String)}. As long as an event is
+ * disabled, creating and committing it is optimized away by the JIT compiler.
+ * 
+ * <p>
+ * Loading the first event class initializes the flight recorder, which takes
+ * a considerable part of the start up time of a small program. Therefore,
+ * the {@code begin} methods do not create any events unless the flight
+ * recorder has already been initialized, e.g., by
+ * {@code -XX:StartFlightRecording} or by creating a recording. On runtimes
+ * without the {@code jdk.jfr} module, no events are created at all.
+ */
+final class ParseEvents {
+  
+  /**
+   * Whether the {@code jdk.jfr} module is available. Runtime images created
+   * by {@code jlink} may lack it, in which case no event class and not even
+   * {@link FlightRecorder} may be touched.
+   */
+  private static final boolean JFR_AVAILABLE = ModuleLayer.boot()
+      .findModule("jdk.jfr").isPresent();
+  
+  /**
+   * 
+   */
+  private ParseEvents() {
+  }
+  
+  /**
+   * 
+   * @return {@code true} if events may be created, i.e., the flight recorder
+   *         is available and has been initialized.
+   */
+  private static boolean isRecording() {
+    return JFR_AVAILABLE && FlightRecorder.isInitialized();
+  }
+  
+  /**
+   * 
+   * @return a begun event, or {@code null} if the flight recorder is not
+   *         available or not initialized.
+   */
+  static Compile beginCompile() {
+    if (!isRecording()) { return null; }
+    Compile event = new Compile();
+    event.begin();
+    return event;
+  }
+  
+  /**
+   * 
+   * @return a begun event, or {@code null} if the flight recorder is not
+   *         available or not initialized.
+   */
+  static Match beginMatch() {
+    if (!isRecording()) { return null; }
+    Match event = new Match();
+    event.begin();
+    return event;
+  }
+  
+  /**
+   * 
+   * @return a begun event, or {@code null} if the flight recorder is not
+   *         available or not initialized.
+   */
+  static FileLoad beginFileLoad() {
+    if (!isRecording()) { return null; }
+    FileLoad event = new FileLoad();
+    event.begin();
+    return event;
+  }
+  
+  /**
+   * 
+   * @return a begun event, or {@code null} if the flight recorder is not
+   *         available or not initialized.
+   */
+  static Help beginHelp() {
+    if (!isRecording()) { return null; }
+    Help event = new Help();
+    event.begin();
+    return event;
+  }
+  
+  /**
+   * Emitted by {@link ArgParser#addOption(String, Object, boolean)}, which
+   * includes the compilation of the option's range.
+   */
+  @Name("ArgParse.Compile")
+  @Label("Option Compilation")
+  @Category("ArgParser")
+  @Description("Parsing of an option specification, including its range")
+  @Enabled(false)
+  static final class Compile extends Event {
+    /**
+     * 
+     */
+    @Label("Specification")
+    String spec;
+    /**
+     * 
+     */
+    @Label("Options")
+    @Description("Number of options of the parser afterwards")
+    int options;
+    
+    /**
+     * Ends the event and commits it if it is enabled.
+     * 
+     * @param spec
+     * @param options
+     */
+    void finish(String spec, int options) {
+      end();
+      if (shouldCommit()) {
+        this.spec = spec;
+        this.options = options;
+        commit();
+      }
+    }
+  }
+  
+  /**
+   * Emitted by each call of one of the {@code matchAllArgs} methods of
+   * {@link ArgParser}, unless the program exits.
+   */
+  @Name("ArgParse.Match")
+  @Label("Argument Matching")
+  @Category("ArgParser")
+  @Description("Matching of an argument list")
+  @Enabled(false)
+  static final class Match extends Event {
+    /**
+     * 
+     */
+    @Label("Arguments")
+    @Description("Number of arguments that have been matched or looked at")
+    int arguments;
+    /**
+     * 
+     */
+    @Label("Unmatched Arguments")
+    int unmatched;
+    /**
+     * 
+     */
+    @Label("Error")
+    @Description("Message of the error that stopped the matching, if any")
+    String error;
+    
+    /**
+     * Ends the event and commits it if it is enabled.
+     * 
+     * @param arguments
+     * @param unmatched
+     * @param error
+     *        {@code null} if there was no error
+     */
+    void finish(int arguments, int unmatched, String error) {
+      end();
+      if (shouldCommit()) {
+        this.arguments = arguments;
+        this.unmatched = unmatched;
+        this.error = error;
+        commit();
+      }
+    }
+  }
+  
+  /**
+   * Emitted by {@link ArgParser#readArgs(java.io.File)} and thus by
+   * {@link ArgParser#prependArgs(java.io.File, String[])}.
+   */
+  @Name("ArgParse.FileLoad")
+  @Label("Option File Load")
+  @Category("ArgParser")
+  @Description("Reading and splitting of an option file")
+  @Enabled(false)
+  static final class FileLoad extends Event {
+    /**
+     * 
+     */
+    @Label("Path")
+    String path;
+    /**
+     * 
+     */
+    @Label("Size")
+    @DataAmount
+    long bytes;
+    /**
+     * 
+     */
+    @Label("Tokens")
+    @Description("Number of arguments read from the file")
+    int tokens;
+    
+    /**
+     * Ends the event and commits it if it is enabled.
+     * 
+     * @param file
+     * @param tokens
+     */
+    void finish(File file, int tokens) {
+      end();
+      if (shouldCommit()) {
+        this.path = file.getPath();
+        this.bytes = file.length();
+        this.tokens = tokens;
+        commit();
+      }
+    }
+  }
+  
+  /**
+   * Emitted whenever a help message is rendered, i.e., not for help messages
+   * that are taken from the cache.
+   */
+  @Name("ArgParse.Help")
+  @Label("Help Rendering")
+  @Category("ArgParser")
+  @Description("Rendering of a help message")
+  @Enabled(false)
+  static final class Help extends Event {
+    /**
+     * 
+     */
+    @Label("Options")
+    int options;
+    
+    /**
+     * Ends the event and commits it if it is enabled.
+     * 
+     * @param options
+     */
+    void finish(int options) {
+      end();
+      if (shouldCommit()) {
+        this.options = options;
+        commit();
+      }
+    }
+  }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2011-2013 by Andreas Draeger and Florian Mittag
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.argparser;
+
+/**
+ * Receives notifications about the matching of arguments by an
+ * {@link ArgParser}, e.g., to collect statistics on which options are used,
+ * how much time their conversion takes and how often values are rejected.
+ * Every argument that {@link ArgParser} looks up results in exactly one of the
+ * calls below, except for help options, which are not reported.
+ * 
+ * <p>
+ * The methods are called on the thread that matches the arguments and should
+ * return quickly. If no listener is installed, the parser only pays for a
+ * single {@code null} check per argument.
+ * 
+ * @see ArgParser#setParseListener(ParseListener)
+ * @see ParseMetrics
+ */
+public interface ParseListener {
+  
+  /**
+   * Called after the values of an option have been converted and stored.
+   * 
+   * @param optionName
+   *        the first name of the option, whichever of its names was matched
+   * @param nanos
+   *        time spent converting and storing the values, in nanoseconds
+   */
+  void optionMatched(String optionName, long nanos);
+  
+  /**
+   * Called if the values of an option could not be matched, because they are
+   * missing, malformed or out of range.
+   * 
+   * @param optionName
+   *        the first name of the option
+   * @param outOfRange
+   *        whether a value has been rejected by the option's range
+   * @param nanos
+   *        time spent on the values, in nanoseconds
+   */
+  void optionFailed(String optionName, boolean outOfRange, long nanos);
+  
+  /**
+   * Called for an argument that does not match any option.
+   * 
+   * @param arg
+   */
+  void argumentUnmatched(String arg);
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright 2011-2013 by Andreas Draeger and Florian Mittag
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.argparser;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link ParseListener} that counts the notifications in {@link LongAdder}s,
+ * so that it can be shared by parsers that match arguments in several threads
+ * at the same time. The counters can be read individually or exported all at
+ * once by {@link #toMap()}.
+ * 
+ * <pre>
+ * ParseMetrics metrics = new ParseMetrics();
+ * parser.setParseListener(metrics);
+ * ...
+ * for (Map.Entry&lt;String, Long&gt; e : metrics.toMap().entrySet()) {
+ *   gauge(e.getKey(), e.getValue());
+ * }
+ * </pre>
+ * 
+ * @see ArgParser#setParseListener(ParseListener)
+ */
+public class ParseMetrics implements ParseListener {
+  
+  /**
+   * Number of matched options, by first option name.
+   */
+  private final ConcurrentMap<String, LongAdder> matches =
+    new ConcurrentHashMap<String, LongAdder>();
+  /**
+   * 
+   */
+  private final LongAdder matched = new LongAdder();
+  /**
+   * 
+   */
+  private final LongAdder failed = new LongAdder();
+  /**
+   * 
+   */
+  private final LongAdder rangeFailures = new LongAdder();
+  /**
+   * 
+   */
+  private final LongAdder unmatched = new LongAdder();
+  /**
+   * 
+   */
+  private final LongAdder conversionNanos = new LongAdder();
+  
+  /*
+   * (non-Javadoc)
+   * 
+   * @see org.argparser.ParseListener#optionMatched(java.lang.String, long)
+   */
+  @Override
+  public void optionMatched(String optionName, long nanos) {
+    LongAdder count = matches.get(optionName);
+    if (count == null) {
+      LongAdder newCount = new LongAdder();
+      count = matches.putIfAbsent(optionName, newCount);
+      if (count == null) {
+        count = newCount;
+      }
+    }
+    count.increment();
+    matched.increment();
+    conversionNanos.add(nanos);
+  }
+  
+  /*
+   * (non-Javadoc)
+   * 
+   * @see org.argparser.ParseListener#optionFailed(java.lang.String, boolean,
+   * long)
+   */
+  @Override
+  public void optionFailed(String optionName, boolean outOfRange, long nanos) {
+    failed.increment();
+    if (outOfRange) {
+      rangeFailures.increment();
+    }
+    conversionNanos.add(nanos);
+  }
+  
+  /*
+   * (non-Javadoc)
+   * 
+   * @see org.argparser.ParseListener#argumentUnmatched(java.lang.String)
+   */
+  @Override
+  public void argumentUnmatched(String arg) {
+    unmatched.increment();
+  }
+  
+  /**
+   * 
+   * @return the number of arguments that have been looked up, i.e., the
+   *         number of options matched or failed plus the number of unmatched
+   *         arguments.
+   */
+  public long getLookups() {
+    return matched.sum() + failed.sum() + unmatched.sum();
+  }
+  
+  /**
+   * 
+   * @return the number of options whose values have been matched.
+   */
+  public long getMatched() {
+    return matched.sum();
+  }
+  
+  /**
+   * 
+   * @param optionName
+   *        the first name of an option
+   * @return the number of times the option has been matched.
+   */
+  public long getMatchCount(String optionName) {
+    LongAdder count = matches.get(optionName);
+    return (count != null) ? count.sum() : 0;
+  }
+  
+  /**
+   * 
+   * @return the number of options whose values could not be matched.
+   */
+  public long getFailed() {
+    return failed.sum();
+  }
+  
+  /**
+   * 
+   * @return the number of options whose values were out of range.
+   */
+  public long getRangeFailures() {
+    return rangeFailures.sum();
+  }
+  
+  /**
+   * 
+   * @return the number of arguments that did not match any option.
+   */
+  public long getUnmatched() {
+    return unmatched.sum();
+  }
+  
+  /**
+   * 
+   * @return the total time spent on converting values, in nanoseconds.
+   */
+  public long getConversionNanos() {
+    return conversionNanos.sum();
+  }
+  
+  /**
+   * Returns all counters, keyed by {@code lookups}, {@code matched},
+   * {@code failed}, {@code rangeFailures}, {@code unmatched},
+   * {@code conversionNanos}, and {@code matches.<option name>} for each
+   * option that has been matched. The counters are read one after the other,
+   * so they need not be consistent with each other while arguments are being
+   * matched.
+   * 
+   * @return a new, unmodifiable map
+   */
+  public Map<String, Long> toMap() {
+    Map<String, Long> map = new LinkedHashMap<String, Long>();
+    map.put("lookups", getLookups());
+    map.put("matched", getMatched());
+    map.put("failed", getFailed());
+    map.put("rangeFailures", getRangeFailures());
+    map.put("unmatched", getUnmatched());
+    map.put("conversionNanos", getConversionNanos());
+    for (Map.Entry<String, LongAdder> e : matches.entrySet()) {
+      map.put("matches." + e.getKey(), e.getValue().sum());
+    }
+    return Collections.unmodifiableMap(map);
+  }
+  
+  /**
+   * Sets all counters to zero.
+   */
+  public void reset() {
+    matches.clear();
+    matched.reset();
+    failed.reset();
+    rangeFailures.reset();
+    unmatched.reset();
+    conversionNanos.reset();
+  }
+  
+  /*
+   * (non-Javadoc)
+   * 
+   * @see java.lang.Object#toString()
+   */
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + toMap();
+  }
+}
@@ -0,0 +1,286 @@
+/*
+ * Copyright 2011-2013 by Andreas Draeger and Florian Mittag
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.argparser;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The outcome of one call of {@link CompiledArgParser#parse(String[])}: the
+ * values of all matched options, the arguments that did not match any option,
+ * and the error message if an erroneous argument stopped the matching.
+ * 
+ * <p>
+ * Values are looked up by any of the option's names and are returned in the
+ * form in which {@link ArgParser} would have stored them in the option's
+ * result holder:
+ * <ul>
+ * <li>a single value ({@code Long}, {@code Integer}, {@code Double},
+ * {@code Float}, {@code Boolean}, {@code Character} or {@code String}) for
+ * options without multiplier,</li>
+ * <li>an array of the appropriate type for options with a multiplier,</li>
+ * <li>a {@link List} of the above, one element per occurrence, for options
+ * whose result holder is a {@link java.util.Vector}.</li>
+ * </ul>
+ * 
+ * <p>
+ * The values of a result returned by
+ * {@link CompiledArgParser#parseLazily(String[], int) parseLazily} are
+ * converted when they are read for the first time.
+ * 
+ * @see CompiledArgParser
+ */
+public class ParseResult {
+  
+  /**
+   * The position of the values of an option that have not been converted yet.
+   * 
+   * @see CompiledArgParser#parseLazily(String[], int)
+   */
+  static final class LazyValue {
+    /**
+     * 
+     */
+    private final OptionIndex.Entry entry;
+    /**
+     * 
+     */
+    private final String[] args;
+    /**
+     * Location of the option name in {@link #args}.
+     */
+    private final int idx;
+    
+    /**
+     * 
+     * @param entry
+     * @param args
+     * @param idx
+     */
+    LazyValue(OptionIndex.Entry entry, String[] args, int idx) {
+      this.entry = entry;
+      this.args = args;
+      this.idx = idx;
+    }
+    
+    /**
+     * 
+     * @return
+     * @throws IllegalArgumentException
+     *         if a value is malformed or out of range
+     */
+    Object convert() throws IllegalArgumentException {
+      return CompiledArgParser.convert(entry, args, idx);
+    }
+  }
+  
+  /**
+   * 
+   */
+  private final CompiledArgParser parser;
+  /**
+   * Values indexed by the position of their record in the match list.
+   */
+  private final Object[] values;
+  /**
+   * 
+   */
+  private List<String> unmatched = null;
+  /**
+   * 
+   */
+  private String errMsg = null;
+  /**
+   * 
+   */
+  private boolean helpRequested = false;
+  
+  /**
+   * 
+   * @param parser
+   */
+  ParseResult(CompiledArgParser parser) {
+    this.parser = parser;
+    this.values = new Object[parser.getRecordCount()];
+  }
+  
+  /**
+   * 
+   * @param recordIndex
+   * @param value
+   * @param append
+   *        if {@code true}, the value is appended to the list of values
+   *        of this record instead of replacing the previous value.
+   */
+  @SuppressWarnings("unchecked")
+  void setValue(int recordIndex, Object value, boolean append) {
+    if (append) {
+      if (values[recordIndex] == null) {
+        values[recordIndex] = new ArrayList<Object>();
+      }
+      ((List<Object>) values[recordIndex]).add(value);
+    } else {
+      values[recordIndex] = value;
+    }
+  }
+  
+  /**
+   * 
+   * @param arg
+   */
+  void addUnmatched(String arg) {
+    if (unmatched == null) {
+      unmatched = new ArrayList<String>();
+    }
+    unmatched.add(arg);
+  }
+  
+  /**
+   * 
+   * @param msg
+   */
+  void setError(String msg) {
+    errMsg = msg;
+  }
+  
+  /**
+   * 
+   */
+  void setHelpRequested() {
+    helpRequested = true;
+  }
+  
+  /**
+   * 
+   * @param recordIndex
+   * @return the value of the record at the given position in the match list,
+   *         unconverted if it has been matched lazily.
+   */
+  Object getValueAt(int recordIndex) {
+    return values[recordIndex];
+  }
+  
+  /**
+   * 
+   * @param name
+   * @return the position of the record of the given name
+   * @throws IllegalArgumentException
+   *         if the parser has no option of that name
+   */
+  private int recordIndex(String name) throws IllegalArgumentException {
+    OptionIndex.Entry entry = parser.getIndex().lookupName(name);
+    if (entry == null) { throw new IllegalArgumentException("Unknown option "
+        + name); }
+    return entry.recordIndex;
+  }
+  
+  /**
+   * Returns the value of an option.
+   * 
+   * @param name
+   *        any of the option's names
+   * @return the value, or {@code null} if the option has not been matched
+   * @throws IllegalArgumentException
+   *         if the parser has no option of that name, or if the value has
+   *         been matched lazily and turns out to be malformed or out of range
+   */
+  @SuppressWarnings("unchecked")
+  public Object getValue(String name) throws IllegalArgumentException {
+    int i = recordIndex(name);
+    Object value = values[i];
+    if (value instanceof LazyValue) {
+      values[i] = value = ((LazyValue) value).convert();
+    } else if (value instanceof List<?>) {
+      List<Object> list = (List<Object>) value;
+      for (int k = 0; k < list.size(); k++) {
+        if (list.get(k) instanceof LazyValue) {
+          list.set(k, ((LazyValue) list.get(k)).convert());
+        }
+      }
+    }
+    return value;
+  }
+  
+  /**
+   * Returns the value of an option, cast to the given type.
+   * 
+   * @param name
+   *        any of the option's names
+   * @param type
+   *        expected type of the value
+   * @return the value, or {@code null} if the option has not been matched
+   * @throws IllegalArgumentException
+   *         if the parser has no option of that name
+   * @throws ClassCastException
+   *         if the value is not of the given type
+   */
+  public <T> T getValue(String name, Class<T> type)
+    throws IllegalArgumentException {
+    return type.cast(getValue(name));
+  }
+  
+  /**
+   * Indicates whether or not an option has been matched.
+   * 
+   * @param name
+   *        any of the option's names
+   * @return
+   * @throws IllegalArgumentException
+   *         if the parser has no option of that name
+   */
+  public boolean isSet(String name) throws IllegalArgumentException {
+    return values[recordIndex(name)] != null;
+  }
+  
+  /**
+   * Returns the arguments that did not match any option, in the order in
+   * which they appeared.
+   * 
+   * @return unmatched arguments, an empty array if there were none
+   */
+  public String[] getUnmatchedArguments() {
+    if (unmatched == null) { return new String[0]; }
+    return unmatched.toArray(new String[unmatched.size()]);
+  }
+  
+  /**
+   * Returns the message of the error that stopped the matching.
+   * 
+   * @return error message, or {@code null} if there was no error
+   */
+  public String getErrorMessage() {
+    return errMsg;
+  }
+  
+  /**
+   * 
+   * @return {@code true} if an erroneous argument stopped the matching
+   */
+  public boolean hasError() {
+    return errMsg != null;
+  }
+  
+  /**
+   * Indicates whether one of the arguments matched an (enabled) help option.
+   * 
+   * @return
+   * @see CompiledArgParser#getHelpMessage()
+   */
+  public boolean isHelpRequested() {
+    return helpRequested;
+  }
+}
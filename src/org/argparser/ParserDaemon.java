@@ -0,0 +1,433 @@
+/*
+ * Copyright 2011-2013 by Andreas Draeger and Florian Mittag
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.argparser;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * A long-lived process that holds the compiled parsers of several tools and
+ * matches argument lists sent to it over a Unix domain socket. Invoking a tool
+ * then costs one round trip to the daemon instead of starting a JVM and
+ * compiling the option specifications every time. The daemon only listens on
+ * a socket file in the local file system; access to it is controlled by the
+ * permissions of that file and of its directory.
+ * 
+ * <pre>
+ * ParserDaemon daemon = new ParserDaemon(Paths.get(&quot;tools.sock&quot;));
+ * daemon.register(&quot;build&quot;, createBuildParser());
+ * daemon.register(&quot;deploy&quot;, createDeployParser());
+ * daemon.serve();
+ * </pre>
+ * 
+ * The parsers are compiled by {@link ArgParser#compile()} when they are
+ * registered, so that any number of requests can be matched concurrently.
+ * Every connection is served by a virtual thread if the Java runtime has them,
+ * and by a pooled daemon thread otherwise. A connection may carry any number
+ * of requests.
+ * 
+ * <p>
+ * Requests and responses are frames of a big-endian {@code int} length
+ * followed by that many bytes. A request contains the tool's name and the
+ * number of arguments, followed by the arguments; a response is described by
+ * {@link DaemonResponse}. Strings are stored as their length in UTF-8 bytes
+ * followed by these bytes, so that clients are easily written in any
+ * language. {@link #send(Path, String, String[])} is such a client, and
+ * {@link #main(String[])} forwards the arguments of a command line.
+ * 
+ * @see CompiledArgParser
+ * @see DaemonResponse
+ */
+public final class ParserDaemon implements Closeable {
+  
+  /**
+   * Upper bound of the length of a frame, which protects the daemon from
+   * allocating huge buffers for corrupt requests.
+   */
+  static final int MAX_FRAME = 1 << 24;
+  
+  /**
+   * 
+   */
+  private final Path socketPath;
+  /**
+   * 
+   */
+  private final Map<String, CompiledArgParser> tools;
+  /**
+   * {@code null} until {@link #bind()} is called.
+   */
+  private volatile ServerSocketChannel server = null;
+  /**
+   * 
+   */
+  private volatile boolean closed = false;
+  
+  /**
+   * 
+   * @param socketPath
+   *        the socket file to listen on; it must not exist unless it is the
+   *        leftover of a daemon that is no longer running
+   */
+  public ParserDaemon(Path socketPath) {
+    this.socketPath = socketPath;
+    this.tools = new ConcurrentHashMap<String, CompiledArgParser>();
+  }
+  
+  /**
+   * Compiles the parser of a tool and registers it under the tool's name,
+   * replacing the parser registered before, if any. Later changes of the
+   * parser are not seen by the daemon.
+   * 
+   * @param tool
+   * @param parser
+   * @throws IllegalStateException
+   *         if subcommands have been added to the parser
+   */
+  public void register(String tool, ArgParser parser)
+    throws IllegalStateException {
+    tools.put(tool, parser.compile());
+  }
+  
+  /**
+   * Registers a compiled parser under the name of a tool.
+   * 
+   * @param tool
+   * @param parser
+   */
+  public void register(String tool, CompiledArgParser parser) {
+    tools.put(tool, parser);
+  }
+  
+  /**
+   * Creates the socket file, unless this has happened before. Clients can
+   * connect as soon as this method returns, although their requests are only
+   * answered once {@link #serve()} is called.
+   * 
+   * @throws IOException
+   *         if the socket cannot be created
+   */
+  public synchronized void bind() throws IOException {
+    if (server != null) { return; }
+    ServerSocketChannel channel = ServerSocketChannel
+        .open(StandardProtocolFamily.UNIX);
+    try {
+      removeStaleSocket(socketPath);
+      channel.bind(UnixDomainSocketAddress.of(socketPath));
+    } catch (IOException e) {
+      channel.close();
+      throw e;
+    }
+    server = channel;
+  }
+  
+  /**
+   * Serves connections until {@link #close()} is called, creating the socket
+   * file first if {@link #bind()} has not been called.
+   * 
+   * @throws IOException
+   *         if the socket cannot be created or accepting a connection fails
+   */
+  public void serve() throws IOException {
+    bind();
+    ServerSocketChannel channel = server;
+    ExecutorService executor = newExecutor();
+    try {
+      while (!closed) {
+        final SocketChannel client = channel.accept();
+        executor.execute(new Runnable() {
+          /*
+           * (non-Javadoc)
+           * @see java.lang.Runnable#run()
+           */
+          @Override
+          public void run() {
+            serve(client);
+          }
+        });
+      }
+    } catch (ClosedChannelException e) {
+      // closed by close()
+    } finally {
+      channel.close();
+      executor.shutdown();
+      Files.deleteIfExists(socketPath);
+    }
+  }
+  
+  /**
+   * Answers the requests of one connection until the client closes it.
+   * 
+   * @param client
+   */
+  private void serve(SocketChannel client) {
+    try {
+      ByteBuffer request;
+      while ((request = readFrame(client)) != null) {
+        writeFrame(client, respond(request));
+      }
+    } catch (IOException e) {
+      // the client went away or sent garbage; nothing to answer
+    } finally {
+      try {
+        client.close();
+      } catch (IOException e) {
+        // nothing left to do
+      }
+    }
+  }
+  
+  /**
+   * Matches the arguments of a request with the parser of its tool.
+   * 
+   * @param request
+   * @return the encoded {@link DaemonResponse}
+   * @throws IOException
+   *         if the request is malformed
+   */
+  byte[] respond(ByteBuffer request) throws IOException {
+    String tool;
+    String[] args;
+    try {
+      tool = ParserSnapshot.getString(request);
+      args = new String[ParserSnapshot.getCount(request)];
+      for (int i = 0; i < args.length; i++) {
+        args[i] = ParserSnapshot.getString(request);
+      }
+    } catch (RuntimeException e) {
+      throw new IOException("Malformed request", e);
+    }
+    CompiledArgParser parser = (tool == null) ? null : tools.get(tool);
+    if (parser == null) { return DaemonResponse.encode(DaemonResponse.ERROR,
+      "Unknown tool " + tool); }
+    return DaemonResponse.encode(parser, parser.parse(args));
+  }
+  
+  /**
+   * Stops serving connections and removes the socket file. Requests that are
+   * being answered are completed.
+   * 
+   * @throws IOException
+   */
+  @Override
+  public void close() throws IOException {
+    closed = true;
+    ServerSocketChannel channel = server;
+    if (channel != null) {
+      channel.close();
+    }
+  }
+  
+  /**
+   * Sends an argument list to a daemon and waits for its response.
+   * 
+   * @param socketPath
+   *        the socket file of the daemon
+   * @param tool
+   *        the name under which the tool's parser is registered
+   * @param args
+   * @return
+   * @throws IOException
+   *         if the daemon cannot be reached or does not answer
+   */
+  public static DaemonResponse send(Path socketPath, String tool, String[] args)
+    throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    ParserSnapshot.putString(out, tool);
+    out.writeInt(args.length);
+    for (String arg : args) {
+      ParserSnapshot.putString(out, arg);
+    }
+    out.close();
+    SocketChannel channel = SocketChannel.open(UnixDomainSocketAddress
+        .of(socketPath));
+    try {
+      writeFrame(channel, bytes.toByteArray());
+      ByteBuffer response = readFrame(channel);
+      if (response == null) { throw new EOFException(
+        "Daemon closed the connection"); }
+      return DaemonResponse.decode(response);
+    } finally {
+      channel.close();
+    }
+  }
+  
+  /**
+   * Forwards a command line to a daemon: {@code ParserDaemon socket tool
+   * args...}. The help or error message is printed to standard output or
+   * standard error; otherwise, every matched option is printed on one line,
+   * its name followed by its values, and every unmatched argument on a line of
+   * its own, separated by tabs. The exit code is 0 unless the arguments are
+   * erroneous.
+   * 
+   * @param args
+   * @throws IOException
+   *         if the daemon cannot be reached
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length < 2) {
+      System.err.println("Usage: ParserDaemon socket tool [args ...]");
+      System.exit(2);
+    }
+    String[] toolArgs = new String[args.length - 2];
+    System.arraycopy(args, 2, toolArgs, 0, toolArgs.length);
+    DaemonResponse response = send(Paths.get(args[0]), args[1], toolArgs);
+    if (response.getStatus() == DaemonResponse.ERROR) {
+      System.err.println(response.getText());
+      System.exit(1);
+    }
+    PrintStream out = System.out;
+    if (response.getStatus() == DaemonResponse.HELP) {
+      out.print(response.getText());
+      return;
+    }
+    StringBuilder line = new StringBuilder();
+    for (String name : response.getOptionNames()) {
+      line.setLength(0);
+      line.append(name);
+      for (String value : response.getValues(name)) {
+        line.append('\t').append(value);
+      }
+      out.println(line);
+    }
+    for (String arg : response.getUnmatchedArguments()) {
+      out.println("\t" + arg);
+    }
+  }
+  
+  /**
+   * Creates the executor for the connections: one virtual thread per
+   * connection on runtimes that have them, otherwise a pool of daemon
+   * threads. The virtual thread executor is looked up reflectively, so that
+   * this class also loads on older runtimes.
+   * 
+   * @return
+   */
+  static ExecutorService newExecutor() {
+    try {
+      return (ExecutorService) Executors.class.getMethod(
+        "newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (ReflectiveOperationException e) {
+      return Executors.newCachedThreadPool(new ThreadFactory() {
+        /*
+         * (non-Javadoc)
+         * @see java.util.concurrent.ThreadFactory#newThread(java.lang.Runnable)
+         */
+        @Override
+        public Thread newThread(Runnable r) {
+          Thread thread = new Thread(r, "ParserDaemon");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
+  }
+  
+  /**
+   * Deletes a socket file that is left over from a daemon that did not shut
+   * down properly. A socket file on which a daemon still accepts connections
+   * is not touched, so that binding to it fails.
+   * 
+   * @param socketPath
+   * @throws IOException
+   */
+  private static void removeStaleSocket(Path socketPath) throws IOException {
+    if (!Files.exists(socketPath)) { return; }
+    try {
+      SocketChannel.open(UnixDomainSocketAddress.of(socketPath)).close();
+    } catch (IOException e) {
+      // nobody is listening
+      Files.deleteIfExists(socketPath);
+    }
+  }
+  
+  /**
+   * 
+   * @param channel
+   * @return the content of the next frame, or {@code null} if the channel has
+   *         been closed before it
+   * @throws IOException
+   *         if the channel has been closed within the frame, or the frame is
+   *         too long
+   */
+  static ByteBuffer readFrame(ReadableByteChannel channel) throws IOException {
+    ByteBuffer length = ByteBuffer.allocate(4);
+    if (!readFully(channel, length)) {
+      if (length.position() == 0) { return null; }
+      throw new EOFException();
+    }
+    int n = length.getInt(0);
+    if ((n < 0) || (n > MAX_FRAME)) { throw new IOException(
+      "Invalid frame length " + n); }
+    ByteBuffer frame = ByteBuffer.allocate(n);
+    if (!readFully(channel, frame)) { throw new EOFException(); }
+    frame.flip();
+    return frame;
+  }
+  
+  /**
+   * 
+   * @param channel
+   * @param buf
+   * @return {@code false} if the channel has been closed before the buffer
+   *         was filled
+   * @throws IOException
+   */
+  private static boolean readFully(ReadableByteChannel channel, ByteBuffer buf)
+    throws IOException {
+    while (buf.hasRemaining()) {
+      if (channel.read(buf) < 0) { return false; }
+    }
+    return true;
+  }
+  
+  /**
+   * 
+   * @param channel
+   * @param data
+   * @throws IOException
+   */
+  static void writeFrame(WritableByteChannel channel, byte[] data)
+    throws IOException {
+    ByteBuffer buf = ByteBuffer.allocate(4 + data.length);
+    buf.putInt(data.length).put(data).flip();
+    while (buf.hasRemaining()) {
+      channel.write(buf);
+    }
+  }
+}
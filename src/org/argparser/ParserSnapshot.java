@@ -0,0 +1,261 @@
+/*
+ * Copyright 2011-2013 by Andreas Draeger and Florian Mittag
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.argparser;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Helpers for the binary snapshot files written and read by
+ * {@link ArgParser#addOptions(String[], Object[], File)}.
+ * 
+ * <p>
+ * A snapshot starts with {@link #MAGIC}, followed by the hash of the option
+ * specifications and result holders it was created from, the key of the help
+ * layout, the records of the options including their compiled ranges and,
+ * last, the rendered help message.
+ * All numbers are big-endian, as written by {@link DataOutputStream}, and
+ * strings are stored as their length in UTF-8 bytes (-1 for {@code null})
+ * followed by these bytes.
+ */
+final class ParserSnapshot {
+  
+  /**
+   * Identifies the file format and its version.
+   */
+  static final int MAGIC = 0x41505302;
+  
+  /**
+   * 
+   */
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+  
+  /**
+   * Offset basis of the 64 bit FNV-1a hash.
+   */
+  private static final long FNV_BASIS = 0xcbf29ce484222325L;
+  
+  /**
+   * 
+   */
+  private static final long FNV_PRIME = 0x100000001b3L;
+  
+  /**
+   * 
+   */
+  private ParserSnapshot() {
+  }
+  
+  /**
+   * 
+   * @return the initial value of a hash.
+   */
+  static long hash() {
+    return FNV_BASIS;
+  }
+  
+  /**
+   * Adds a string to a hash. Unlike in FNV-1a, whole characters instead of
+   * bytes are hashed, and the string is terminated by a value that no
+   * character can have.
+   * 
+   * @param h
+   * @param s
+   *        may be {@code null}
+   * @return
+   */
+  static long hash(long h, String s) {
+    if (s != null) {
+      for (int i = 0; i < s.length(); i++) {
+        h = (h ^ s.charAt(i)) * FNV_PRIME;
+      }
+    }
+    return (h ^ 0x10000) * FNV_PRIME;
+  }
+  
+  /**
+   * Computes the hash that identifies the records created from option
+   * specifications and result holders. As the type of a record depends on
+   * its result holder, the kind of each holder is included.
+   * 
+   * @param specs
+   * @param resHolders
+   * @return
+   */
+  static long hash(String[] specs, Object[] resHolders) {
+    long h = hash();
+    for (int i = 0; i < specs.length; i++) {
+      h = hash(h, specs[i]);
+      h = hashHolder(h, resHolders[i]);
+    }
+    return h;
+  }
+  
+  /**
+   * Adds all properties of a result holder that are checked by
+   * {@link ArgParser#addOption(String, Object, boolean)} to a hash. Strings
+   * are not concatenated, as the first concatenation takes several
+   * milliseconds in a freshly started JVM.
+   * 
+   * @param h
+   * @param resHolder
+   * @return
+   */
+  private static long hashHolder(long h, Object resHolder) {
+    if (resHolder == null) { return hash(h, null); }
+    h = hash(h, resHolder.getClass().getName());
+    if (resHolder instanceof ArgHolder<?>) {
+      h = hash(h, ((ArgHolder<?>) resHolder).getType().getName());
+    } else if (resHolder.getClass().isArray()) {
+      h = hash(h, Array.getLength(resHolder));
+    } else if (resHolder instanceof ValueList) {
+      h = hash(h, ((ValueList) resHolder).getWidth());
+    }
+    return h;
+  }
+  
+  /**
+   * 
+   * @param h
+   * @param n
+   * @return
+   */
+  private static long hash(long h, int n) {
+    return (h ^ (n & 0xffffffffL)) * FNV_PRIME;
+  }
+  
+  /**
+   * Reads a snapshot file with a single read. Mapping the file would avoid the
+   * copy, but for files as small as snapshots, setting up the mapping takes
+   * much longer than reading them, especially in a freshly started JVM.
+   * 
+   * @param file
+   * @return the contents of the file, or {@code null} if it does not exist or
+   *         cannot be read.
+   */
+  static ByteBuffer read(File file) {
+    if (!file.isFile()) { return null; }
+    try {
+      RandomAccessFile raf = new RandomAccessFile(file, "r");
+      try {
+        long length = raf.length();
+        if (length > Integer.MAX_VALUE) { return null; }
+        byte[] data = new byte[(int) length];
+        raf.readFully(data);
+        return ByteBuffer.wrap(data);
+      } finally {
+        raf.close();
+      }
+    } catch (IOException e) {
+      return null;
+    }
+  }
+  
+  /**
+   * 
+   * @param out
+   * @param s
+   *        may be {@code null}
+   * @throws IOException
+   */
+  static void putString(DataOutputStream out, String s) throws IOException {
+    if (s == null) {
+      out.writeInt(-1);
+    } else {
+      byte[] bytes = s.getBytes(UTF8);
+      out.writeInt(bytes.length);
+      out.write(bytes);
+    }
+  }
+  
+  /**
+   * 
+   * @param in
+   * @return a string written by {@link #putString(DataOutputStream, String)}.
+   */
+  static String getString(ByteBuffer in) {
+    int length = in.getInt();
+    if (length == -1) { return null; }
+    if ((length < 0) || (length > in.remaining())) { throw new IllegalArgumentException(
+      "Invalid string length " + length); }
+    byte[] bytes = new byte[length];
+    in.get(bytes);
+    return new String(bytes, UTF8);
+  }
+  
+  /**
+   * Reads the number of strings that follow. Every string takes at least four
+   * bytes, so a count that does not fit in the rest of the buffer is rejected
+   * before an array for it is allocated.
+   * 
+   * @param in
+   * @return the count
+   */
+  static int getCount(ByteBuffer in) {
+    return checkCount(in, in.getInt(), 4);
+  }
+  
+  /**
+   * Checks the number of elements that follow in a buffer, so that a
+   * corrupted count is rejected before an array for it is allocated.
+   * 
+   * @param in
+   * @param count
+   * @param elementSize
+   *        the smallest number of bytes of an element
+   * @return the count
+   */
+  static int checkCount(ByteBuffer in, int count, int elementSize) {
+    if ((count < 0) || (count > in.remaining() / elementSize)) { throw new IllegalArgumentException(
+      "Invalid count " + count); }
+    return count;
+  }
+  
+  /**
+   * Replaces the contents of a snapshot file. The data is written to a
+   * temporary file first, which is then moved in place, so that a concurrent
+   * reader never sees a partially written snapshot.
+   * 
+   * @param file
+   * @param data
+   * @throws IOException
+   */
+  static void replace(File file, byte[] data) throws IOException {
+    File dir = file.getAbsoluteFile().getParentFile();
+    File tmp = File.createTempFile(file.getName(), ".tmp", dir);
+    try {
+      FileOutputStream out = new FileOutputStream(tmp);
+      try {
+        out.write(data);
+      } finally {
+        out.close();
+      }
+      Files.move(tmp.toPath(), file.toPath(),
+        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      tmp.delete();
+    }
+  }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2011-2013 by Andreas Draeger and Florian Mittag
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.argparser;
+
+/**
+ * Base class of the result holders that store the value of an option in a
+ * primitive field instead of a boxed object: {@link IntArgHolder},
+ * {@link LongArgHolder}, {@link FloatArgHolder}, {@link DoubleArgHolder},
+ * {@link BooleanArgHolder} and {@link CharArgHolder}. {@link ArgParser} writes
+ * into these fields directly, and the application reads them with the
+ * holder's {@code getAs...()} method, so that matching an option does not
+ * allocate any object, whatever its value. The methods inherited from
+ * {@link ArgHolder} keep working and box the value on demand.
+ * 
+ * @param <V>
+ *        the boxed type of the value
+ * @see ArgParser#addOption(String, Object)
+ */
+public abstract class PrimitiveArgHolder<V> extends ArgHolder<V> {
+  
+  /**
+   * Generated serial version identifier.
+   */
+  private static final long serialVersionUID = -2006616804733833421L;
+  
+  /**
+   * Whether a value has been set.
+   */
+  private boolean isSet = false;
+  
+  /**
+   * Creates a holder without a default value.
+   * 
+   * @param clazz
+   *        the boxed type of the value
+   */
+  protected PrimitiveArgHolder(Class<V> clazz) {
+    super(clazz);
+  }
+  
+  /**
+   * Creates a holder with the given default value.
+   * 
+   * @param defaultValue
+   *        must not be null
+   */
+  protected PrimitiveArgHolder(V defaultValue) {
+    super(defaultValue);
+  }
+  
+  /**
+   * 
+   * @return the value, boxed.
+   */
+  abstract V box();
+  
+  /**
+   * Sets the primitive value.
+   * 
+   * @param value
+   *        must not be null
+   */
+  abstract void unbox(V value);
+  
+  /**
+   * Marks the value as set, to be called by the primitive setters of the
+   * subclasses.
+   */
+  void markSet() {
+    isSet = true;
+  }
+  
+  /*
+   * (non-Javadoc)
+   * 
+   * @see org.argparser.ArgHolder#getValue()
+   */
+  @Override
+  public V getValue() {
+    return isSet ? box() : null;
+  }
+  
+  /*
+   * (non-Javadoc)
+   * 
+   * @see org.argparser.ArgHolder#isSetValue()
+   */
+  @Override
+  public boolean isSetValue() {
+    return isSet;
+  }
+  
+  /*
+   * (non-Javadoc)
+   * 
+   * @see org.argparser.ArgHolder#setValue(java.lang.Object)
+   */
+  @Override
+  public void setValue(V value) {
+    if (value == null) {
+      isSet = false;
+    } else {
+      unbox(value);
+      isSet = true;
+    }
+  }
+}
@@ -0,0 +1,539 @@
+/*
+ * Copyright 2011-2013 by Andreas Draeger and Florian Mittag
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.argparser;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The range of an option, compiled from its list of {@link ArgParser.RangeAtom
+ * range atoms} into a structure that checks a value without visiting every
+ * atom:
+ * <ul>
+ * <li>character ranges ({@code %c}) become a {@link BitSet},</li>
+ * <li>integer ranges become sorted, disjoint, closed intervals, which are
+ * searched by bisection; single values are intervals of length one,</li>
+ * <li>floating point ranges become sorted, disjoint intervals with open or
+ * closed bounds, also searched by bisection,</li>
+ * <li>single strings are put into a hash set, and string subranges are
+ * treated like floating point ones.</li>
+ * </ul>
+ * Overlapping and touching intervals are merged. A value is accepted if and
+ * only if it matches one of the range atoms.
+ * 
+ * @see ArgParser.Record#withinRange(long)
+ */
+final class RangeIndex {
+  
+  /**
+   * An interval with open or closed bounds, used while the index is built.
+   * 
+   * @param <T>
+   */
+  private static final class Interval<T extends Comparable<T>> implements
+      Comparable<Interval<T>> {
+    T low;
+    boolean lowClosed;
+    T high;
+    boolean highClosed;
+    
+    /**
+     * 
+     * @param low
+     * @param lowClosed
+     * @param high
+     * @param highClosed
+     */
+    Interval(T low, boolean lowClosed, T high, boolean highClosed) {
+      this.low = low;
+      this.lowClosed = lowClosed;
+      this.high = high;
+      this.highClosed = highClosed;
+    }
+    
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.lang.Comparable#compareTo(java.lang.Object)
+     */
+    @Override
+    public int compareTo(Interval<T> o) {
+      int cmp = low.compareTo(o.low);
+      if (cmp != 0) { return cmp; }
+      return (lowClosed == o.lowClosed) ? 0 : (lowClosed ? -1 : 1);
+    }
+  }
+  
+  /**
+   * Set of characters for ranges of type {@link ArgParser.Record#CHAR}.
+   */
+  private final BitSet chars;
+  /**
+   * Closed bounds of the intervals for ranges of type
+   * {@link ArgParser.Record#INT} or {@link ArgParser.Record#LONG}.
+   */
+  private final long[] lows, highs;
+  /**
+   * Bounds of the intervals for ranges of type
+   * {@link ArgParser.Record#FLOAT} or {@link ArgParser.Record#DOUBLE}.
+   */
+  private final double[] dlows, dhighs;
+  /**
+   * Single values of ranges of type {@link ArgParser.Record#STRING}.
+   */
+  private final Set<String> strings;
+  /**
+   * Bounds of the subranges of ranges of type
+   * {@link ArgParser.Record#STRING}.
+   */
+  private final String[] slows, shighs;
+  /**
+   * Whether the bounds in {@link #dlows} and {@link #dhighs}, or
+   * {@link #slows} and {@link #shighs}, are closed.
+   */
+  private final boolean[] lowClosed, highClosed;
+  /**
+   * Accepted values for ranges of type {@link ArgParser.Record#BOOLEAN}.
+   */
+  private final boolean acceptTrue, acceptFalse;
+  
+  /**
+   * Compiles a list of range atoms.
+   * 
+   * @param first
+   *        the first atom of the list
+   * @param type
+   *        the type of the option's values
+   */
+  RangeIndex(ArgParser.RangeAtom first, int type) {
+    BitSet chars = null;
+    List<long[]> ints = new ArrayList<long[]>();
+    List<Interval<Double>> doubles = new ArrayList<Interval<Double>>();
+    List<Interval<String>> subranges = new ArrayList<Interval<String>>();
+    Set<String> strings = null;
+    boolean acceptTrue = false, acceptFalse = false;
+    
+    for (ArgParser.RangeAtom ra = first; ra != null; ra = ra.getNext()) {
+      ArgParser.RangePnt low = ra.getLow();
+      ArgParser.RangePnt high = ra.getHigh();
+      switch (type) {
+        case ArgParser.Record.CHAR:
+        case ArgParser.Record.INT:
+        case ArgParser.Record.LONG: {
+          long[] interval = closedInterval(ra);
+          if (interval != null) {
+            ints.add(interval);
+          }
+          break;
+        }
+        case ArgParser.Record.FLOAT:
+        case ArgParser.Record.DOUBLE: {
+          // -0.0 equals 0.0 for the atoms, but not for Double.compareTo
+          Double lo = Double.valueOf(low.dval + 0d);
+          if (high == null) {
+            doubles.add(new Interval<Double>(lo, true, lo, true));
+          } else {
+            addInterval(doubles, new Interval<Double>(lo, low.getClosed(),
+              Double.valueOf(high.dval + 0d), high.getClosed()));
+          }
+          break;
+        }
+        case ArgParser.Record.STRING: {
+          if (high == null) {
+            if (strings == null) {
+              strings = new HashSet<String>();
+            }
+            strings.add(low.sval);
+          } else {
+            addInterval(subranges, new Interval<String>(low.sval, low
+                .getClosed(), high.sval, high.getClosed()));
+          }
+          break;
+        }
+        case ArgParser.Record.BOOLEAN: {
+          if (low.bval) {
+            acceptTrue = true;
+          } else {
+            acceptFalse = true;
+          }
+          break;
+        }
+      }
+    }
+    
+    if (type == ArgParser.Record.CHAR) {
+      chars = new BitSet();
+      for (long[] interval : ints) {
+        long lo = Math.max(interval[0], Character.MIN_VALUE);
+        long hi = Math.min(interval[1], Character.MAX_VALUE);
+        if (lo <= hi) {
+          chars.set((int) lo, (int) hi + 1);
+        }
+      }
+      ints.clear();
+    }
+    ints = mergeClosed(ints);
+    this.lows = new long[ints.size()];
+    this.highs = new long[ints.size()];
+    for (int i = 0; i < ints.size(); i++) {
+      lows[i] = ints.get(i)[0];
+      highs[i] = ints.get(i)[1];
+    }
+    doubles = merge(doubles);
+    subranges = merge(subranges);
+    int n = Math.max(doubles.size(), subranges.size());
+    this.lowClosed = new boolean[n];
+    this.highClosed = new boolean[n];
+    this.dlows = new double[doubles.size()];
+    this.dhighs = new double[doubles.size()];
+    for (int i = 0; i < doubles.size(); i++) {
+      Interval<Double> interval = doubles.get(i);
+      dlows[i] = interval.low.doubleValue();
+      dhighs[i] = interval.high.doubleValue();
+      lowClosed[i] = interval.lowClosed;
+      highClosed[i] = interval.highClosed;
+    }
+    this.slows = new String[subranges.size()];
+    this.shighs = new String[subranges.size()];
+    for (int i = 0; i < subranges.size(); i++) {
+      Interval<String> interval = subranges.get(i);
+      slows[i] = interval.low;
+      shighs[i] = interval.high;
+      lowClosed[i] = interval.lowClosed;
+      highClosed[i] = interval.highClosed;
+    }
+    this.chars = chars;
+    this.strings = strings;
+    this.acceptTrue = acceptTrue;
+    this.acceptFalse = acceptFalse;
+  }
+  
+  /**
+   * 
+   * @param chars
+   * @param lows
+   * @param highs
+   * @param dlows
+   * @param dhighs
+   * @param strings
+   * @param slows
+   * @param shighs
+   * @param lowClosed
+   * @param highClosed
+   * @param acceptTrue
+   * @param acceptFalse
+   * @see #read(ByteBuffer)
+   */
+  private RangeIndex(BitSet chars, long[] lows, long[] highs, double[] dlows,
+    double[] dhighs, Set<String> strings, String[] slows, String[] shighs,
+    boolean[] lowClosed, boolean[] highClosed, boolean acceptTrue,
+    boolean acceptFalse) {
+    this.chars = chars;
+    this.lows = lows;
+    this.highs = highs;
+    this.dlows = dlows;
+    this.dhighs = dhighs;
+    this.strings = strings;
+    this.slows = slows;
+    this.shighs = shighs;
+    this.lowClosed = lowClosed;
+    this.highClosed = highClosed;
+    this.acceptTrue = acceptTrue;
+    this.acceptFalse = acceptFalse;
+  }
+  
+  /**
+   * Writes the compiled range to a snapshot.
+   * 
+   * @param out
+   * @throws IOException
+   * @see ParserSnapshot
+   */
+  void write(DataOutputStream out) throws IOException {
+    long[] words = (chars == null) ? null : chars.toLongArray();
+    out.writeInt((words == null) ? -1 : words.length);
+    for (int i = 0; (words != null) && (i < words.length); i++) {
+      out.writeLong(words[i]);
+    }
+    out.writeInt(lows.length);
+    for (int i = 0; i < lows.length; i++) {
+      out.writeLong(lows[i]);
+      out.writeLong(highs[i]);
+    }
+    out.writeInt(dlows.length);
+    for (int i = 0; i < dlows.length; i++) {
+      out.writeDouble(dlows[i]);
+      out.writeDouble(dhighs[i]);
+    }
+    out.writeInt((strings == null) ? -1 : strings.size());
+    if (strings != null) {
+      for (String str : strings) {
+        ParserSnapshot.putString(out, str);
+      }
+    }
+    out.writeInt(slows.length);
+    for (int i = 0; i < slows.length; i++) {
+      ParserSnapshot.putString(out, slows[i]);
+      ParserSnapshot.putString(out, shighs[i]);
+    }
+    out.writeInt(lowClosed.length);
+    for (int i = 0; i < lowClosed.length; i++) {
+      out.writeBoolean(lowClosed[i]);
+      out.writeBoolean(highClosed[i]);
+    }
+    out.writeBoolean(acceptTrue);
+    out.writeBoolean(acceptFalse);
+  }
+  
+  /**
+   * Reads a compiled range written by {@link #write(DataOutputStream)}.
+   * 
+   * @param in
+   * @return
+   * @throws IllegalArgumentException
+   *         if an array size does not fit in the rest of the buffer
+   */
+  static RangeIndex read(ByteBuffer in) {
+    BitSet chars = null;
+    int n = in.getInt();
+    if (n >= 0) {
+      long[] words = new long[ParserSnapshot.checkCount(in, n, 8)];
+      for (int i = 0; i < n; i++) {
+        words[i] = in.getLong();
+      }
+      chars = BitSet.valueOf(words);
+    }
+    n = ParserSnapshot.checkCount(in, in.getInt(), 16);
+    long[] lows = new long[n], highs = new long[n];
+    for (int i = 0; i < n; i++) {
+      lows[i] = in.getLong();
+      highs[i] = in.getLong();
+    }
+    n = ParserSnapshot.checkCount(in, in.getInt(), 16);
+    double[] dlows = new double[n], dhighs = new double[n];
+    for (int i = 0; i < n; i++) {
+      dlows[i] = in.getDouble();
+      dhighs[i] = in.getDouble();
+    }
+    Set<String> strings = null;
+    n = in.getInt();
+    if (n >= 0) {
+      ParserSnapshot.checkCount(in, n, 4);
+      strings = new HashSet<String>();
+      for (int i = 0; i < n; i++) {
+        strings.add(ParserSnapshot.getString(in));
+      }
+    }
+    n = ParserSnapshot.checkCount(in, in.getInt(), 8);
+    String[] slows = new String[n], shighs = new String[n];
+    for (int i = 0; i < n; i++) {
+      slows[i] = ParserSnapshot.getString(in);
+      shighs[i] = ParserSnapshot.getString(in);
+    }
+    n = ParserSnapshot.checkCount(in, in.getInt(), 2);
+    boolean[] lowClosed = new boolean[n], highClosed = new boolean[n];
+    for (int i = 0; i < n; i++) {
+      lowClosed[i] = (in.get() != 0);
+      highClosed[i] = (in.get() != 0);
+    }
+    boolean acceptTrue = (in.get() != 0);
+    boolean acceptFalse = (in.get() != 0);
+    return new RangeIndex(chars, lows, highs, dlows, dhighs, strings, slows,
+      shighs, lowClosed, highClosed, acceptTrue, acceptFalse);
+  }
+  
+  /**
+   * 
+   * @param ra
+   *        an atom of an integer or character range
+   * @return the closed bounds of the integers matched by the atom, or
+   *         {@code null} if it matches none.
+   */
+  private static long[] closedInterval(ArgParser.RangeAtom ra) {
+    ArgParser.RangePnt low = ra.getLow();
+    ArgParser.RangePnt high = ra.getHigh();
+    if (high == null) { return new long[] { low.lval, low.lval }; }
+    if (low.lval == high.lval) {
+      // the atoms match a single value if at least one bound is closed
+      if (low.getClosed() || high.getClosed()) { return new long[] {
+          low.lval, low.lval }; }
+      return null;
+    }
+    if ((!low.getClosed() && low.lval == Long.MAX_VALUE)
+        || (!high.getClosed() && high.lval == Long.MIN_VALUE)) { return null; }
+    long lo = low.getClosed() ? low.lval : low.lval + 1;
+    long hi = high.getClosed() ? high.lval : high.lval - 1;
+    return (lo <= hi) ? new long[] { lo, hi } : null;
+  }
+  
+  /**
+   * Adds an interval of a floating point or string range. An interval whose
+   * bounds are equal matches that value if at least one bound is closed, and
+   * nothing otherwise.
+   * 
+   * @param intervals
+   * @param interval
+   */
+  private static <T extends Comparable<T>> void addInterval(
+    List<Interval<T>> intervals, Interval<T> interval) {
+    if (interval.low.compareTo(interval.high) == 0) {
+      if (!interval.lowClosed && !interval.highClosed) { return; }
+      interval.lowClosed = interval.highClosed = true;
+    }
+    intervals.add(interval);
+  }
+  
+  /**
+   * 
+   * @param intervals
+   *        closed integer intervals
+   * @return the sorted union of the intervals, as disjoint intervals that are
+   *         not adjacent.
+   */
+  private static List<long[]> mergeClosed(List<long[]> intervals) {
+    long[][] sorted = intervals.toArray(new long[intervals.size()][]);
+    Arrays.sort(sorted, new Comparator<long[]>() {
+      @Override
+      public int compare(long[] a, long[] b) {
+        return (a[0] < b[0]) ? -1 : ((a[0] == b[0]) ? 0 : 1);
+      }
+    });
+    List<long[]> merged = new ArrayList<long[]>();
+    long[] current = null;
+    for (long[] next : sorted) {
+      if ((current != null)
+          && ((current[1] == Long.MAX_VALUE) || (next[0] <= current[1] + 1))) {
+        current[1] = Math.max(current[1], next[1]);
+      } else {
+        merged.add(current = next);
+      }
+    }
+    return merged;
+  }
+  
+  /**
+   * 
+   * @param intervals
+   * @return the sorted union of the intervals, as disjoint intervals that do
+   *         not share a bound unless both bounds are open.
+   */
+  private static <T extends Comparable<T>> List<Interval<T>> merge(
+    List<Interval<T>> intervals) {
+    Collections.sort(intervals);
+    List<Interval<T>> merged = new ArrayList<Interval<T>>();
+    Interval<T> current = null;
+    for (Interval<T> next : intervals) {
+      if (current != null) {
+        int cmp = next.low.compareTo(current.high);
+        if ((cmp < 0)
+            || ((cmp == 0) && (next.lowClosed || current.highClosed))) {
+          cmp = next.high.compareTo(current.high);
+          if (cmp > 0) {
+            current.high = next.high;
+            current.highClosed = next.highClosed;
+          } else if (cmp == 0) {
+            current.highClosed |= next.highClosed;
+          }
+          continue;
+        }
+      }
+      merged.add(current = next);
+    }
+    return merged;
+  }
+  
+  /**
+   * 
+   * @param l
+   *        an integer or character value
+   * @return
+   */
+  boolean contains(long l) {
+    if (chars != null) { return (l >= Character.MIN_VALUE)
+        && (l <= Character.MAX_VALUE) && chars.get((int) l); }
+    int lo = 0, hi = lows.length - 1;
+    while (lo <= hi) {
+      int mid = (lo + hi) >>> 1;
+      if (lows[mid] <= l) {
+        lo = mid + 1;
+      } else {
+        hi = mid - 1;
+      }
+    }
+    return (hi >= 0) && (l <= highs[hi]);
+  }
+  
+  /**
+   * 
+   * @param d
+   * @return
+   */
+  boolean contains(double d) {
+    int lo = 0, hi = dlows.length - 1;
+    while (lo <= hi) {
+      int mid = (lo + hi) >>> 1;
+      if (dlows[mid] <= d) {
+        lo = mid + 1;
+      } else {
+        hi = mid - 1;
+      }
+    }
+    // hi is the last interval with a lower bound <= d; NaN matches none
+    return (hi >= 0) && ((d > dlows[hi]) || lowClosed[hi])
+        && ((d < dhighs[hi]) || ((d == dhighs[hi]) && highClosed[hi]));
+  }
+  
+  /**
+   * 
+   * @param s
+   * @return
+   */
+  boolean contains(String s) {
+    if ((strings != null) && strings.contains(s)) { return true; }
+    int lo = 0, hi = slows.length - 1;
+    while (lo <= hi) {
+      int mid = (lo + hi) >>> 1;
+      if (slows[mid].compareTo(s) <= 0) {
+        lo = mid + 1;
+      } else {
+        hi = mid - 1;
+      }
+    }
+    if (hi < 0) { return false; }
+    int cmp = s.compareTo(shighs[hi]);
+    return ((s.compareTo(slows[hi]) > 0) || lowClosed[hi])
+        && ((cmp < 0) || ((cmp == 0) && highClosed[hi]));
+  }
+  
+  /**
+   * 
+   * @param b
+   * @return
+   */
+  boolean contains(boolean b) {
+    return b ? acceptTrue : acceptFalse;
+  }
+}
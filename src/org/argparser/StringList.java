@@ -0,0 +1,142 @@
+/*
+ * Copyright 2011-2013 by Andreas Draeger and Florian Mittag
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.argparser;
+
+import java.util.Arrays;
+
+/**
+ * Collects the values of all occurrences of an option with the conversion
+ * code {@code %s}.
+ * 
+ * <pre>
+ * StringList includes = new StringList();
+ * parser.addOption(&quot;-I%s #add to the search path&quot;, includes);
+ * </pre>
+ * 
+ * @see ValueList
+ */
+public class StringList extends ValueList {
+  
+  /**
+   * 
+   */
+  private String[] values = new String[0];
+  
+  /**
+   * Creates a list for an option without multiplier.
+   */
+  public StringList() {
+    this(1);
+  }
+  
+  /**
+   * Creates a list for an option whose multiplier equals {@code width}.
+   * 
+   * @param width
+   *        number of values per occurrence
+   */
+  public StringList(int width) {
+    super(width);
+  }
+  
+  /**
+   * 
+   * @param i
+   * @return the (first) value of occurrence {@code i}.
+   */
+  public String get(int i) {
+    return values[index(i, 0)];
+  }
+  
+  /**
+   * 
+   * @param i
+   * @param k
+   * @return the {@code k}-th value of occurrence {@code i}.
+   */
+  public String get(int i, int k) {
+    return values[index(i, k)];
+  }
+  
+  /**
+   * 
+   * @param i
+   * @return a copy of the values of occurrence {@code i}.
+   */
+  public String[] toArray(int i) {
+    int from = index(i, 0);
+    return Arrays.copyOfRange(values, from, from + getWidth());
+  }
+  
+  /**
+   * 
+   * @return a copy of the values of all occurrences, one after the other.
+   */
+  public String[] toArray() {
+    return Arrays.copyOf(values, size() * getWidth());
+  }
+  
+  /**
+   * 
+   * @param k
+   * @param value
+   */
+  void put(int k, String value) {
+    values[pendingIndex(k)] = value;
+  }
+  
+  /*
+   * (non-Javadoc)
+   * 
+   * @see org.argparser.ValueList#clear()
+   */
+  @Override
+  public void clear() {
+    Arrays.fill(values, 0, size() * getWidth(), null);
+    super.clear();
+  }
+  
+  /*
+   * (non-Javadoc)
+   * 
+   * @see org.argparser.ValueList#capacity()
+   */
+  @Override
+  int capacity() {
+    return values.length;
+  }
+  
+  /*
+   * (non-Javadoc)
+   * 
+   * @see org.argparser.ValueList#resize(int)
+   */
+  @Override
+  void resize(int length) {
+    values = Arrays.copyOf(values, length);
+  }
+  
+  /*
+   * (non-Javadoc)
+   * 
+   * @see org.argparser.ValueList#appendValue(java.lang.StringBuilder, int)
+   */
+  @Override
+  void appendValue(StringBuilder sb, int index) {
+    sb.append(values[index]);
+  }
+}
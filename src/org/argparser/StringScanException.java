@@ -64,4 +64,15 @@ class StringScanException extends IOException {
     return failIdx;
   }
   
+  /**
+   * Scan errors are part of the normal control flow of the parser, which
+   * turns them into error messages of its own, so no stack trace is recorded.
+   * 
+   * @see java.lang.Throwable#fillInStackTrace()
+   */
+  @Override
+  public synchronized Throwable fillInStackTrace() {
+    return this;
+  }
+  
 }
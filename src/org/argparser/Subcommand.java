@@ -0,0 +1,77 @@
+/*
+ * Copyright 2011-2013 by Andreas Draeger and Florian Mittag
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.argparser;
+
+import java.util.function.Supplier;
+
+/**
+ * A subcommand registered with {@link ArgParser#addSubcommand}: its name, a
+ * description for the help message of the parent parser and the supplier of
+ * its own parser. The parser is only created when it is needed for the first
+ * time, i.e., when the subcommand is selected on the command line or its help
+ * message is requested, and is then kept.
+ * 
+ * @see ArgParser#addSubcommand(String, String, Supplier)
+ */
+final class Subcommand {
+  
+  /**
+   * 
+   */
+  final String name;
+  /**
+   * 
+   */
+  final String description;
+  /**
+   * 
+   */
+  private Supplier<ArgParser> supplier;
+  /**
+   * {@code null} until the supplier has been invoked.
+   */
+  private ArgParser parser = null;
+  
+  /**
+   * 
+   * @param name
+   * @param description
+   * @param supplier
+   */
+  Subcommand(String name, String description, Supplier<ArgParser> supplier) {
+    this.name = name;
+    this.description = description;
+    this.supplier = supplier;
+  }
+  
+  /**
+   * 
+   * @return the parser of the subcommand, created if necessary
+   * @throws IllegalStateException
+   *         if the supplier does not supply a parser
+   */
+  ArgParser getParser() throws IllegalStateException {
+    if (parser == null) {
+      parser = supplier.get();
+      if (parser == null) { throw new IllegalStateException(
+        "No parser supplied for subcommand " + name); }
+      // the supplier and whatever it refers to are no longer needed
+      supplier = null;
+    }
+    return parser;
+  }
+}
@@ -0,0 +1,250 @@
+/*
+ * Copyright 2011-2013 by Andreas Draeger and Florian Mittag
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.argparser;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A BK-tree over option names, used to find the names that are close to a
+ * misspelled argument. Every node keeps its children by their Levenshtein
+ * distance to the node's name; since the distance is a metric, a search for
+ * the names within a distance {@code k} of a string {@code s} only needs to
+ * descend into the children whose distance differs by at most {@code k} from
+ * the distance between {@code s} and the node's name. For small {@code k}
+ * this visits only a fraction of the names.
+ * 
+ * <p>
+ * Like {@link OptionIndex}, a tree is never modified after it has been built.
+ * 
+ * @see OptionIndex#suggest(String, int, List)
+ */
+final class SuggestionTree {
+  
+  /**
+   * 
+   */
+  private static final class Node {
+    /**
+     * 
+     */
+    private final OptionIndex.Entry entry;
+    /**
+     * 
+     */
+    private final String name;
+    /**
+     * Distances of the children to this node, in ascending order.
+     */
+    private int[] dists = new int[0];
+    /**
+     * 
+     */
+    private Node[] children = new Node[0];
+    
+    /**
+     * 
+     * @param entry
+     */
+    Node(OptionIndex.Entry entry) {
+      this.entry = entry;
+      this.name = entry.nameDesc.getName();
+    }
+    
+    /**
+     * 
+     * @param dist
+     * @return the child at the given distance, or {@code null}.
+     */
+    Node child(int dist) {
+      for (int i = 0; (i < dists.length) && (dists[i] <= dist); i++) {
+        if (dists[i] == dist) { return children[i]; }
+      }
+      return null;
+    }
+    
+    /**
+     * 
+     * @param dist
+     * @param node
+     */
+    void addChild(int dist, Node node) {
+      int pos = 0;
+      while ((pos < dists.length) && (dists[pos] < dist)) {
+        pos++;
+      }
+      int[] newDists = new int[dists.length + 1];
+      Node[] newChildren = new Node[children.length + 1];
+      System.arraycopy(dists, 0, newDists, 0, pos);
+      System.arraycopy(children, 0, newChildren, 0, pos);
+      System.arraycopy(dists, pos, newDists, pos + 1, dists.length - pos);
+      System.arraycopy(children, pos, newChildren, pos + 1, children.length
+          - pos);
+      newDists[pos] = dist;
+      newChildren[pos] = node;
+      dists = newDists;
+      children = newChildren;
+    }
+  }
+  
+  /**
+   * An entry found by a search, ordered by its distance, then by rank.
+   */
+  private static final class Suggestion implements Comparable<Suggestion> {
+    /**
+     * 
+     */
+    final OptionIndex.Entry entry;
+    /**
+     * 
+     */
+    final int dist;
+    
+    /**
+     * 
+     * @param entry
+     * @param dist
+     */
+    Suggestion(OptionIndex.Entry entry, int dist) {
+      this.entry = entry;
+      this.dist = dist;
+    }
+    
+    /*
+     * (non-Javadoc)
+     * @see java.lang.Comparable#compareTo(java.lang.Object)
+     */
+    @Override
+    public int compareTo(Suggestion other) {
+      if (dist != other.dist) { return (dist < other.dist) ? -1 : 1; }
+      return (entry.rank < other.entry.rank) ? -1
+          : ((entry.rank == other.entry.rank) ? 0 : 1);
+    }
+  }
+  
+  /**
+   * {@code null} if the tree is empty.
+   */
+  private Node root = null;
+  
+  /**
+   * Builds a tree over the names of the given entries. Of several entries of
+   * the same name, only the first one is kept.
+   * 
+   * @param entries
+   */
+  SuggestionTree(List<OptionIndex.Entry> entries) {
+    for (OptionIndex.Entry entry : entries) {
+      add(entry);
+    }
+  }
+  
+  /**
+   * 
+   * @param entry
+   */
+  private void add(OptionIndex.Entry entry) {
+    String name = entry.nameDesc.getName();
+    if (root == null) {
+      root = new Node(entry);
+      return;
+    }
+    Node node = root;
+    while (true) {
+      int dist = distance(name, node.name, Integer.MAX_VALUE);
+      if (dist == 0) { return; }
+      Node child = node.child(dist);
+      if (child == null) {
+        node.addChild(dist, new Node(entry));
+        return;
+      }
+      node = child;
+    }
+  }
+  
+  /**
+   * Collects the entries of all names within a given distance of a string,
+   * ordered by their distance and then by rank.
+   * 
+   * @param s
+   * @param maxDist
+   * @param entries
+   *        receives the entries
+   */
+  void find(String s, int maxDist, List<OptionIndex.Entry> entries) {
+    if (root == null) { return; }
+    List<Suggestion> found = new ArrayList<Suggestion>();
+    List<Node> pending = new ArrayList<Node>();
+    pending.add(root);
+    while (!pending.isEmpty()) {
+      Node node = pending.remove(pending.size() - 1);
+      int[] dists = node.dists;
+      // children farther away than the last one cannot be reached anyway
+      int limit = maxDist + ((dists.length > 0) ? dists[dists.length - 1] : 0);
+      int dist = distance(s, node.name, limit);
+      if (dist <= maxDist) {
+        found.add(new Suggestion(node.entry, dist));
+      }
+      for (int i = 0; (i < dists.length) && (dists[i] <= dist + maxDist); i++) {
+        if (dists[i] >= dist - maxDist) {
+          pending.add(node.children[i]);
+        }
+      }
+    }
+    Collections.sort(found);
+    for (Suggestion suggestion : found) {
+      entries.add(suggestion.entry);
+    }
+  }
+  
+  /**
+   * Computes the Levenshtein distance of two strings, giving up as soon as it
+   * is known to exceed a limit.
+   * 
+   * @param a
+   * @param b
+   * @param limit
+   * @return the distance, or a value greater than {@code limit} if the
+   *         distance exceeds it
+   */
+  static int distance(String a, String b, int limit) {
+    int m = a.length(), n = b.length();
+    if (Math.abs(m - n) > limit) { return limit + 1; }
+    int[] prev = new int[n + 1];
+    int[] cur = new int[n + 1];
+    for (int j = 0; j <= n; j++) {
+      prev[j] = j;
+    }
+    for (int i = 1; i <= m; i++) {
+      char c = a.charAt(i - 1);
+      cur[0] = i;
+      int rowMin = i;
+      for (int j = 1; j <= n; j++) {
+        int d = prev[j - 1] + ((c == b.charAt(j - 1)) ? 0 : 1);
+        d = Math.min(d, Math.min(prev[j], cur[j - 1]) + 1);
+        cur[j] = d;
+        rowMin = Math.min(rowMin, d);
+      }
+      if (rowMin > limit) { return limit + 1; }
+      int[] tmp = prev;
+      prev = cur;
+      cur = tmp;
+    }
+    return prev[n];
+  }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2011-2013 by Andreas Draeger and Florian Mittag
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.argparser;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Arguments given as UTF-8 encoded bytes, either in separate
+ * {@link ByteBuffer}s or one after the other in a single array. As for a
+ * {@link MappedArgFile}, arguments that consist of plain ASCII characters are
+ * handed to the parser as views on their bytes, so that option names are
+ * looked up and numbers are scanned without decoding them. All other
+ * arguments are decoded to strings.
+ * 
+ * @see ArgParser#matchAllArgs(ByteBuffer[], int)
+ * @see ArgParser#matchAllArgs(byte[], int[], int)
+ */
+final class Utf8Args {
+  
+  /**
+   * 
+   */
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+  
+  /**
+   * The buffer of each argument, or {@code null} if all arguments are stored
+   * in {@link #buffer}.
+   */
+  private final ByteBuffer[] buffers;
+  /**
+   * 
+   */
+  private final ByteBuffer buffer;
+  /**
+   * 
+   */
+  private final int[] starts;
+  /**
+   * 
+   */
+  private final int[] ends;
+  /**
+   * Whether an argument consists of ASCII characters only.
+   */
+  private final boolean[] plain;
+  
+  /**
+   * Arguments between the position and the limit of each buffer. The buffers
+   * are not modified.
+   * 
+   * @param args
+   */
+  Utf8Args(ByteBuffer[] args) {
+    buffers = args;
+    buffer = null;
+    starts = new int[args.length];
+    ends = new int[args.length];
+    for (int i = 0; i < args.length; i++) {
+      starts[i] = args[i].position();
+      ends[i] = args[i].limit();
+    }
+    plain = new boolean[args.length];
+    for (int i = 0; i < args.length; i++) {
+      plain[i] = isPlain(args[i], starts[i], ends[i]);
+    }
+  }
+  
+  /**
+   * Arguments stored one after the other in an array.
+   * 
+   * @param data
+   * @param offsets
+   *        argument {@code i} starts at {@code offsets[i]} and ends before
+   *        {@code offsets[i + 1]}
+   * @throws IllegalArgumentException
+   *         if the offsets are decreasing or lie outside of {@code data}
+   */
+  Utf8Args(byte[] data, int[] offsets) throws IllegalArgumentException {
+    int n = Math.max(offsets.length - 1, 0);
+    buffers = null;
+    buffer = ByteBuffer.wrap(data);
+    starts = new int[n];
+    ends = new int[n];
+    plain = new boolean[n];
+    for (int i = 0; i < n; i++) {
+      starts[i] = offsets[i];
+      ends[i] = offsets[i + 1];
+      if (starts[i] < 0 || starts[i] > ends[i] || ends[i] > data.length) { throw new IllegalArgumentException(
+        "Invalid offsets of argument " + i); }
+      plain[i] = isPlain(buffer, starts[i], ends[i]);
+    }
+  }
+  
+  /**
+   * 
+   * @param buffer
+   * @param start
+   * @param end
+   * @return {@code true} if all bytes of the region are ASCII characters.
+   */
+  private static boolean isPlain(ByteBuffer buffer, int start, int end) {
+    for (int j = start; j < end; j++) {
+      if (buffer.get(j) < 0) { return false; }
+    }
+    return true;
+  }
+  
+  /**
+   * 
+   * @return the number of arguments.
+   */
+  int size() {
+    return starts.length;
+  }
+  
+  /**
+   * 
+   * @param i
+   * @return
+   */
+  private ByteBuffer bufferAt(int i) {
+    return (buffers != null) ? buffers[i] : buffer;
+  }
+  
+  /**
+   * Returns the argument at position {@code i} without creating a string if
+   * it consists of plain ASCII characters.
+   * 
+   * @param i
+   * @param view
+   *        the view to use for a plain argument
+   * @return {@code view}, or a string if the argument is not plain.
+   */
+  CharSequence charsAt(int i, MappedArgFile.View view) {
+    if (plain[i]) { return view.set(bufferAt(i), starts[i], ends[i]
+        - starts[i]); }
+    ByteBuffer slice = bufferAt(i).duplicate();
+    slice.limit(ends[i]).position(starts[i]);
+    return UTF8.decode(slice).toString();
+  }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright 2011-2013 by Andreas Draeger and Florian Mittag
+ * 
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.argparser;
+
+/**
+ * Base class of the result holders that collect the values of all
+ * occurrences of an option in a contiguous array. Every occurrence
+ * contributes as many values as the option's multiplier, which must be equal
+ * to the {@link #getWidth() width} of the list; the values of occurrence
+ * {@code i} are therefore found at the positions {@code i * width} to
+ * {@code (i + 1) * width - 1} of the underlying array.
+ * 
+ * <p>
+ * Compared to a {@link java.util.Vector} as result holder, no holder object is
+ * allocated per occurrence, numbers are not boxed, and no locking takes place.
+ * The storage grows by doubling its size, so that adding a value costs
+ * amortized constant time.
+ * 
+ * @see IntList
+ * @see LongList
+ * @see DoubleList
+ * @see StringList
+ */
+public abstract class ValueList {
+  
+  /**
+   * Initial number of occurrences for which storage is allocated.
+   */
+  private static final int INITIAL_CAPACITY = 10;
+  
+  /**
+   * Number of values per occurrence.
+   */
+  private final int width;
+  /**
+   * Number of occurrences.
+   */
+  private int size = 0;
+  
+  /**
+   * 
+   * @param width
+   *        number of values per occurrence
+   * @throws IllegalArgumentException
+   *         if {@code width} is less than 1
+   */
+  protected ValueList(int width) throws IllegalArgumentException {
+    if (width < 1) { throw new IllegalArgumentException(
+      "Width must be >= 1"); }
+    this.width = width;
+  }
+  
+  /**
+   * 
+   * @return the number of values per occurrence.
+   */
+  public int getWidth() {
+    return width;
+  }
+  
+  /**
+   * 
+   * @return the number of occurrences.
+   */
+  public int size() {
+    return size;
+  }
+  
+  /**
+   * 
+   * @return
+   */
+  public boolean isEmpty() {
+    return size == 0;
+  }
+  
+  /**
+   * Removes all values.
+   */
+  public void clear() {
+    size = 0;
+  }
+  
+  /**
+   * 
+   * @return the number of values the underlying array can hold.
+   */
+  abstract int capacity();
+  
+  /**
+   * Replaces the underlying array by one of the given length, keeping its
+   * content.
+   * 
+   * @param length
+   */
+  abstract void resize(int length);
+  
+  /**
+   * Makes room for the values of one more occurrence, which are then set with
+   * {@link #pendingIndex(int)} and become part of the list by
+   * {@link #commit()}.
+   */
+  void reserve() {
+    int needed = (size + 1) * width;
+    if (needed > capacity()) {
+      resize(Math.max(needed, Math.max(2 * capacity(), INITIAL_CAPACITY
+          * width)));
+    }
+  }
+  
+  /**
+   * 
+   * @param k
+   * @return position of the {@code k}-th value of the reserved occurrence.
+   */
+  int pendingIndex(int k) {
+    return size * width + k;
+  }
+  
+  /**
+   * Adds the reserved occurrence to the list.
+   */
+  void commit() {
+    size++;
+  }
+  
+  /**
+   * 
+   * @param i
+   * @param k
+   * @return position of the {@code k}-th value of occurrence {@code i}
+   * @throws IndexOutOfBoundsException
+   */
+  int index(int i, int k) throws IndexOutOfBoundsException {
+    if (i < 0 || i >= size || k < 0 || k >= width) { throw new IndexOutOfBoundsException(
+      "Occurrence " + i + ", value " + k); }
+    return i * width + k;
+  }
+  
+  /**
+   * 
+   * @param sb
+   * @param index
+   *        position in the underlying array
+   */
+  abstract void appendValue(StringBuilder sb, int index);
+  
+  /*
+   * (non-Javadoc)
+   * 
+   * @see java.lang.Object#toString()
+   */
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+    sb.append('[');
+    for (int i = 0; i < size; i++) {
+      if (i > 0) {
+        sb.append(", ");
+      }
+      if (width > 1) {
+        sb.append('[');
+      }
+      for (int k = 0; k < width; k++) {
+        if (k > 0) {
+          sb.append(", ");
+        }
+        appendValue(sb, i * width + k);
+      }
+      if (width > 1) {
+        sb.append(']');
+      }
+    }
+    sb.append(']');
+    return sb.toString();
+  }
+}
@@ -17,10 +17,42 @@
  */
 package org.argparser;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.PrintStream;
+import java.io.StringReader;
+import java.io.StringWriter;
 import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
 import java.util.Vector;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 
 /**
  * Testing class for the class ArgParser. Executing the {@code main} method
@@ -252,6 +284,118 @@ public class ArgParserTest {
     parser = new ArgParser("fubar");
   }
   
+  /**
+   * 
+   * @param text
+   * @return
+   */
+  static ArgFileReader fileReader(String text) {
+    return new ArgFileReader(Channels.newChannel(new ByteArrayInputStream(
+      text.getBytes(Charset.forName("UTF-8")))), Charset.forName("UTF-8"));
+  }
+  
+  /**
+   * 
+   * @param text
+   * @return a temporary UTF-8 encoded file containing the text
+   * @throws IOException
+   */
+  static File tempFile(String text) throws IOException {
+    File file = File.createTempFile("argparser", ".args");
+    file.deleteOnExit();
+    FileOutputStream out = new FileOutputStream(file);
+    try {
+      out.write(text.getBytes(Charset.forName("UTF-8")));
+    } finally {
+      out.close();
+    }
+    return file;
+  }
+  
+  /**
+   * Compiles a class of package {@code gen} with the {@link OptionProcessor}.
+   * The compiled classes are read into memory and the temporary directory is
+   * deleted before the method returns.
+   * 
+   * @param compiler
+   * @param name
+   *        simple name of the class
+   * @param source
+   * @param errors
+   *        receives the messages of compilation errors
+   * @return a class loader for the compiled classes, or {@code null} if the
+   *         compilation failed
+   * @throws IOException
+   */
+  static ClassLoader compileWithProcessor(JavaCompiler compiler, String name,
+    String source, List<String> errors) throws IOException {
+    File dir = Files.createTempDirectory("argparser").toFile();
+    final Map<String, byte[]> classes = new HashMap<String, byte[]>();
+    try {
+      File file = new File(dir, name + ".java");
+      FileOutputStream out = new FileOutputStream(file);
+      try {
+        out.write(source.getBytes(Charset.forName("UTF-8")));
+      } finally {
+        out.close();
+      }
+      DiagnosticCollector<JavaFileObject> diagnostics;
+      diagnostics = new DiagnosticCollector<JavaFileObject>();
+      StandardJavaFileManager fileManager = compiler.getStandardFileManager(
+        diagnostics, null, Charset.forName("UTF-8"));
+      boolean ok = compiler.getTask(null, fileManager, diagnostics,
+        Arrays.asList("-classpath", System.getProperty("java.class.path"),
+          "-d", dir.getPath(), "-processor", OptionProcessor.class.getName()),
+        null, fileManager.getJavaFileObjects(file)).call();
+      fileManager.close();
+      for (Diagnostic<? extends JavaFileObject> d : diagnostics
+          .getDiagnostics()) {
+        if (d.getKind() == Diagnostic.Kind.ERROR) {
+          errors.add(d.getMessage(null));
+        }
+      }
+      if (!ok) { return null; }
+      for (File classFile : new File(dir, "gen").listFiles()) {
+        String fileName = classFile.getName();
+        if (fileName.endsWith(".class")) {
+          classes.put("gen." + fileName.substring(0, fileName.length() - 6),
+            Files.readAllBytes(classFile.toPath()));
+        }
+      }
+    } finally {
+      deleteRecursively(dir);
+    }
+    return new ClassLoader(ArgParserTest.class.getClassLoader()) {
+      /*
+       * (non-Javadoc)
+       * @see java.lang.ClassLoader#findClass(java.lang.String)
+       */
+      @Override
+      protected Class<?> findClass(String className)
+        throws ClassNotFoundException {
+        byte[] bytes = classes.get(className);
+        if (bytes == null) { throw new ClassNotFoundException(className); }
+        return defineClass(className, bytes, 0, bytes.length);
+      }
+    };
+  }
+  
+  /**
+   * Deletes a file or a directory together with its contents.
+   * 
+   * @param file
+   * @throws IOException
+   */
+  static void deleteRecursively(File file) throws IOException {
+    File[] files = file.listFiles();
+    if (files != null) {
+      for (File f : files) {
+        deleteRecursively(f);
+      }
+    }
+    Files.delete(file.toPath());
+  }
+  
   /**
    * 
    * @param e
@@ -531,6 +675,28 @@ public class ArgParserTest {
     }
   }
   
+  /**
+   * Uses a parser in a JVM that is started without the {@code jdk.jfr}
+   * module, see {@link ArgParserTest#main(String[])}.
+   */
+  static class WithoutJfr {
+    /**
+     * 
+     * @param args
+     */
+    public static void main(String[] args) {
+      ArgParser parser = new ArgParser("test");
+      IntArgHolder n = new IntArgHolder();
+      parser.addOption("-n %d #a number", n);
+      String[] unmatched = parser.matchAllArgs(new String[] { "-n", "7", "x" },
+        0, 0);
+      parser.getHelpMessage();
+      if ((n.getValue() != 7) || (unmatched.length != 1)) {
+        System.exit(1);
+      }
+    }
+  }
+  
   /**
 	 * 
 	 */
@@ -1446,6 +1612,1017 @@ public class ArgParserTest {
     unmatched = vec.toArray(new String[0]);
     test.checkStringArray("My unmatched args:", unmatched, unmatchedCheck);
     
+    // the option index must pick the first registered name, regardless of
+    // whether it is matched exactly or as a one word prefix, and must notice
+    // options that are added after the first lookup
+    parser = new ArgParser("test", false);
+    parser.addOption("-foo %d", intHolder);
+    parser.addOption("-f%s", strHolder);
+    verify("-foo".equals(parser.getOptionName("-foo")), "exact name first");
+    verify("-f".equals(parser.getOptionName("-foobar")), "prefix name");
+    verify(parser.getOptionName("-g") == null, "no name");
+    parser.addOption("-fo%d", intHolder);
+    parser.addOption("-g %v", bh);
+    verify("-f".equals(parser.getOptionName("-fo12")), "shorter prefix first");
+    verify("-g".equals(parser.getOptionName("-g")), "index rebuilt");
+    parser = new ArgParser("test", false);
+    parser.addOption("-f%s", strHolder);
+    parser.addOption("-foo %d", intHolder);
+    verify("-f".equals(parser.getOptionName("-foo")), "prefix name first");
+    
+    // a compiled parser returns its values in a parse result and leaves the
+    // result holders of the original parser alone
+    intHolder.unsetValue();
+    vec.clear();
+    parser = new ArgParser("test");
+    parser.addOption("-foo %d #an int", intHolder);
+    parser.addOption("-bar,-b %fX2 #two floats", d3);
+    parser.addOption("-baz=%s", vec);
+    CompiledArgParser compiled = parser.compile();
+    ParseResult result = compiled.parse(new String[] { "-foo", "12", "zzz",
+        "-baz=x", "-b", "1", "2.5", "-baz=y", "-?" });
+    verify(result.getValue("-foo", Integer.class) == 12, "compiled int");
+    double[] dres = result.getValue("-bar", double[].class);
+    verify(dres.length == 2 && dres[0] == 1 && dres[1] == 2.5, "compiled array");
+    verify(result.getValue("-baz=").equals(Arrays.asList("x", "y")),
+      "compiled vector");
+    test.checkStringArray("Compiled unmatched args:",
+      result.getUnmatchedArguments(), new String[] { "zzz" });
+    verify(result.isHelpRequested() && !result.hasError(), "compiled help");
+    verify(!intHolder.isSetValue() && vec.isEmpty(), "holders untouched");
+    result = compiled.parse(new String[] { "-b", "1", "x", "-foo", "1" });
+    verify("-b: malformed float 'x'".equals(result.getErrorMessage()),
+      "compiled error");
+    verify(!result.isSet("-foo"), "compiled stops at error");
+    
+    // lazily matched values are converted when they are read
+    result = compiled.parseLazily(new String[] { "-foo", "12", "zzz",
+        "-baz=x", "-b", "1", "2.5", "-baz=y", "-?" });
+    verify(result.isSet("-bar") && result.isHelpRequested(), "lazy match");
+    verify(result.getValue("-foo", Integer.class) == 12, "lazy int");
+    dres = result.getValue("-b", double[].class);
+    verify(dres.length == 2 && dres[0] == 1 && dres[1] == 2.5, "lazy array");
+    verify(result.getValue("-bar") == dres, "lazy value not cached");
+    verify(result.getValue("-baz=").equals(Arrays.asList("x", "y")),
+      "lazy vector");
+    test.checkStringArray("Lazy unmatched args:",
+      result.getUnmatchedArguments(), new String[] { "zzz" });
+    result = compiled.parseLazily(new String[] { "-b", "1", "x", "-foo", "1" });
+    verify(!result.hasError() && result.getValue("-foo").equals(1),
+      "lazy error not deferred");
+    try {
+      result.getValue("-bar");
+      verify(false, "lazy malformed value accepted");
+    } catch (IllegalArgumentException e) {
+      verify("-b: malformed float 'x'".equals(e.getMessage()), e.getMessage());
+    }
+    result = compiled.parseLazily(new String[] { "-foo" });
+    verify("-foo: requires 1 value".equals(result.getErrorMessage()),
+      "lazy missing value");
+    
+    // batches of argument lists are matched in parallel, results in order
+    List<String[]> batch = new ArrayList<String[]>();
+    for (int i = 0; i < 1000; i++) {
+      batch.add(new String[] { "-foo", Integer.toString(i), "-b", "1",
+          (i % 7 == 0) ? "x" : "2", "arg" + i });
+    }
+    List<ParseResult> results = compiled.parseAll(batch, new ForkJoinPool(4));
+    verify(results.size() == batch.size(), "batch size");
+    verify(compiled.parseAll(batch).size() == batch.size(), "batch size");
+    for (int i = 0; i < batch.size(); i++) {
+      ParseResult expected = compiled.parse(batch.get(i));
+      result = results.get(i);
+      verify(result.getValue("-foo").equals(expected.getValue("-foo")),
+        "batch value " + i);
+      verify(String.valueOf(result.getErrorMessage()).equals(
+        String.valueOf(expected.getErrorMessage())), "batch error " + i);
+      verify(Arrays.equals(result.getUnmatchedArguments(),
+        expected.getUnmatchedArguments()), "batch unmatched " + i);
+    }
+    
+    // the streaming reader must split option files exactly like prependArgs
+    String text = "-foo 12 # comment \"x\n\r\n  \"a b\"\"c\\t\\101\"d#e\r"
+        + "x\"y -bar \"\" \t\"\\\\\"\n-fo#o";
+    try {
+      ArgFileReader reader = fileReader(text);
+      vec.clear();
+      reader.readAll(vec);
+      test.checkStringArray("Streamed args:", vec.toArray(new String[0]),
+        ArgParser.prependArgs(new StringReader(text), null));
+      reader = fileReader("-foo\n\n-bar \"x y\\q\"");
+      verify("-foo".equals(reader.next()), "streamed before error");
+      verify("-bar".equals(reader.next()), "streamed before error");
+      reader.next();
+      verify(false, "malformed string accepted");
+    } catch (IOException e) {
+      checkException(e, "malformed string, line 3");
+    }
+    
+    // matching directly from the reader
+    intHolder.unsetValue();
+    parser = new ArgParser("test", false);
+    parser.addOption("-foo %d", intHolder);
+    parser.addOption("-bar %fX2", d3);
+    parser.addOption("-baz=%s", vec);
+    vec.clear();
+    try {
+      unmatched = parser.matchAllArgs(
+        fileReader("zzz -bar 1 # 2\n 2.5 -baz=x\n-foo 7 -baz=y"), 0);
+      test.checkStringArray("Streamed unmatched args:", unmatched,
+        new String[] { "zzz" });
+      verify(intHolder.getValue() == 7 && d3[1] == 2.5, "streamed match");
+      verify(vec.size() == 2, "streamed vector");
+      unmatched = parser.matchAllArgs(fileReader("-bar 1"), 0);
+      verify(unmatched == null, "streamed unmatched");
+      verify("-bar: requires 2 values".equals(parser.getErrorMessage()),
+        "streamed error");
+    } catch (IOException e) {
+      verify(false, "streamed match: " + e.getMessage());
+    }
+    
+    // a mapped file must be split like prependArgs, and matched from the
+    // mapped bytes
+    intHolder.unsetValue();
+    vec.clear();
+    try {
+      MappedArgFile mapped = new MappedArgFile(tempFile(text),
+        Charset.forName("UTF-8"));
+      test.checkStringArray("Mapped args:", mapped.toArray(),
+        ArgParser.prependArgs(new StringReader(text), null));
+      mapped = new MappedArgFile(tempFile("zzz -bar 1 # 2\n 2.5 -baz=x\n"
+          + "-foo 7 \"-baz=\\171\" \u00e4\u2028-baz=\u00f6"),
+        Charset.forName("UTF-8"));
+      unmatched = parser.matchAllArgs(mapped, 0);
+      test.checkStringArray("Mapped unmatched args:", unmatched, new String[] {
+          "zzz", "\u00e4" });
+      verify(intHolder.getValue() == 7 && d3[1] == 2.5, "mapped match");
+      verify(vec.toString().equals("[ArgHolder[x], ArgHolder[y], "
+          + "ArgHolder[\u00f6]]"), "mapped vector " + vec);
+      File malformed = tempFile("-foo\r\n\r-bar \"x\\");
+      new MappedArgFile(malformed, Charset.forName("UTF-8"));
+      verify(false, "malformed string accepted");
+    } catch (IOException e) {
+      verify(e.getMessage().endsWith(": malformed string, line 3"),
+        e.getMessage());
+    }
+    
+    // UTF-8 encoded arguments are matched from their bytes
+    intHolder.unsetValue();
+    vec.clear();
+    String[] utf8Args = { "zzz", "-bar", "1", "2.5", "-baz=x", "-foo", "7",
+        "\u00e4", "-baz=\u00f6", "-baz=" };
+    ByteBuffer[] buffers = new ByteBuffer[utf8Args.length];
+    ByteArrayOutputStream utf8Data = new ByteArrayOutputStream();
+    int[] offsets = new int[utf8Args.length + 1];
+    for (int i = 0; i < utf8Args.length; i++) {
+      byte[] bytes = utf8Args[i].getBytes(Charset.forName("UTF-8"));
+      buffers[i] = ByteBuffer.allocateDirect(bytes.length + 2);
+      buffers[i].put((byte) ' ').put(bytes).flip().position(1);
+      utf8Data.write(bytes, 0, bytes.length);
+      offsets[i + 1] = utf8Data.size();
+    }
+    unmatched = parser.matchAllArgs(buffers, 0);
+    test.checkStringArray("Buffer unmatched args:", unmatched, new String[] {
+        "zzz", "\u00e4" });
+    verify(intHolder.getValue() == 7 && d3[1] == 2.5, "buffer match");
+    verify(vec.toString().equals("[ArgHolder[x], ArgHolder[\u00f6]]"),
+      "buffer vector " + vec);
+    verify("-baz=: requires a contiguous value".equals(parser
+        .getErrorMessage()), "buffer error");
+    verify(buffers[1].position() == 1, "buffer modified");
+    vec.clear();
+    unmatched = parser.matchAllArgs(utf8Data.toByteArray(), offsets, 0);
+    test.checkStringArray("Byte unmatched args:", unmatched, new String[] {
+        "zzz", "\u00e4" });
+    verify(vec.size() == 2 && intHolder.getValue() == 7, "byte match");
+    parser.matchAllArgs(utf8Data.toByteArray(), Arrays.copyOf(offsets, 4), 0);
+    verify("-bar: requires 2 values".equals(parser.getErrorMessage()),
+      "byte error");
+    offsets[5] = offsets[4] - 1;
+    try {
+      parser.matchAllArgs(utf8Data.toByteArray(), offsets, 0);
+      verify(false, "decreasing offsets accepted");
+    } catch (IllegalArgumentException e) {
+      checkException(e, "Invalid offsets of argument 4");
+    }
+    
+    // lines are matched from the spans written by a tokenizer
+    vec.clear();
+    ArgTokenizer tokens = new ArgTokenizer(true);
+    String line = " zzz -bar 1 3.5\t-baz=x \"-baz=\\\"y\\\"\" -foo 8 \"q r\"";
+    try {
+      verify(tokens.tokenize(line) == 9, "token count " + tokens.size());
+    } catch (StringScanException e) {
+      verify(false, "tokenize failed: " + e);
+    }
+    verify(tokens.start(0) == 1 && tokens.end(0) == 4 && !tokens.isEscaped(0)
+        && line.substring(tokens.start(8), tokens.end(8)).equals("q r")
+        && tokens.isEscaped(5) && tokens.getString(5).equals("-baz=\"y\""),
+      "token spans");
+    unmatched = parser.matchAllArgs(tokens, 0);
+    test.checkStringArray("Token unmatched args:", unmatched, new String[] {
+        "zzz", "q r" });
+    verify(intHolder.getValue() == 8 && d3[1] == 3.5, "token match");
+    verify(vec.toString().equals("[ArgHolder[x], ArgHolder[\"y\"]]"),
+      "token vector " + vec);
+    try {
+      tokens.tokenize("-foo 9 \"abc");
+      verify(false, "unterminated string accepted");
+    } catch (StringScanException e) {
+      verify(e.getMessage().equals("end of input") && tokens.size() == 2,
+        "unterminated string " + e.getMessage());
+    }
+    verify(parser.matchAllArgs(tokens, 0) == null
+        && intHolder.getValue() == 9, "reused tokenizer");
+    
+    // the Vector overload of stringToArgs remains for binary compatibility
+    try {
+      Vector<String> split = new Vector<String>();
+      ArgParser.class.getMethod("stringToArgs", Vector.class, String.class,
+        boolean.class).invoke(null, split, "-foo \"a b\" c", true);
+      verify(split.toString().equals("[-foo, a b, c]"), "vector split "
+          + split);
+    } catch (Exception e) {
+      verify(false, "stringToArgs(Vector, String, boolean): " + e);
+    }
+    
+    // repeated options collected in primitive lists
+    IntList ilist = new IntList();
+    LongList lpairs = new LongList(2);
+    DoubleList dlist = new DoubleList();
+    StringList slist = new StringList();
+    parser = new ArgParser("test", false);
+    parser.addOption("-i %d{[0,9]}", ilist);
+    parser.addOption("-p %iX2", lpairs);
+    parser.addOption("-d=%f", dlist);
+    parser.addOption("-I%s", slist);
+    unmatched = parser.matchAllArgs(new String[] { "-i", "3", "-Ia", "-p",
+        "0x10", "7", "-d=2.5", "-i", "4", "zzz", "-Ib", "-p", "1", "2", "-d=x",
+        "-i", "5" }, 0, 0);
+    test.checkStringArray("List unmatched args:", unmatched,
+      new String[] { "zzz" });
+    verify("-d=: malformed float 'x'".equals(parser.getErrorMessage()),
+      "list error");
+    verify(ilist.toString().equals("[3, 4]"), "int list " + ilist);
+    verify(lpairs.toString().equals("[[16, 7], [1, 2]]"), "long pairs "
+        + lpairs);
+    verify(lpairs.get(1, 1) == 2 && lpairs.toArray(0)[0] == 16, "long get");
+    verify(dlist.size() == 1 && dlist.get(0) == 2.5, "double list");
+    verify(Arrays.equals(slist.toArray(), new String[] { "a", "b" }),
+      "string list");
+    parser.matchAllArgs(new String[] { "-i", "10", "-p", "1" }, 0, 0);
+    verify(ilist.size() == 2 && lpairs.size() == 2, "failed occurrences");
+    ilist.clear();
+    verify(ilist.isEmpty(), "cleared list");
+    test.checkAdd("-p %iX3", new LongList(2),
+      "Result holder list must have a width of 3");
+    test.checkAdd("-c %c", new IntList(), "Invalid result holder for %c");
+    result = parser.compile().parse(new String[] { "-i", "1", "-i", "2" });
+    verify(result.getValue("-i").equals(Arrays.asList(1, 2)), "compiled list");
+    
+    // primitive holders store the values without boxing them
+    IntArgHolder intPrim = new IntArgHolder(7);
+    LongArgHolder longPrim = new LongArgHolder();
+    FloatArgHolder floatPrim = new FloatArgHolder();
+    DoubleArgHolder doublePrim = new DoubleArgHolder(Double.NaN);
+    BooleanArgHolder boolPrim = new BooleanArgHolder();
+    BooleanArgHolder flagPrim = new BooleanArgHolder(false);
+    CharArgHolder charPrim = new CharArgHolder();
+    parser = new ArgParser("test", false);
+    parser.addOption("-i %d{[0,100]}", intPrim);
+    parser.addOption("-l %x", longPrim);
+    parser.addOption("-f %f", floatPrim);
+    parser.addOption("-d %f", doublePrim);
+    parser.addOption("-b %b", boolPrim);
+    parser.addOption("-v %v", flagPrim);
+    parser.addOption("-c %c", charPrim);
+    verify(intPrim.getAsInt() == 7 && !intPrim.isSetValue(), "int default");
+    verify(longPrim.getAsLong() == 0 && longPrim.getValue() == null,
+      "long default");
+    verify(Double.isNaN(doublePrim.getAsDouble()), "double default");
+    test.checkAdd("-x %c", new IntArgHolder(), "Invalid result holder for %c");
+    unmatched = parser.matchAllArgs(new String[] { "-i", "42", "-l",
+        "ffffffffff", "-f", "0.5", "-d", "-1e300", "-b", "false", "-v", "-c",
+        "\\t" }, 0, 0);
+    verify(unmatched == null && parser.getErrorMessage() == null,
+      "primitive holders");
+    verify(intPrim.getAsInt() == 42 && intPrim.getValue() == 42, "int value");
+    verify(longPrim.getAsLong() == 0xffffffffffL, "long value");
+    verify(floatPrim.getAsFloat() == 0.5f, "float value");
+    verify(doublePrim.getAsDouble() == -1e300, "double value");
+    verify(!boolPrim.getAsBoolean() && boolPrim.isSetValue(), "boolean value");
+    verify(flagPrim.getAsBoolean(), "flag value");
+    verify(charPrim.getAsChar() == '\t', "char value");
+    parser.matchAllArgs(new String[] { "-i", "101" }, 0, 0);
+    verify("-i: value '101' not in range [0,100]".equals(parser
+        .getErrorMessage()), "primitive range error");
+    verify(intPrim.getAsInt() == 42, "int out of range");
+    intPrim.setValue(3);
+    verify(intPrim.getAsInt() == 3 && intPrim.getFinalValue() == 3,
+      "int set boxed");
+    verify(intPrim.clone().equals(intPrim), "int clone");
+    verify(!intPrim.equals(new ArgHolder<Integer>(3)), "int equals boxed");
+    intPrim.unsetValue();
+    verify(intPrim.getAsInt() == 7 && intPrim.getFinalValue() == 7,
+      "int unset");
+    
+    // a listener is notified about every matched or unmatched argument
+    ParseMetrics metrics = new ParseMetrics();
+    parser = new ArgParser("test");
+    parser.addOption("-n,--num %d{[0,9]}", new IntArgHolder());
+    parser.addOption("-s %s", new StringList());
+    parser.setParseListener(metrics);
+    verify(parser.getParseListener() == metrics, "listener not set");
+    parser.matchAllArgs(new String[] { "-n", "1", "zzz", "--num", "2", "-s",
+        "x", "-n", "10" }, 0, 0);
+    parser.matchAllArgs(new String[] { "-n", "x" }, 0, 0);
+    parser.matchAllArgs(new String[] { "-s" }, 0, 0);
+    verify(metrics.getLookups() == 7 && metrics.getMatched() == 3,
+      "matched " + metrics);
+    verify(metrics.getMatchCount("-n") == 2 && metrics.getMatchCount("-s") == 1
+        && metrics.getMatchCount("--num") == 0, "match counts " + metrics);
+    verify(metrics.getFailed() == 3 && metrics.getRangeFailures() == 1,
+      "failed " + metrics);
+    verify(metrics.getUnmatched() == 1, "unmatched " + metrics);
+    verify(metrics.toMap().get("matches.-s") == 1, "exported " + metrics);
+    metrics.reset();
+    verify(metrics.getLookups() == 0 && metrics.toMap().size() == 6,
+      "reset " + metrics);
+    
+    // flight recorder events are only recorded once they are enabled
+    try {
+      Recording recording = new Recording();
+      recording.enable("ArgParse.Compile");
+      recording.enable("ArgParse.Match");
+      recording.enable("ArgParse.Help");
+      recording.start();
+      parser = new ArgParser("test");
+      parser.addOption("-n %d", new IntArgHolder());
+      parser.matchAllArgs(new String[] { "-n", "1", "zzz" }, 0, 0);
+      parser.matchAllArgs(new String[] { "-n", "x" }, 0, 0);
+      parser.getHelpMessage();
+      recording.stop();
+      File jfrFile = File.createTempFile("argparser", ".jfr");
+      jfrFile.deleteOnExit();
+      recording.dump(jfrFile.toPath());
+      recording.close();
+      List<String> events = new ArrayList<String>();
+      for (RecordedEvent e : RecordingFile.readAllEvents(jfrFile.toPath())) {
+        String name = e.getEventType().getName();
+        if (name.equals("ArgParse.Match")) {
+          name += "(" + e.getInt("arguments") + "," + e.getInt("unmatched")
+              + "," + (e.getString("error") != null) + ")";
+        }
+        events.add(name);
+      }
+      verify(events.contains("ArgParse.Compile")
+          && events.contains("ArgParse.Help")
+          && events.contains("ArgParse.Match(3,1,false)")
+          && events.contains("ArgParse.Match(2,0,true)")
+          && !events.contains("ArgParse.FileLoad"), "recorded " + events);
+    } catch (IOException e) {
+      verify(false, "recording failed: " + e);
+    }
+    
+    // parsers work on runtimes without the flight recorder
+    try {
+      Process process = new ProcessBuilder(System.getProperty("java.home")
+          + File.separator + "bin" + File.separator + "java",
+        "--limit-modules", "java.base", "-cp", System
+            .getProperty("java.class.path"), WithoutJfr.class.getName())
+          .redirectErrorStream(true).start();
+      String output = new String(process.getInputStream().readAllBytes(),
+        "UTF-8");
+      verify(process.waitFor() == 0, "parser without jdk.jfr failed:\n"
+          + output);
+    } catch (IOException e) {
+      verify(false, "cannot start JVM without jdk.jfr: " + e);
+    } catch (InterruptedException e) {
+      verify(false, "interrupted: " + e);
+    }
+    
+    // options are restored from a snapshot unless their specs have changed
+    try {
+      File snapshot = File.createTempFile("argparser", ".snapshot");
+      snapshot.deleteOnExit();
+      snapshot.delete();
+      String[] specs = { "-n,--num %d{[0,9],20} #a number",
+          "-s %s{a,b} #NAME#a name", "-v %v #verbose", "-p %fX2 #a point" };
+      IntArgHolder num = new IntArgHolder();
+      ArgHolder<String> name = new ArgHolder<String>(String.class);
+      BooleanArgHolder verbose = new BooleanArgHolder();
+      double[] point = new double[2];
+      Object[] holders = { num, name, verbose, point };
+      parser = new ArgParser("java Snapshot");
+      verify(!parser.addOptions(specs, holders, snapshot) && snapshot.isFile(),
+        "snapshot not written");
+      String help = parser.getHelpMessage();
+      parser = new ArgParser("java Snapshot");
+      verify(parser.addOptions(specs, holders, snapshot),
+        "snapshot not restored");
+      verify(parser.getHelpMessage().equals(help), "restored help message");
+      verify(parser.matchAllArgs(new String[] { "--num", "20", "-s", "b", "-v",
+          "-p", "1.5", "-2" }, 0, 0) == null, "restored options not matched");
+      verify(num.getAsInt() == 20 && name.getValue().equals("b")
+          && verbose.getAsBoolean() && point[0] == 1.5 && point[1] == -2,
+        "restored values");
+      parser.matchAllArgs(new String[] { "-n", "10" }, 0, 0);
+      verify(parser.getErrorMessage() != null, "restored range not checked");
+      parser = new ArgParser("java Other");
+      verify(parser.addOptions(specs, holders, snapshot)
+          && parser.getHelpMessage().startsWith("Usage: java Other"),
+        "help message of another synopsis");
+      holders[0] = new ArgHolder<Long>(Long.class);
+      parser = new ArgParser("java Snapshot");
+      verify(!parser.addOptions(specs, holders, snapshot), "other holders");
+      specs[2] = "-v,--verbose %v #verbose";
+      parser = new ArgParser("java Snapshot");
+      verify(!parser.addOptions(specs, holders, snapshot), "other specs");
+      verify(new ArgParser("java Snapshot").addOptions(specs, holders,
+        snapshot), "snapshot not updated");
+      Files.write(snapshot.toPath(), Arrays.copyOf(
+        Files.readAllBytes(snapshot.toPath()), 40));
+      parser = new ArgParser("java Snapshot");
+      verify(!parser.addOptions(specs, holders, snapshot)
+          && parser.matchAllArgs(new String[] { "--verbose" }, 0, 0) == null,
+        "truncated snapshot");
+      // a corrupted array size in the range index of -n, behind an intact
+      // header
+      byte[] data = Files.readAllBytes(snapshot.toPath());
+      byte[] range = ByteBuffer.allocate(24).putInt(-1).putInt(2).putLong(0)
+          .putLong(9).array();
+      int at = 0;
+      while ((at <= data.length - range.length)
+          && !Arrays.equals(Arrays.copyOfRange(data, at, at + range.length),
+            range)) {
+        at++;
+      }
+      verify(at <= data.length - range.length, "range index not found");
+      ByteBuffer.wrap(data).putInt(at + 4, Integer.MAX_VALUE - 8);
+      Files.write(snapshot.toPath(), data);
+      parser = new ArgParser("java Snapshot");
+      verify(!parser.addOptions(specs, holders, snapshot)
+          && parser.matchAllArgs(new String[] { "-n", "20" }, 0, 0) == null,
+        "corrupted snapshot");
+      parser.matchAllArgs(new String[] { "-n", "10" }, 0, 0);
+      verify(parser.getErrorMessage() != null, "range of corrupted snapshot");
+    } catch (IOException e) {
+      verify(false, "snapshot failed: " + e);
+    }
+    
+    // the help message is rendered again only after a change
+    parser = new ArgParser("java Help");
+    parser.addOption("-size %d #the size of something, which is described "
+        + "at some length so that its help text has to be wrapped", intHolder);
+    String help = parser.getHelpMessage();
+    verify(parser.getHelpMessage() == help, "help message not cached");
+    parser.setConsoleColumns(40);
+    String narrowHelp = parser.getHelpMessage();
+    verify(!narrowHelp.equals(help), "columns ignored");
+    parser.setConsoleColumns(80);
+    verify(parser.getHelpMessage().equals(help), "columns restored");
+    parser.setHelpIndentation(10);
+    verify(!parser.getHelpMessage().equals(help), "indentation ignored");
+    parser.setHelpIndentation(6);
+    parser.setHelpOptionsEnabled(false);
+    verify(!parser.getHelpMessage().contains("--help"), "help options shown");
+    parser.setHelpOptionsEnabled(true);
+    parser.addDelimiter("Other options:");
+    parser.addOption("-name %s #a name", new ArgHolder<String>(String.class));
+    verify(parser.getHelpMessage().endsWith("Other options:\n-name "
+        + "<string>\n      a name\n"), "added option not shown");
+    parser.lastMatchRecord().setVisible(false);
+    verify(!parser.getHelpMessage().contains("-name"), "hidden option shown");
+    parser.setSynopsisString("java Help [options]");
+    verify(parser.getHelpMessage().startsWith("Usage: java Help [options]\n"),
+      "synopsis not updated");
+    
+    // streamed help messages equal the rendered ones, cached or not
+    parser.setSynopsisString("java Help [options] files ...");
+    try {
+      StringWriter helpWriter = new StringWriter();
+      parser.writeHelp(helpWriter);
+      StringBuilder helpBuilder = new StringBuilder();
+      parser.writeHelp(helpBuilder);
+      verify(helpWriter.toString().equals(parser.getHelpMessage()),
+        "streamed help message:\n" + helpWriter);
+      verify(helpBuilder.toString().equals(parser.getHelpMessage()),
+        "streamed help message:\n" + helpBuilder);
+      helpWriter = new StringWriter();
+      parser.writeHelp(helpWriter);
+      verify(helpWriter.toString().equals(parser.getHelpMessage()),
+        "cached help message:\n" + helpWriter);
+    } catch (IOException e) {
+      verify(false, "streamed help message: " + e.getMessage());
+    }
+    
+    // compiled ranges must accept exactly the values matched by the atoms
+    String[] rangeSpecs = {
+        "-a %d{[1,1),(2,2],(3,3),[5,9),(7,12],0x7fffffffffffffff}",
+        "-b %f{(0,1),[1,1],(-0.0,0.0],-3,(2,1e999)}",
+        "-c %s{fast,safe,[x,y),(xa,z],(m,m)}",
+        "-d %c{'a',['c','e'),('x','z']}" };
+    Object[] rangeHolders = { new ArgHolder<Long>(Long.class),
+        new ArgHolder<Double>(Double.class),
+        new ArgHolder<String>(String.class),
+        new ArgHolder<Character>(Character.class) };
+    Object[][] rangeValues = {
+        { 0L, 1L, 2L, 3L, 4L, 5L, 8L, 9L, 12L, 13L, Long.MAX_VALUE, -1L },
+        { -3d, 0d, -0d, 0.5, 1d, 1.5, 2d, 3d, Double.POSITIVE_INFINITY,
+            Double.NaN },
+        { "fast", "safe", "x", "xa", "xb", "y", "z", "za", "m", "" },
+        { (long) 'a', (long) 'b', (long) 'c', (long) 'e', (long) 'x',
+            (long) 'y', (long) 'z', 0x10000L } };
+    parser = new ArgParser("test", false);
+    for (int i = 0; i < rangeSpecs.length; i++) {
+      parser.addOption(rangeSpecs[i], rangeHolders[i]);
+      ArgParser.Record rec = parser.lastMatchRecord();
+      for (Object v : rangeValues[i]) {
+        boolean matched = false;
+        for (ArgParser.RangeAtom ra = rec.firstRangeAtom(); ra != null; ra = ra
+            .getNext()) {
+          matched |= (v instanceof Long) ? ra.match((Long) v)
+              : (v instanceof Double) ? ra.match((Double) v) : ra
+                  .match((String) v);
+        }
+        boolean within = (v instanceof Long) ? rec.withinRange((Long) v)
+            : (v instanceof Double) ? rec.withinRange((Double) v) : rec
+                .withinRange((String) v);
+        verify(within == matched, rangeSpecs[i] + ": " + v);
+      }
+    }
+    
+    // a parser generated from annotated fields must behave like an ArgParser
+    // with the same options
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    if (compiler != null) {
+      List<String> errors = new ArrayList<String>();
+      try {
+        ClassLoader loader = compileWithProcessor(compiler, "Opts",
+          "package gen;\n" + "public class Opts {\n"
+              + "  @org.argparser.Option(\"-n,--num %d {[1,100]} #count\")\n"
+              + "  public int count = 10;\n"
+              + "  @org.argparser.Option(\"-D%s #defines a property\")\n"
+              + "  public String define;\n"
+              + "  @org.argparser.Option(\"--mode %s{fast,[x,z)}\")\n"
+              + "  public String mode;\n"
+              + "  @org.argparser.Option(\"--origin %fX3\")\n"
+              + "  public double[] origin;\n"
+              + "  @org.argparser.Option(\"-foo ,-f%d\")\n"
+              + "  public int mixed;\n"
+              + "  @org.argparser.Option(\"-url %s{[a,m]}\")\n"
+              + "  public String url;\n"
+              + "  @org.argparser.Option(\"-Url %s{[n,z]}\")\n"
+              + "  public String Url;\n" + "}\n", errors);
+        verify(loader != null, "annotated class not compiled: " + errors);
+        Class<?> optsClass = loader.loadClass("gen.Opts");
+        Object opts = optsClass.newInstance();
+        GeneratedArgParser generated = (GeneratedArgParser) loader.loadClass(
+          "gen.OptsParser").getConstructor(optsClass, String.class)
+            .newInstance(opts, "java Opts");
+        parser = new ArgParser("java Opts");
+        parser.addOption("-n,--num %d {[1,100]} #count", intHolder);
+        parser.addOption("-D%s #defines a property", new ArgHolder<String>(
+          String.class));
+        parser.addOption("--mode %s{fast,[x,z)}", new ArgHolder<String>(
+          String.class));
+        parser.addOption("--origin %fX3", new double[3]);
+        parser.addOption("-foo ,-f%d", new IntArgHolder());
+        parser.addOption("-url %s{[a,m]}", new ArgHolder<String>(String.class));
+        parser.addOption("-Url %s{[n,z]}", new ArgHolder<String>(String.class));
+        verify(generated.getHelpMessage().equals(parser.getHelpMessage()),
+          "generated help message:\n" + generated.getHelpMessage());
+        unmatched = generated.matchAllArgs(new String[] { "--num", "42",
+            "-Da=b", "zzz", "--mode", "y", "--origin", "1", "2.5", "8e0",
+            "-?x" }, 0, 0);
+        test.checkStringArray("Generated unmatched args:", unmatched,
+          new String[] { "zzz", "-?x" });
+        verify(optsClass.getField("count").getInt(opts) == 42
+            && optsClass.getField("define").get(opts).equals("a=b")
+            && optsClass.getField("mode").get(opts).equals("y")
+            && Arrays.equals((double[]) optsClass.getField("origin").get(opts),
+              new double[] { 1, 2.5, 8 }), "generated field values");
+        // the names of one record may differ in taking their value
+        verify(generated.matchAllArgs(new String[] { "-f5" }, 0, 0) == null
+            && optsClass.getField("mixed").getInt(opts) == 5,
+          "generated one word value " + generated.getErrorMessage());
+        verify(generated.matchAllArgs(new String[] { "-foo", "9" }, 0, 0) == null
+            && optsClass.getField("mixed").getInt(opts) == 9,
+          "generated separate value " + generated.getErrorMessage());
+        // fields whose names differ only in case
+        verify(generated.matchAllArgs(new String[] { "-url", "b", "-Url", "p" },
+          0, 0) == null && optsClass.getField("url").get(opts).equals("b")
+            && optsClass.getField("Url").get(opts).equals("p"),
+          "generated case sensitive fields " + generated.getErrorMessage());
+        for (String[] bad : new String[][] { { "-n", "101" }, { "-n" },
+            { "-D" }, { "--mode", "zz" }, { "--origin", "1", "x", "2" },
+            { "-f", "9" }, { "-foo" }, { "-fx" }, { "-url", "p" },
+            { "-Url", "b" } }) {
+          parser.matchAllArgs(bad, 0, 0);
+          generated.matchAllArgs(bad, 0, 0);
+          verify(parser.getErrorMessage().equals(generated.getErrorMessage()),
+            "generated error " + generated.getErrorMessage());
+        }
+        errors.clear();
+        loader = compileWithProcessor(compiler, "Bad", "package gen;\n"
+            + "class Bad {\n" + "  @org.argparser.Option(\"-n %dX2{[1,2]}\")\n"
+            + "  int[] n;\n" + "  @org.argparser.Option(\"-v %v\")\n"
+            + "  private boolean v;\n" + "}\n", errors);
+        verify(loader == null && errors.size() == 2,
+          "invalid options compiled");
+        verify(errors.get(0).equals("Invalid option specification: "
+            + "Illegal character(s), expecting '#'"), errors.get(0));
+      } catch (Exception e) {
+        verify(false, "generated parser: " + e);
+      }
+    }
+    
+    // completion of option names and values
+    parser = new ArgParser("test");
+    parser.addOption("--mode %s{fast,safe,debug,[x,z]} #mode", new ArgHolder<String>(
+      String.class));
+    parser.addOption("--model,-m %s #model file", new ArgHolder<String>(
+      String.class));
+    parser.addOption("--dry-run %b", new ArgHolder<Boolean>(Boolean.class));
+    parser.addOption("--level=%s{low,high}", new ArgHolder<String>(
+      String.class));
+    parser.addOption("--secret %d", new ArgHolder<Integer>(Integer.class),
+      false);
+    parser.addOption("--origin %fX2", new double[2]);
+    test.checkStringArray("Name completion:", parser.complete(new String[] {
+        "--mo" }, 0), new String[] { "--mode", "--model" });
+    test.checkStringArray("Value completion:", parser.complete(new String[] {
+        "--mode", "s" }, 1), new String[] { "safe" });
+    test.checkStringArray("New value completion:", parser.complete(
+      new String[] { "--mode" }, 1), new String[] { "debug", "fast", "safe" });
+    test.checkStringArray("One word completion:", parser.complete(
+      new String[] { "--level=" }, 0), new String[] { "--level=high",
+        "--level=low" });
+    test.checkStringArray("Boolean completion:", parser.complete(new String[] {
+        "--dry-run", "" }, 1), new String[] { "false", "true", "--dry-run",
+        "--help", "--level=", "--mode", "--model", "--origin", "-?",
+        "-m" });
+    test.checkStringArray("Hidden completion:", parser.complete(new String[] {
+        "--dry-run", "true", "--s" }, 2), new String[0]);
+    test.checkStringArray("Multiple value completion:", parser.complete(
+      new String[] { "--origin", "1", "--mo", "2" }, 2), new String[0]);
+    try {
+      StringBuilder script = new StringBuilder();
+      parser.writeCompletionScript(script, "my-tool");
+      String s = script.toString();
+      verify(s.contains("_my_tool_complete() {")
+          && s.contains("'--mode')\n      COMPREPLY=( $(compgen -W "
+              + "'debug fast safe' -- \"$cur\") )")
+          && s.contains("'--model'|'-m')\n      COMPREPLY=( $(compgen -f")
+          && s.contains("'--origin')\n      COMPREPLY=()")
+          && !s.contains("secret") && !s.contains("'--dry-run')")
+          && s.contains("complete -F _my_tool_complete my-tool\n"),
+        "completion script:\n" + s);
+    } catch (IOException e) {
+      verify(false, "completion script: " + e);
+    }
+    
+    // suggestions for misspelled options
+    parser = new ArgParser("test");
+    parser.addOption("-t,--threads %d", new ArgHolder<Integer>(Integer.class));
+    parser.addOption("--mode %s", new ArgHolder<String>(String.class));
+    parser.addOption("--model %s", new ArgHolder<String>(String.class));
+    parser.addOption("--secret %d", new ArgHolder<Integer>(Integer.class),
+      false);
+    parser.addOption("-Xmx%i", new ArgHolder<Long>(Long.class));
+    unmatched = parser.matchAllArgs(new String[] { "--thread", "4" }, 0, 0);
+    test.checkStringArray("Misspelled unmatched args:", unmatched,
+      new String[] { "--thread", "4" });
+    test.checkStringArray("Suggestions:", parser.getSuggestions(unmatched[0]),
+      new String[] { "--threads" });
+    test.checkStringArray("Close suggestions:", parser.getSuggestions("--mod"),
+      new String[] { "--mode", "--model" });
+    test.checkStringArray("Hidden suggestions:", parser.getSuggestions(
+      "--secrets"), new String[0]);
+    test.checkStringArray("Short suggestions:", parser.getSuggestions("-x"),
+      new String[0]);
+    test.checkStringArray("Help suggestions:", parser.getSuggestions("--hlep"),
+      new String[] { "--help" });
+    parser.setHelpOptionsEnabled(false);
+    test.checkStringArray("Disabled help suggestions:", parser
+        .getSuggestions("--hlep"), new String[0]);
+    test.checkStringArray("Compiled suggestions:", parser.compile()
+        .getSuggestions("-Xms"), new String[] { "-Xmx" });
+    
+    // the tree finds the same names as comparing with every name
+    Random random = new Random(22);
+    List<OptionIndex.Entry> names = new ArrayList<OptionIndex.Entry>();
+    parser = new ArgParser("test", false);
+    for (int i = 0; i < 300; i++) {
+      StringBuilder name = new StringBuilder("-");
+      for (int k = random.nextInt(6); k >= 0; k--) {
+        name.append((char) ('a' + random.nextInt(4)));
+      }
+      parser.addOption(name + " %v", new ArgHolder<Boolean>(Boolean.class));
+    }
+    parser.compile().getIndex().complete("", names);
+    SuggestionTree tree = new SuggestionTree(names);
+    for (int i = 0; i < 200; i++) {
+      StringBuilder arg = new StringBuilder("-");
+      for (int k = random.nextInt(7); k >= 0; k--) {
+        arg.append((char) ('a' + random.nextInt(5)));
+      }
+      List<OptionIndex.Entry> found = new ArrayList<OptionIndex.Entry>();
+      tree.find(arg.toString(), 2, found);
+      int expected = 0;
+      for (OptionIndex.Entry entry : names) {
+        int d = SuggestionTree.distance(arg.toString(), entry.nameDesc
+            .getName(), 2);
+        if (d <= 2) {
+          verify(found.contains(entry), "tree misses " + entry.nameDesc
+              .getName() + " for " + arg);
+          expected++;
+        }
+      }
+      verify(found.size() == expected, "tree finds too many names for " + arg);
+    }
+    verify(SuggestionTree.distance("kitten", "sitting", 10) == 3
+        && SuggestionTree.distance("kitten", "sitting", 1) > 1,
+      "edit distance");
+    
+    // subcommands are created when they are selected
+    final int[] created = new int[2];
+    final ArgHolder<Integer> jobs = new ArgHolder<Integer>(Integer.class);
+    ArgHolder<Boolean> verbose = new ArgHolder<Boolean>(Boolean.class);
+    parser = new ArgParser("tool [options] command ...");
+    parser.addOption("-v %v #verbose", verbose);
+    parser.addSubcommand("build", "compiles the sources", new Supplier<ArgParser>() {
+      /*
+       * (non-Javadoc)
+       * @see java.util.function.Supplier#get()
+       */
+      @Override
+      public ArgParser get() {
+        created[0]++;
+        ArgParser build = new ArgParser("tool build [options]");
+        build.addOption("-j %d{[1,64]} #parallel jobs", jobs);
+        return build;
+      }
+    });
+    parser.addSubcommand("deploy", null, new Supplier<ArgParser>() {
+      /*
+       * (non-Javadoc)
+       * @see java.util.function.Supplier#get()
+       */
+      @Override
+      public ArgParser get() {
+        created[1]++;
+        return null;
+      }
+    });
+    unmatched = parser.matchAllArgs(new String[] { "-v", "build", "-j", "8",
+        "-v", "src" }, 0, 0);
+    test.checkStringArray("Subcommand unmatched args:", unmatched,
+      new String[] { "-v", "src" });
+    verify("build".equals(parser.getSelectedSubcommand())
+        && verbose.getValue() && (jobs.getValue() == 8)
+        && (created[0] == 1) && (created[1] == 0), "subcommand dispatch");
+    unmatched = parser.matchAllArgs(new String[] { "build", "-j", "99" }, 0,
+      0);
+    verify("-j: value '99' not in range [1,64]".equals(parser.getErrorMessage())
+        && (created[0] == 1), "subcommand error " + parser.getErrorMessage());
+    unmatched = parser.matchAllArgs(new String[] { "src", "build" }, 0, 0);
+    test.checkStringArray("Positional unmatched args:", unmatched,
+      new String[] { "src", "build" });
+    verify((parser.getSelectedSubcommand() == null)
+        && (parser.getErrorMessage() == null), "no subcommand selected");
+    verify(parser.getHelpMessage().endsWith("\nSubcommands:\n\n"
+        + "build\n      compiles the sources\ndeploy\n")
+        && parser.getSubcommand("build").getHelpMessage().contains(
+          "-j <decimal integer [1,64]>") && (created[1] == 0), "subcommand help:\n"
+        + parser.getHelpMessage());
+    verify(parser.getSubcommand("test") == null, "unknown subcommand");
+    ArgTokenizer subTokens = new ArgTokenizer(true);
+    try {
+      subTokens.tokenize("build -j 8");
+    } catch (StringScanException e) {
+      verify(false, "tokenize failed: " + e);
+    }
+    byte[] subData = "build-j8".getBytes(Charset.forName("UTF-8"));
+    Object[] sources = new Object[] {
+        subTokens,
+        new ByteBuffer[] { ByteBuffer.wrap(subData, 0, 5) },
+        new int[] { 0, 5, 7, 8 } };
+    for (Object source : sources) {
+      try {
+        if (source instanceof ArgTokenizer) {
+          parser.matchAllArgs((ArgTokenizer)source, 0);
+        } else if (source instanceof ByteBuffer[]) {
+          parser.matchAllArgs((ByteBuffer[])source, 0);
+        } else {
+          parser.matchAllArgs(subData, (int[])source, 0);
+        }
+        verify(false, "subcommands ignored by " + source);
+      } catch (IllegalStateException e) {
+        checkException(e,
+          "Subcommands are only matched by matchAllArgs(String[], int, int)");
+      }
+    }
+    for (int i = 0; i < 2; i++) {
+      try {
+        if (i == 0) {
+          parser.matchAllArgs(fileReader("build -j 8"), 0);
+        } else {
+          parser.matchAllArgs(new MappedArgFile(tempFile("build -j 8"),
+            Charset.forName("UTF-8")), 0);
+        }
+        verify(false, "subcommands ignored by option file " + i);
+      } catch (IllegalStateException e) {
+        checkException(e,
+          "Subcommands are only matched by matchAllArgs(String[], int, int)");
+      } catch (IOException e) {
+        verify(false, "option file: " + e);
+      }
+    }
+    try {
+      parser.compile();
+      verify(false, "subcommands dropped by compile");
+    } catch (IllegalStateException e) {
+      checkException(e,
+        "Subcommands are only matched by matchAllArgs(String[], int, int)");
+    }
+    try {
+      new ParserDaemon(Paths.get("tools.sock")).register("tool", parser);
+      verify(false, "subcommands dropped by daemon");
+    } catch (IllegalStateException e) {
+      checkException(e,
+        "Subcommands are only matched by matchAllArgs(String[], int, int)");
+    }
+    try {
+      parser.getSubcommand("deploy");
+      verify(false, "missing subcommand parser accepted");
+    } catch (IllegalStateException e) {
+      checkException(e, "No parser supplied for subcommand deploy");
+    }
+    try {
+      parser.addSubcommand("build", "", null);
+      verify(false, "duplicate subcommand accepted");
+    } catch (IllegalArgumentException e) {
+      checkException(e, "Subcommand build has already been added");
+    }
+    
+    // values from the environment and system properties
+    ArgHolder<Integer> threads = new ArgHolder<Integer>(Integer.class);
+    ArgHolder<String> home = new ArgHolder<String>(String.class);
+    BooleanArgHolder color = new BooleanArgHolder();
+    parser = new ArgParser("test");
+    parser.addOption("-t,--threads %d{[1,512]} #number of threads"
+        + "#env=APP_THREADS#prop=app.threads", threads);
+    parser.addOption("--home %s #DIR#home directory#env=APP_HOME", home);
+    parser.addOption("--color %b #env=APP_COLOR", color);
+    verify(parser.getHelpMessage().contains("-t, --threads <decimal integer [1,512]>\n      number of threads\n")
+        && parser.getHelpMessage().contains("--home DIR")
+        && !parser.getHelpMessage().contains("env="), "fallback help:\n"
+        + parser.getHelpMessage());
+    Map<String, String> env = new HashMap<String, String>();
+    env.put("APP_THREADS", "16");
+    env.put("APP_HOME", "/opt/app");
+    env.put("APP_COLOR", "true");
+    Properties props = new Properties();
+    props.setProperty("app.threads", "32");
+    parser.matchAllArgs(new String[] { "--home", "/tmp" }, 0, 0);
+    verify(parser.resolveFallbacks(env, props) && threads.getValue() == 32
+        && home.getValue().equals("/tmp") && color.getAsBoolean(),
+      "fallback values");
+    threads.unsetValue();
+    props.clear();
+    verify(parser.resolveFallbacks(env, props) && threads.getValue() == 16,
+      "environment value");
+    threads.unsetValue();
+    env.put("APP_THREADS", "1000");
+    verify(!parser.resolveFallbacks(env, props)
+        && "$APP_THREADS: value '1000' not in range [1,512]".equals(parser
+            .getErrorMessage()), "fallback error " + parser.getErrorMessage());
+    threads.unsetValue();
+    parser.matchAllArgs(new String[] { "-t", "7" }, 0, 0);
+    verify(parser.resolveFallbacks(env, props) && threads.getValue() == 7,
+      "argument before fallback");
+    threads.unsetValue();
+    System.setProperty("app.threads", "48");
+    try {
+      verify(parser.matchAllArgs(new String[0], 0, 0) == null
+          && threads.getValue() == 48, "property resolved by matchAllArgs");
+    } finally {
+      System.clearProperty("app.threads");
+    }
+    try {
+      File snapshot = File.createTempFile("argparser", ".snapshot");
+      snapshot.deleteOnExit();
+      String[] specs = { "-n %d #env=APP_N" };
+      ArgHolder<Integer> n = new ArgHolder<Integer>(Integer.class);
+      new ArgParser("test").addOptions(specs, new Object[] { n }, snapshot);
+      parser = new ArgParser("test");
+      verify(parser.addOptions(specs, new Object[] { n }, snapshot),
+        "fallback snapshot not restored");
+      env.put("APP_N", "5");
+      verify(parser.resolveFallbacks(env, props) && n.getValue() == 5,
+        "restored fallback");
+    } catch (IOException e) {
+      verify(false, "fallback snapshot: " + e);
+    }
+    test.checkAdd("-x %v #env=X", new ArgHolder<Boolean>(Boolean.class),
+      "Fallbacks not supported for %v or %h");
+    test.checkAdd("-x %dX2 #env=X", new int[2],
+      "Fallbacks not supported with multipliers");
+    test.checkAdd("-x %d #env=X", new int[1],
+      "Fallbacks require an ArgHolder as result holder");
+    test.checkAdd("-x %d #env=X#env=Y", new IntArgHolder(),
+      "Duplicate environment variable");
+    
+    // argument lists matched by a daemon over a Unix domain socket
+    try {
+      Path dir = Files.createTempDirectory("argparser");
+      final Path socket = dir.resolve("tools.sock");
+      final ParserDaemon daemon = new ParserDaemon(socket);
+      parser = new ArgParser("build [options]");
+      parser.addOption("-j %d{[1,64]} #jobs", new IntArgHolder());
+      parser.addOption("-D%s #defines", new Vector<Object>());
+      parser.addOption("--origin %fX2", new double[2]);
+      daemon.register("build", parser);
+      Thread thread = new Thread(new Runnable() {
+        /*
+         * (non-Javadoc)
+         * @see java.lang.Runnable#run()
+         */
+        @Override
+        public void run() {
+          try {
+            daemon.serve();
+          } catch (IOException e) {
+            e.printStackTrace();
+          }
+        }
+      });
+      daemon.bind();
+      thread.start();
+      DaemonResponse response = ParserDaemon.send(socket, "build",
+        new String[] { "-j", "8", "-Da=b", "src", "-Dc", "--origin", "1",
+            "2.5" });
+      verify(response.getStatus() == DaemonResponse.OK
+          && Arrays.equals(response.getValues("-j"), new String[] { "8" })
+          && Arrays.equals(response.getValues("-D"), new String[] { "a=b",
+              "c" })
+          && Arrays.equals(response.getValues("--origin"), new String[] {
+              "1.0", "2.5" })
+          && Arrays.equals(response.getOptionNames(), new String[] { "-j",
+              "-D", "--origin" }), "daemon values");
+      test.checkStringArray("Daemon unmatched args:", response
+          .getUnmatchedArguments(), new String[] { "src" });
+      response = ParserDaemon.send(socket, "build", new String[] { "-j", "99" });
+      verify(response.getStatus() == DaemonResponse.ERROR
+          && response.getText().equals("-j: value '99' not in range [1,64]"),
+        "daemon error " + response.getText());
+      response = ParserDaemon.send(socket, "build", new String[] { "--help" });
+      verify(response.getStatus() == DaemonResponse.HELP
+          && response.getText().equals(parser.getHelpMessage()), "daemon help");
+      response = ParserDaemon.send(socket, "deploy", new String[0]);
+      verify(response.getStatus() == DaemonResponse.ERROR
+          && response.getText().equals("Unknown tool deploy"), "unknown tool");
+      byte[] tool = "build".getBytes("UTF-8");
+      ByteBuffer[] malformed = new ByteBuffer[] {
+          ByteBuffer.allocate(13).putInt(tool.length).put(tool).putInt(
+            Integer.MAX_VALUE),
+          ByteBuffer.allocate(17).putInt(tool.length).put(tool).putInt(1)
+              .putInt(Integer.MAX_VALUE),
+          ByteBuffer.allocate(4).putInt(Integer.MAX_VALUE - 8) };
+      for (ByteBuffer request : malformed) {
+        request.flip();
+        try {
+          daemon.respond(request);
+          verify(false, "malformed request accepted");
+        } catch (IOException e) {
+          checkException(e, "Malformed request");
+        }
+      }
+      malformed = new ByteBuffer[] {
+          ByteBuffer.allocate(5).put((byte)DaemonResponse.OK).putInt(
+            Integer.MAX_VALUE),
+          ByteBuffer.allocate(17).put((byte)DaemonResponse.OK).putInt(0)
+              .putInt(1).putInt(-1).putInt(1 << 30),
+          ByteBuffer.allocate(5).put((byte)DaemonResponse.ERROR).putInt(
+            1 << 30) };
+      for (ByteBuffer encoded : malformed) {
+        encoded.flip();
+        try {
+          DaemonResponse.decode(encoded);
+          verify(false, "malformed response accepted");
+        } catch (IOException e) {
+          checkException(e, "Malformed response");
+        }
+      }
+      daemon.close();
+      thread.join(5000);
+      verify(!thread.isAlive() && !Files.exists(socket), "daemon stopped");
+      Files.delete(dir);
+    } catch (Exception e) {
+      verify(false, "daemon: " + e);
+    }
+    
     System.out.println("\nPassed\n");
   }
 }